@@ -85,7 +85,8 @@ class ContainerNodeNameMap {
      *            The other instance of <code>ContainerNodeNameMapping</code>,
      *            which shall be merged with the current instance.
      * @return the new instance of <code>ContainerNodeNameMapping</code>, which
-     *         contains all mappings available to both original instances.
+     *         contains all mappings available to both original instances, and
+     *         which is incomplete if either of them was.
      */
     public ContainerNodeNameMap merge(ContainerNodeNameMap other) {
         ContainerNodeNameMap result = new ContainerNodeNameMap();
@@ -96,6 +97,8 @@ class ContainerNodeNameMap {
         result.containerSet.addAll(containerSet);
         result.containerSet.addAll(other.containerSet);
 
+        result.containerListIncomplete = containerListIncomplete || other.containerListIncomplete;
+
         return result;
     }
 
@@ -44,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
 import jenkins.model.Jenkins;
@@ -132,6 +133,19 @@ public class DockerCloud extends Cloud {
     /** Length of time, in seconds, that {@link #disabled} should auto-disable for if we encounter an error. */
     private @CheckForNull Integer errorDuration;
 
+    /**
+     * Disk space, in MB, that images on our docker host may use before
+     * {@link DockerImageGarbageCollector} starts removing unused ones. Null
+     * means that we never remove images.
+     */
+    private @CheckForNull Integer imageGcDiskBudget;
+
+    /**
+     * If true, we pin each container to its own range of the docker host's CPU
+     * cores using {@link DockerCpusetAllocator}.
+     */
+    private boolean cpusetAllocation;
+
     @DataBoundConstructor
     public DockerCloud(String name, DockerAPI dockerApi, List<DockerTemplate> templates) {
 
@@ -407,26 +421,24 @@ public class DockerCloud extends Cloud {
                 final Runnable taskToCreateNewAgent = new Runnable() {
                     @Override
                     public void run() {
-                        DockerTransientNode agent = null;
+                        boolean decrementOnceTheAgentIsReady = false;
                         try {
                             // TODO where can we log provisioning progress ?
                             final DockerAPI api = DockerCloud.this.getDockerApi();
-                            agent = t.provisionNode(api, TaskListener.NULL);
-                            agent.setDockerAPI(api);
-                            agent.setCloudId(DockerCloud.this.name);
-                            agent.setProvisioningId(id);
-                            plannedNode.complete(agent);
-
-                            // On provisioning completion, let's trigger NodeProvisioner
-                            agent.robustlyAddToJenkins();
-
+                            // the container may take a while to be ready; we don't hold this thread meanwhile.
+                            t.provisionNodeAsync(api, TaskListener.NULL, getCpusetAllocator())
+                                    .whenComplete((agent, ex) -> {
+                                        try {
+                                            agentProvisioned(t, id, api, plannedNode, agent, ex);
+                                        } finally {
+                                            decrementContainersInProgress(t);
+                                        }
+                                    });
+                            decrementOnceTheAgentIsReady = true;
                         } catch (Exception ex) {
                             LOGGER.error(
                                     "Error in provisioning; template='{}' for cloud='{}'", t, getDisplayName(), ex);
                             plannedNode.completeExceptionally(ex);
-                            if (agent != null) {
-                                agent.terminate(LOGGER);
-                            }
                             if (ex instanceof RuntimeException) {
                                 throw (RuntimeException) ex;
                             } else if (ex instanceof IOException) {
@@ -435,7 +447,9 @@ public class DockerCloud extends Cloud {
                                 throw new RuntimeException(ex);
                             }
                         } finally {
-                            decrementContainersInProgress(t);
+                            if (!decrementOnceTheAgentIsReady) {
+                                decrementContainersInProgress(t);
+                            }
                         }
                     }
                 };
@@ -466,6 +480,35 @@ public class DockerCloud extends Cloud {
         }
     }
 
+    private void agentProvisioned(
+            DockerTemplate t,
+            ProvisioningActivity.Id id,
+            DockerAPI api,
+            CompletableFuture<Node> plannedNode,
+            DockerTransientNode agent,
+            Throwable failure) {
+        if (failure != null) {
+            final Throwable cause =
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            LOGGER.error("Error in provisioning; template='{}' for cloud='{}'", t, getDisplayName(), cause);
+            plannedNode.completeExceptionally(cause);
+            return;
+        }
+        try {
+            agent.setDockerAPI(api);
+            agent.setCloudId(name);
+            agent.setProvisioningId(id);
+            plannedNode.complete(agent);
+
+            // On provisioning completion, let's trigger NodeProvisioner
+            agent.robustlyAddToJenkins();
+        } catch (Exception ex) {
+            LOGGER.error("Error in provisioning; template='{}' for cloud='{}'", t, getDisplayName(), ex);
+            plannedNode.completeExceptionally(ex);
+            agent.terminate(LOGGER);
+        }
+    }
+
     /*
      * for publishers/builders. Simply runs container in docker cloud
      */
@@ -757,6 +800,8 @@ public class DockerCloud extends Cloud {
         bldToString(sb, "containerCap", containerCap);
         bldToString(sb, "exposeDockerHost", exposeDockerHost);
         bldToString(sb, "disabled", getDisabled());
+        bldToString(sb, "imageGcDiskBudget", imageGcDiskBudget);
+        bldToString(sb, "cpusetAllocation", cpusetAllocation);
         bldToString(sb, "templates", templates);
         endToString(sb);
         return sb.toString();
@@ -774,6 +819,8 @@ public class DockerCloud extends Cloud {
         result = prime * result + containerCap;
         result = prime * result + (exposeDockerHost ? 1231 : 1237);
         result = prime * result + getDisabled().hashCode();
+        result = prime * result + ((imageGcDiskBudget == null) ? 0 : imageGcDiskBudget.hashCode());
+        result = prime * result + (cpusetAllocation ? 1231 : 1237);
         result = prime * result + ((templates == null) ? 0 : templates.hashCode());
         return result;
     }
@@ -805,9 +852,15 @@ public class DockerCloud extends Cloud {
         if (exposeDockerHost != that.exposeDockerHost) {
             return false;
         }
+        if (cpusetAllocation != that.cpusetAllocation) {
+            return false;
+        }
         if (!getDisabled().equals(that.getDisabled())) {
             return false;
         }
+        if (!Objects.equals(imageGcDiskBudget, that.imageGcDiskBudget)) {
+            return false;
+        }
         if (!Objects.equals(templates, that.templates)) {
             return false;
         }
@@ -859,6 +912,41 @@ public class DockerCloud extends Cloud {
         this.errorDuration = errorDuration;
     }
 
+    @CheckForNull
+    public Integer getImageGcDiskBudget() {
+        if (imageGcDiskBudget != null && imageGcDiskBudget <= 0) {
+            return null; // non-positive is the same as unset = never remove images.
+        }
+        return imageGcDiskBudget;
+    }
+
+    @DataBoundSetter
+    public void setImageGcDiskBudget(Integer imageGcDiskBudget) {
+        this.imageGcDiskBudget = imageGcDiskBudget;
+    }
+
+    public boolean isCpusetAllocation() {
+        return cpusetAllocation;
+    }
+
+    @DataBoundSetter
+    public void setCpusetAllocation(boolean cpusetAllocation) {
+        this.cpusetAllocation = cpusetAllocation;
+    }
+
+    /**
+     * @return The {@link DockerCpusetAllocator} for our docker host, or null if
+     *         we're not pinning containers to CPU cores.
+     */
+    @CheckForNull
+    @Restricted(NoExternalUse.class)
+    DockerCpusetAllocator getCpusetAllocator() {
+        if (!cpusetAllocation) {
+            return null;
+        }
+        return DockerCpusetAllocator.forDockerHost(getDockerApi().getDockerHost().getUri());
+    }
+
     /**
      * Calculates the duration (in milliseconds) we should stop for when an
      * error happens. If the user has not configured a duration then the default
@@ -917,6 +1005,13 @@ public class DockerCloud extends Cloud {
             return FormValidation.validateNonNegativeInteger(value);
         }
 
+        public FormValidation doCheckImageGcDiskBudget(@QueryParameter String value) {
+            if (value == null || value.isEmpty()) {
+                return FormValidation.ok("Images will never be removed");
+            }
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
         @Override
         public String getDisplayName() {
             return "Docker";
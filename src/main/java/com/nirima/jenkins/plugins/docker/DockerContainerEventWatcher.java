@@ -0,0 +1,250 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.PeriodicWork;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens to the event streams of our docker hosts so that the
+ * {@link DockerContainerWatchdog} can deal with our orphaned containers, and
+ * with nodes whose containers have gone, within seconds rather than on its
+ * next (full) execution.
+ * <p>
+ * We only listen for the <code>create</code>, <code>die</code> and
+ * <code>destroy</code> events of containers that were created by this Jenkins
+ * instance, and each event only results in that one container (or its node)
+ * being checked. The watchdog's periodic checks carry on regardless, so that
+ * anything we miss (e.g. while we're reconnecting) still gets cleaned up
+ * eventually.
+ * <p>
+ * This is disabled by default; set the system property
+ * <code>com.nirima.jenkins.plugins.docker.DockerContainerEventWatcher.enabled</code>
+ * to <code>true</code> to enable it.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class DockerContainerEventWatcher extends PeriodicWork {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerEventWatcher.class);
+
+    /**
+     * How often we check that we're listening to every docker host (and no
+     * others). This is how quickly we reconnect if an event stream breaks.
+     */
+    private static final long RECURRENCE_PERIOD_IN_MS = JenkinsUtils.getSystemPropertyLong(
+                    DockerContainerEventWatcher.class.getName() + ".recurrenceInSeconds", 30L)
+            * 1000L;
+
+    /**
+     * How long we wait after a container stops, or is removed, before
+     * checking it. This gives our own termination code time to finish
+     * removing the container and its node, so that we don't get in its way.
+     */
+    private static final long EVENT_DELAY_IN_MS = JenkinsUtils.getSystemPropertyLong(
+            DockerContainerEventWatcher.class.getName() + ".eventDelayInMillis", 10000L);
+
+    private static final String CREATE_EVENT = "create";
+    private static final String DIE_EVENT = "die";
+    private static final String DESTROY_EVENT = "destroy";
+
+    /** What we're listening to, indexed by {@link DockerContainerWatchdog#getEndpoint(DockerCloud)}. */
+    private final Map<String, EventListener> listeners = new HashMap<>();
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD_IN_MS;
+    }
+
+    /*
+     * Methods used for decoupling on unit testing
+     */
+
+    protected boolean isEnabled() {
+        return JenkinsUtils.getSystemPropertyBoolean(DockerContainerEventWatcher.class.getName() + ".enabled", false);
+    }
+
+    protected List<DockerCloud> getAllClouds() {
+        return DockerCloud.instances();
+    }
+
+    protected DockerContainerWatchdog getWatchdog() {
+        return ExtensionList.lookupSingleton(DockerContainerWatchdog.class);
+    }
+
+    protected String getJenkinsInstanceId() {
+        return DockerTemplateBase.getJenkinsInstanceIdForContainerLabel();
+    }
+
+    protected void schedule(Runnable check, long delayInMs) {
+        Timer.get().schedule(
+                () -> {
+                    try {
+                        check.run();
+                    } catch (RuntimeException ex) {
+                        LOGGER.warn("Failed to react to docker event", ex);
+                    }
+                },
+                delayInMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected synchronized void doRun() {
+        final Map<String, DockerCloud> cloudsByEndpoint = new HashMap<>();
+        if (isEnabled()) {
+            for (DockerCloud dc : getAllClouds()) {
+                final String endpoint = DockerContainerWatchdog.getEndpoint(dc);
+                if (endpoint == null) {
+                    continue;
+                }
+                final DockerCloud existing = cloudsByEndpoint.get(endpoint);
+                // only an enabled cloud may remove containers.
+                if (existing == null || existing.getDisabled().isDisabled()) {
+                    cloudsByEndpoint.put(endpoint, dc);
+                }
+            }
+        }
+        for (String endpoint : new ArrayList<>(listeners.keySet())) {
+            if (!cloudsByEndpoint.containsKey(endpoint)) {
+                LOGGER.debug("No longer listening to events from {}", endpoint);
+                listeners.remove(endpoint).closeQuietly();
+            }
+        }
+        for (Map.Entry<String, DockerCloud> entry : cloudsByEndpoint.entrySet()) {
+            final String endpoint = entry.getKey();
+            final DockerCloud dc = entry.getValue();
+            final EventListener existing = listeners.get(endpoint);
+            if (existing != null && !existing.isStopped()) {
+                // clouds get replaced whenever the configuration is saved.
+                existing.cloud = dc;
+                continue;
+            }
+            // if we lost the event stream, pick up where we left off.
+            final Long sinceEpochSecs = existing == null ? null : existing.lastEventEpochSecs;
+            final EventListener listener = new EventListener(endpoint, dc);
+            try {
+                listener.start(sinceEpochSecs);
+                listeners.put(endpoint, listener);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Unable to listen to events from {}; will try again later", endpoint, ex);
+                listener.closeQuietly();
+            }
+        }
+    }
+
+    private void onEvent(DockerCloud dc, String action, String containerId) {
+        final DockerContainerWatchdog watchdog = getWatchdog();
+        switch (action) {
+            case CREATE_EVENT:
+                // it'll be too young to be removed until its grace period is over.
+                schedule(
+                        () -> watchdog.checkContainer(dc, containerId),
+                        DockerContainerWatchdog.getGraceDurationForContainers().toMillis() + EVENT_DELAY_IN_MS);
+                break;
+            case DIE_EVENT:
+                schedule(() -> watchdog.checkContainer(dc, containerId), EVENT_DELAY_IN_MS);
+                break;
+            case DESTROY_EVENT:
+                schedule(() -> watchdog.checkNodesOfRemovedContainer(containerId), EVENT_DELAY_IN_MS);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private class EventListener extends ResultCallback.Adapter<Event> {
+        private final String endpoint;
+        private volatile DockerCloud cloud;
+        private volatile DockerClient client;
+        private volatile boolean stopped;
+        /** When the last event we were told about happened. */
+        private volatile Long lastEventEpochSecs;
+
+        EventListener(String endpoint, DockerCloud cloud) {
+            this.endpoint = endpoint;
+            this.cloud = cloud;
+        }
+
+        void start(@CheckForNull Long sinceEpochSecs) {
+            final Map<String, String> labelFilter = new HashMap<>();
+            labelFilter.put(DockerContainerLabelKeys.JENKINS_INSTANCE_ID, getJenkinsInstanceId());
+            lastEventEpochSecs = sinceEpochSecs;
+            client = cloud.getDockerApi().getClient();
+            LOGGER.debug("Listening to events from {}", endpoint);
+            final EventsCmd cmd = client.eventsCmd()
+                    .withEventTypeFilter(EventType.CONTAINER)
+                    .withEventFilter(CREATE_EVENT, DIE_EVENT, DESTROY_EVENT)
+                    .withLabelFilter(labelFilter);
+            if (sinceEpochSecs != null) {
+                cmd.withSince(Long.toString(sinceEpochSecs));
+            }
+            cmd.exec(this);
+        }
+
+        boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public void onNext(Event event) {
+            final String action = event.getAction() != null ? event.getAction() : event.getStatus();
+            final String containerId = event.getId();
+            if (action == null || containerId == null) {
+                return;
+            }
+            if (event.getTime() != null) {
+                lastEventEpochSecs = event.getTime();
+            }
+            LOGGER.debug("Container {} on {}: {}", containerId, endpoint, action);
+            onEvent(cloud, action, containerId);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!stopped) {
+                LOGGER.info("Lost the event stream from {}; will reconnect later", endpoint, throwable);
+            }
+            closeQuietly();
+        }
+
+        @Override
+        public void onComplete() {
+            closeQuietly();
+        }
+
+        void closeQuietly() {
+            stopped = true;
+            try {
+                super.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Failed to stop listening to events from {}", endpoint, ex);
+            }
+            final DockerClient ourClient = client;
+            client = null;
+            if (ourClient != null) {
+                try {
+                    ourClient.close();
+                } catch (IOException ex) {
+                    LOGGER.debug("Failed to close our connection to {}", endpoint, ex);
+                }
+            }
+        }
+    }
+}
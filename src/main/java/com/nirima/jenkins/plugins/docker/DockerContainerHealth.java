@@ -0,0 +1,219 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.HealthState;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.HealthCheck;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Uses the container's docker healthcheck to tell when it's ready to be
+ * connected to. Rather than polling, we listen to the docker host's event
+ * stream for the container's <code>health_status: healthy</code> event.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerContainerHealth {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerHealth.class);
+    /** How often docker runs the healthchecks that we add to containers. */
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = JenkinsUtils.getSystemPropertyLong(
+            DockerContainerHealth.class.getName() + ".healthCheckIntervalMillis", 1000L);
+
+    private static final String HEALTHY = "healthy";
+    private static final String HEALTH_STATUS_EVENT = "health_status";
+    private static final String DIE_EVENT = "die";
+
+    private DockerContainerHealth() {}
+
+    /**
+     * @param shellCommand The command which tells if the container is ready,
+     *                     by exiting with status zero.
+     * @return A healthcheck that runs the command (using the container's
+     *         shell) frequently, so we find out it's ready quickly.
+     */
+    @NonNull
+    public static HealthCheck createHealthCheck(@NonNull String shellCommand) {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, HEALTH_CHECK_INTERVAL_MILLIS));
+        return new HealthCheck()
+                .withTest(List.of("CMD-SHELL", shellCommand))
+                .withInterval(intervalNanos)
+                .withStartPeriod(0L);
+    }
+
+    /**
+     * Waits until the container reports that it's healthy.
+     *
+     * @param client         Our connection to the docker host.
+     * @param containerId    The (started) container.
+     * @param sinceEpochSecs When the container was started, so that we see
+     *                       any events that happened before we started
+     *                       listening.
+     * @param timeoutMillis  How long we're prepared to wait.
+     * @param logger         Where to tell the user what's going on.
+     * @return true if the container became healthy, false if it has no
+     *         healthcheck (so there's nothing to wait for).
+     * @throws IOException          if the container stopped, or did not become
+     *                              healthy in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static boolean waitUntilHealthy(
+            @NonNull DockerClient client,
+            @NonNull String containerId,
+            long sinceEpochSecs,
+            long timeoutMillis,
+            @NonNull PrintStream logger)
+            throws IOException, InterruptedException {
+        final CompletableFuture<Boolean> result =
+                waitUntilHealthyAsync(client, containerId, sinceEpochSecs, timeoutMillis, logger);
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            result.cancel(false);
+            throw ex;
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to wait for container " + containerId + " to be healthy", cause);
+        }
+    }
+
+    /**
+     * Like {@link #waitUntilHealthy(DockerClient, String, long, long, PrintStream)}
+     * except that no thread is tied up while we wait; the future is completed
+     * by the docker event stream instead.
+     *
+     * @param client         Our connection to the docker host, which must stay
+     *                       open until the future has completed.
+     * @param containerId    The (started) container.
+     * @param sinceEpochSecs When the container was started.
+     * @param timeoutMillis  How long we're prepared to wait.
+     * @param logger         Where to tell the user what's going on.
+     * @return A future which will be completed with true if the container
+     *         became healthy, false if it has no healthcheck, or exceptionally
+     *         with an {@link IOException} if the container stopped or did not
+     *         become healthy in time.
+     */
+    @NonNull
+    public static CompletableFuture<Boolean> waitUntilHealthyAsync(
+            @NonNull DockerClient client,
+            @NonNull String containerId,
+            long sinceEpochSecs,
+            long timeoutMillis,
+            @NonNull PrintStream logger) {
+        final HealthEventListener listener = new HealthEventListener(containerId, logger);
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        result.whenComplete((healthy, ex) -> listener.closeQuietly());
+        try {
+            client.eventsCmd()
+                    .withContainerFilter(containerId)
+                    .withEventFilter(HEALTH_STATUS_EVENT, DIE_EVENT)
+                    .withSince(Long.toString(sinceEpochSecs))
+                    .exec(listener);
+            // The events we asked for should include anything that happened
+            // before we started listening, but we check once anyway, as this
+            // is also how we find out that there's no healthcheck at all.
+            final InspectContainerResponse inspect = client.inspectContainerCmd(containerId).exec();
+            final InspectContainerResponse.ContainerState state = inspect.getState();
+            final HealthState health = state == null ? null : state.getHealth();
+            if (health == null) {
+                logger.println("Container " + containerId + " has no healthcheck, so not waiting for it to be healthy");
+                result.complete(false);
+                return result;
+            }
+            if (HEALTHY.equals(health.getStatus())) {
+                result.complete(true);
+                return result;
+            }
+            if (state.getRunning() != null && !state.getRunning()) {
+                throw new IOException("Container " + containerId + " stopped before becoming healthy");
+            }
+        } catch (IOException | RuntimeException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        logger.println("Waiting for container " + containerId + " to be healthy");
+        listener.result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                result.complete(true);
+            } else if (ex instanceof TimeoutException) {
+                result.completeExceptionally(new IOException(
+                        "Container " + containerId + " did not become healthy within " + timeoutMillis + "ms", ex));
+            } else if (ex instanceof IOException) {
+                result.completeExceptionally(ex);
+            } else {
+                result.completeExceptionally(
+                        new IOException("Failed to wait for container " + containerId + " to be healthy", ex));
+            }
+        });
+        return result;
+    }
+
+    private static class HealthEventListener extends ResultCallback.Adapter<Event> {
+        private final String containerId;
+        private final PrintStream logger;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        HealthEventListener(String containerId, PrintStream logger) {
+            this.containerId = containerId;
+            this.logger = logger;
+        }
+
+        @Override
+        public void onNext(Event event) {
+            final String action = getAction(event);
+            LOGGER.debug("Container {}: {}", containerId, action);
+            if (action == null) {
+                return;
+            }
+            if (action.equals(DIE_EVENT)) {
+                result.completeExceptionally(
+                        new IOException("Container " + containerId + " stopped before becoming healthy"));
+            } else if (action.equals(HEALTH_STATUS_EVENT + ": " + HEALTHY)) {
+                result.complete(null);
+            } else if (action.startsWith(HEALTH_STATUS_EVENT)) {
+                // e.g. unhealthy, which it can be while it's still starting up.
+                logger.println("Container " + containerId + " " + action);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.completeExceptionally(new IOException("Docker event stream ended unexpectedly"));
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException ex) {
+                LOGGER.debug("Failed to stop listening to events for container {}", containerId, ex);
+            }
+        }
+
+        @CheckForNull
+        private static String getAction(Event event) {
+            final String action = event.getAction();
+            return action != null ? action : event.getStatus();
+        }
+    }
+}
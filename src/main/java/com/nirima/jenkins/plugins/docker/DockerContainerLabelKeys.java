@@ -68,4 +68,20 @@ public final class DockerContainerLabelKeys {
      */
     @Restricted(NoExternalUse.class)
     static final String REMOVE_VOLUMES = PLUGIN_LABEL_KEY_NAMESPACE + "JenkinsRemoveVolumes";
+
+    /**
+     * Name of the Docker "label" that we'll put into containers that we've
+     * pinned to CPU cores, setting its value to the cpuset they're pinned to, so
+     * that we can work out which cores are in use after a restart.
+     */
+    @Restricted(NoExternalUse.class)
+    static final String CPUSET = PLUGIN_LABEL_KEY_NAMESPACE + "JenkinsCpuset";
+
+    /**
+     * Name of the Docker "label" that we'll put into containers whose nodes are
+     * never saved to disk, setting its value to the node's remote FS root, so
+     * that we can recreate the node if Jenkins restarts.
+     */
+    @Restricted(NoExternalUse.class)
+    static final String EPHEMERAL_NODE_REMOTE_FS = PLUGIN_LABEL_KEY_NAMESPACE + "JenkinsEphemeralNodeRemoteFs";
 }
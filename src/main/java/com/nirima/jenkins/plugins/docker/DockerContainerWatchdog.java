@@ -1,24 +1,38 @@
 package com.nirima.jenkins.plugins.docker;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.ListContainersCmd;
 import com.github.dockerjava.api.model.Container;
 import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
 import hudson.model.AsyncPeriodicWork;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.slaves.SlaveComputer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.IOException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.docker.commons.credentials.DockerServerEndpoint;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.slf4j.Logger;
@@ -33,11 +47,24 @@ import org.slf4j.LoggerFactory;
  */
 @Extension
 public class DockerContainerWatchdog extends AsyncPeriodicWork {
-    private Clock clock;
+    private volatile Clock clock;
+
+    /** Checks the docker hosts, several at once. */
+    private final ExecutorService endpointExecutor;
 
     public DockerContainerWatchdog() {
         super(String.format("%s Asynchronous Periodic Work", DockerContainerWatchdog.class.getSimpleName()));
         clock = Clock.systemUTC();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_ENDPOINTS,
+                MAX_CONCURRENT_ENDPOINTS,
+                1,
+                TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), DockerContainerWatchdog.class.getSimpleName()));
+        // we only run every few minutes, so there's no point keeping idle threads.
+        executor.allowCoreThreadTimeOut(true);
+        endpointExecutor = executor;
     }
 
     /**
@@ -69,7 +96,26 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
      */
     private static final Duration PROCESSING_TIMEOUT = Duration.ofMillis(RECURRENCE_PERIOD_IN_MS * 4 / 5);
 
-    private static final Statistics executionStatistics = new Statistics();
+    /**
+     * The maximal amount of time the watchdog is allowed to spend cleaning up
+     * a single docker host, so that one slow docker host can't use up all of
+     * the {@link #PROCESSING_TIMEOUT} and stop the others from being cleaned
+     * up. Whatever is left over will be cleaned up on the next execution.
+     */
+    private static final Duration ENDPOINT_PROCESSING_TIMEOUT = Duration.ofSeconds(JenkinsUtils.getSystemPropertyLong(
+            DockerContainerWatchdog.class.getName() + ".endpointTimeoutInSeconds",
+            Math.max(1L, PROCESSING_TIMEOUT.getSeconds() / 2)));
+
+    /**
+     * The maximal number of docker hosts the watchdog checks at once.
+     */
+    private static final int MAX_CONCURRENT_ENDPOINTS = Math.max(
+            1,
+            JenkinsUtils.getSystemPropertyLong(DockerContainerWatchdog.class.getName() + ".maxConcurrentEndpoints", 4L)
+                    .intValue());
+
+    private static final DockerContainerWatchdogStatistics executionStatistics =
+            DockerContainerWatchdogStatistics.get();
 
     @Override
     public long getRecurrencePeriod() {
@@ -93,6 +139,10 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         return DockerTemplateBase.getJenkinsInstanceIdForContainerLabel();
     }
 
+    protected boolean isEphemeralNodeRecoveryComplete() {
+        return DockerEphemeralNodeRecovery.isComplete();
+    }
+
     protected void removeNode(DockerTransientNode dtn) throws IOException {
         Jenkins.get().removeNode(dtn);
     }
@@ -118,44 +168,46 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         }
     }
 
+    private static boolean isWatchdogEnabled() {
+        return JenkinsUtils.getSystemPropertyBoolean(DockerContainerWatchdog.class.getName() + ".enabled", true);
+    }
+
     @Override
     protected void execute(TaskListener listener) throws IOException, InterruptedException {
-        if (!JenkinsUtils.getSystemPropertyBoolean(DockerContainerWatchdog.class.getName() + ".enabled", true)) {
+        if (!isWatchdogEnabled()) {
             LOGGER.debug("Docker Container Watchdog is disabled based on system configuration");
             return;
         }
 
+        if (!isEphemeralNodeRecoveryComplete()) {
+            // until then, containers without nodes may just be waiting for their nodes to be recreated.
+            LOGGER.info("Docker Container Watchdog is waiting for ephemeral nodes to be recreated");
+            return;
+        }
+
         LOGGER.debug("Docker Container Watchdog has been triggered");
 
-        executionStatistics.writeStatisticsToLog();
+        LOGGER.debug("Watchdog Statistics: {}", executionStatistics);
 
-        executionStatistics.addExecution();
+        executionStatistics.recordExecutionStarted();
 
         Instant start = clock.instant();
+        String outcome = "Failed";
+        boolean timedOut = false;
         try {
-            ContainerNodeNameMap csmMerged = new ContainerNodeNameMap();
-
             Instant snapshotInstance = clock.instant();
             Map<String, Node> nodeMap = loadNodeMap();
 
             try {
-                for (DockerCloud dc : getAllClouds()) {
-                    String uri = dc.getDockerApi().getDockerHost().getUri();
-                    if (uri == null) {
-                        LOGGER.info("Skipping unconfigured Docker Cloud {}", dc.getDisplayName());
-                        continue; // currently declines to default it, contrary to getUri Javadoc
-                    }
-
-                    LOGGER.debug("Checking Docker Cloud {} at {}", dc.getDisplayName(), uri);
-                    listener.getLogger().println(String.format("Checking Docker Cloud %s", dc.getDisplayName()));
-
-                    csmMerged = processCloud(dc, nodeMap, csmMerged, snapshotInstance);
-                }
+                final Map<String, List<DockerCloud>> cloudsByEndpoint = groupCloudsByEndpoint(listener);
+                final ContainerNodeNameMap csmMerged = processEndpoints(cloudsByEndpoint, nodeMap, snapshotInstance);
 
                 if (csmMerged.isContainerListIncomplete()) {
                     LOGGER.info("Not checking the list of nodes, as list of containers is known to be incomplete");
+                    outcome = "Completed, but not all docker hosts could be checked, so nodes were not checked";
                 } else {
                     cleanUpSuperfluousComputer(nodeMap, csmMerged, snapshotInstance);
+                    outcome = "Completed";
                 }
             } catch (WatchdogProcessingTimeout timeout) {
                 LOGGER.warn(
@@ -164,14 +216,13 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
                         PROCESSING_TIMEOUT,
                         start.toString(),
                         timeout);
-                executionStatistics.addProcessingTimeout();
-                executionStatistics.addOverallRuntime(
-                        Duration.between(start, clock.instant()).toMillis());
+                outcome = "Timed out";
+                timedOut = true;
                 return;
             }
         } finally {
             Instant stop = clock.instant();
-            executionStatistics.addOverallRuntime(Duration.between(start, stop).toMillis());
+            executionStatistics.recordExecutionFinished(Duration.between(start, stop).toMillis(), outcome, timedOut);
         }
 
         LOGGER.debug("Docker Container Watchdog check has been completed");
@@ -211,12 +262,133 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         return nodeMap;
     }
 
+    /**
+     * Groups our clouds by the docker host they use, so that each docker host
+     * is only checked once however many clouds use it.
+     *
+     * @return The clouds, indexed by {@link #getEndpoint(DockerCloud)}.
+     */
+    private Map<String, List<DockerCloud>> groupCloudsByEndpoint(TaskListener listener) {
+        final Map<String, List<DockerCloud>> result = new LinkedHashMap<>();
+        for (DockerCloud dc : getAllClouds()) {
+            final String endpoint = getEndpoint(dc);
+            if (endpoint == null) {
+                LOGGER.info("Skipping unconfigured Docker Cloud {}", dc.getDisplayName());
+                continue; // currently declines to default it, contrary to getUri Javadoc
+            }
+
+            LOGGER.debug("Checking Docker Cloud {} at {}", dc.getDisplayName(), endpoint);
+            listener.getLogger().println(String.format("Checking Docker Cloud %s", dc.getDisplayName()));
+
+            result.computeIfAbsent(endpoint, k -> new ArrayList<>()).add(dc);
+        }
+        return result;
+    }
+
+    /**
+     * Identifies the docker host a cloud uses. Clouds using different
+     * credentials may see different containers on the same host (e.g. on
+     * Triton), so the credentials are part of that.
+     *
+     * @param dc The cloud.
+     * @return The docker host (and credentials), or null if the cloud hasn't
+     *         been configured with a docker host.
+     */
+    @CheckForNull
+    static String getEndpoint(DockerCloud dc) {
+        final DockerServerEndpoint dockerHost = dc.getDockerApi().getDockerHost();
+        final String uri = dockerHost.getUri();
+        if (uri == null) {
+            return null;
+        }
+        final String credentialsId = dockerHost.getCredentialsId();
+        return credentialsId == null ? uri : uri + " (" + credentialsId + ")";
+    }
+
+    /**
+     * Checks all the docker hosts, several at once.
+     *
+     * @return All the containers we found.
+     */
+    private ContainerNodeNameMap processEndpoints(
+            Map<String, List<DockerCloud>> cloudsByEndpoint, Map<String, Node> nodeMap, Instant snapshotInstant)
+            throws InterruptedException {
+        ContainerNodeNameMap csmMerged = new ContainerNodeNameMap();
+        if (cloudsByEndpoint.size() <= 1) {
+            // nothing to be gained by using another thread.
+            for (Map.Entry<String, List<DockerCloud>> entry : cloudsByEndpoint.entrySet()) {
+                csmMerged =
+                        csmMerged.merge(processEndpoint(entry.getKey(), entry.getValue(), nodeMap, snapshotInstant));
+            }
+            return csmMerged;
+        }
+
+        final Map<String, Future<ContainerNodeNameMap>> futures = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, List<DockerCloud>> entry : cloudsByEndpoint.entrySet()) {
+                futures.put(
+                        entry.getKey(),
+                        endpointExecutor.submit(
+                                () -> processEndpoint(entry.getKey(), entry.getValue(), nodeMap, snapshotInstant)));
+            }
+            final Duration timeRemaining = Duration.between(clock.instant(), snapshotInstant.plus(PROCESSING_TIMEOUT));
+            final long deadlineInNanos = System.nanoTime() + Math.max(0L, timeRemaining.toNanos());
+            for (Map.Entry<String, Future<ContainerNodeNameMap>> entry : futures.entrySet()) {
+                final String endpoint = entry.getKey();
+                try {
+                    final long nanosRemaining = Math.max(0L, deadlineInNanos - System.nanoTime());
+                    csmMerged = csmMerged.merge(entry.getValue().get(nanosRemaining, TimeUnit.NANOSECONDS));
+                } catch (TimeoutException ex) {
+                    LOGGER.warn("Gave up waiting for docker host {} to be checked", endpoint);
+                    executionStatistics.recordEndpointTimeout(null);
+                    csmMerged.setContainerListIncomplete(true);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof WatchdogProcessingTimeout) {
+                        throw (WatchdogProcessingTimeout) ex.getCause();
+                    }
+                    LOGGER.warn("Failed to check docker host {}", endpoint, ex.getCause());
+                    csmMerged.setContainerListIncomplete(true);
+                }
+            }
+        } finally {
+            for (Future<ContainerNodeNameMap> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+        return csmMerged;
+    }
+
+    /**
+     * Checks one docker host.
+     *
+     * @param endpoint The docker host.
+     * @param clouds   All the clouds that use that docker host.
+     * @return The containers we found on it.
+     */
+    private ContainerNodeNameMap processEndpoint(
+            String endpoint, List<DockerCloud> clouds, Map<String, Node> nodeMap, Instant snapshotInstant) {
+        // any of the clouds can list the containers, but only an enabled one may remove them.
+        DockerCloud dc = clouds.get(0);
+        for (DockerCloud cloud : clouds) {
+            if (!cloud.getDisabled().isDisabled()) {
+                dc = cloud;
+                break;
+            }
+        }
+        if (clouds.size() > 1) {
+            LOGGER.debug("Checking docker host {} once for {} Docker Clouds", endpoint, clouds.size());
+        }
+        final Instant endpointDeadline = clock.instant().plus(ENDPOINT_PROCESSING_TIMEOUT);
+        return processCloud(dc, nodeMap, snapshotInstant, endpointDeadline);
+    }
+
     private ContainerNodeNameMap processCloud(
-            DockerCloud dc, Map<String, Node> nodeMap, ContainerNodeNameMap csmMerged, Instant snapshotInstant) {
+            DockerCloud dc, Map<String, Node> nodeMap, Instant snapshotInstant, Instant endpointDeadline) {
         DockerAPI dockerApi = dc.getDockerApi();
 
+        ContainerNodeNameMap csm = new ContainerNodeNameMap();
         try (final DockerClient client = dockerApi.getClient()) {
-            ContainerNodeNameMap csm = retrieveContainers(dc, client);
+            csm = retrieveContainers(dc, client, null);
 
             DockerDisabled dcDisabled = dc.getDisabled();
             if (dcDisabled.isDisabled()) {
@@ -225,19 +397,17 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
                         dc.getDisplayName(),
                         dc.getDockerApi().getDockerHost().getUri());
             } else {
-                cleanUpSuperfluousContainers(client, nodeMap, csm, dc, snapshotInstant);
+                cleanUpSuperfluousContainers(client, nodeMap, csm, dc, snapshotInstant, endpointDeadline);
             }
-
-            csmMerged = csmMerged.merge(csm);
         } catch (IOException e) {
             LOGGER.warn(
                     "Failed to properly close a DockerClient instance after reading the list of containers and cleaning them up; ignoring",
                     e);
         } catch (ContainersRetrievalException handledByCode) {
-            csmMerged.setContainerListIncomplete(true);
+            csm.setContainerListIncomplete(true);
         }
 
-        return csmMerged;
+        return csm;
     }
 
     private static class ContainersRetrievalException extends Exception {
@@ -246,7 +416,8 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         }
     }
 
-    private ContainerNodeNameMap retrieveContainers(DockerCloud dc, DockerClient client)
+    private ContainerNodeNameMap retrieveContainers(
+            DockerCloud dc, DockerClient client, @CheckForNull String containerIdOrNull)
             throws ContainersRetrievalException {
         /*
          * Note:
@@ -274,10 +445,12 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         try {
             List<Container> containerList = null;
             try {
-                containerList = client.listContainersCmd()
-                        .withShowAll(true)
-                        .withLabelFilter(labelFilter)
-                        .exec();
+                final ListContainersCmd listContainersCmd =
+                        client.listContainersCmd().withShowAll(true).withLabelFilter(labelFilter);
+                if (containerIdOrNull != null) {
+                    listContainersCmd.withIdFilter(List.of(containerIdOrNull));
+                }
+                containerList = listContainersCmd.exec();
             } catch (Exception e) {
                 LOGGER.warn(
                         "Unable to retrieve list of containers available on DockerCloud [name={}, dockerURI={}] while reading list of containers (showAll=true, labelFilters={})",
@@ -318,8 +491,10 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
             }
         } finally {
             Instant stop = clock.instant();
-            executionStatistics.addRetrieveContainerRuntime(
-                    Duration.between(start, stop).toMillis());
+            executionStatistics.recordContainersRetrieved(
+                    dc.getDisplayName(),
+                    Duration.between(start, stop).toMillis(),
+                    result.getAllContainers().size());
         }
 
         return result;
@@ -330,7 +505,8 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
             Map<String, Node> nodeMap,
             ContainerNodeNameMap csm,
             DockerCloud dc,
-            Instant snapshotInstant) {
+            Instant snapshotInstant,
+            Instant endpointDeadline) {
         Collection<Container> allContainers = csm.getAllContainers();
 
         for (Container container : allContainers) {
@@ -355,6 +531,16 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
             }
 
             checkForTimeout(snapshotInstant);
+            if (clock.instant().isAfter(endpointDeadline)) {
+                LOGGER.warn(
+                        "Spent too long cleaning up DockerCloud [name={}, dockerURI={}]; "
+                                + "leaving the rest until next time. Current timeout value: {}",
+                        dc.getDisplayName(),
+                        dc.getDockerApi().getDockerHost().getUri(),
+                        ENDPOINT_PROCESSING_TIMEOUT);
+                executionStatistics.recordEndpointTimeout(dc.getDisplayName());
+                return;
+            }
 
             // this is a container, which is missing a corresponding node with us
             LOGGER.info(
@@ -386,11 +572,18 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
          * It automatically also is a "minimal lifetime" value for containers, before this watchdog
          * is allowed to kill any container.
          */
+        final Duration untilMayBeCleanedUp = containerLifetime.minus(getGraceDurationForContainers());
+        return untilMayBeCleanedUp.isNegative();
+    }
+
+    /**
+     * @return How long a container may exist without a node before we may
+     *         remove it.
+     */
+    static Duration getGraceDurationForContainers() {
         final long graceDurationForContainersInSeconds = JenkinsUtils.getSystemPropertyLong(
                 DockerContainerWatchdog.class.getName() + ".initialGraceDurationForContainersInSeconds", 60L);
-        final Duration graceDurationForContainers = Duration.ofSeconds(graceDurationForContainersInSeconds);
-        final Duration untilMayBeCleanedUp = containerLifetime.minus(graceDurationForContainers);
-        return untilMayBeCleanedUp.isNegative();
+        return Duration.ofSeconds(graceDurationForContainersInSeconds);
     }
 
     private void terminateContainer(DockerCloud dc, DockerClient client, Container container) {
@@ -409,11 +602,11 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
                 Instant start = clock.instant();
                 client.removeContainerCmd(container.getId()).withForce(true).exec();
                 Instant stop = clock.instant();
-                executionStatistics.addContainerRemovalForce(
-                        Duration.between(start, stop).toMillis());
+                executionStatistics.recordContainerRemoved(
+                        dc.getDisplayName(), true, Duration.between(start, stop).toMillis());
             } catch (RuntimeException e) {
                 LOGGER.warn("Forced termination of container {} failed with RuntimeException", container.getId(), e);
-                executionStatistics.addContainerRemovalFailed();
+                executionStatistics.recordContainerRemovalFailed(dc.getDisplayName());
             }
         }
     }
@@ -480,8 +673,8 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
         Instant stop = clock.instant();
 
         if (success) {
-            executionStatistics.addContainerRemovalGracefully(
-                    Duration.between(start, stop).toMillis());
+            executionStatistics.recordContainerRemoved(
+                    dc.getDisplayName(), false, Duration.between(start, stop).toMillis());
             LOGGER.info("Successfully terminated orphaned container {}", containerId);
         } else {
             throw new TerminationException("Graceful termination failed.");
@@ -543,151 +736,99 @@ public class DockerContainerWatchdog extends AsyncPeriodicWork {
                 continue;
             }
 
-            SlaveComputer computer = dtn.getComputer();
-            if (computer == null) {
-                // Probably the node is being closed down right now, so we shouldn't touch it.
-                continue;
-            }
-
-            if (!computer.isOffline()) {
-                // the node is still running; we should not touch it.
-                continue;
-            }
-
-            // the container is already gone for the node, but the node did not notice it yet properly
-            LOGGER.info(
-                    "{} has container ID {}, but the container does not exist in any docker cloud. Will remove node.",
-                    dtn,
-                    dtn.getContainerId());
-
-            try {
-                removeNode(dtn);
-                executionStatistics.addNodeRemoved();
-            } catch (IOException e) {
-                LOGGER.warn("Failed to remove orphaned node {}", dtn.toString(), e);
-                executionStatistics.addNodeRemovedFailed();
-            }
-        }
-    }
-
-    private void checkForTimeout(Instant startedTimestamp) {
-        final Instant now = clock.instant();
-        Duration runtime = Duration.between(startedTimestamp, now);
-
-        if (runtime.compareTo(PROCESSING_TIMEOUT) > 0) {
-            throw new WatchdogProcessingTimeout();
+            removeNodeWithoutContainer(dtn);
         }
     }
 
-    /**
-     * Stores the internal statistics.
-     */
-    private static class Statistics {
-        private long executions;
-        private long containersRemovedGracefully;
-        private long containersRemovedGracefullyRuntimeSum;
-        private long containersRemovedForce;
-        private long containersRemovedForceRuntimeSum;
-        private long containersRemovedFailed;
-        private long nodesRemoved;
-        private long nodesRemovedFailed;
-        private long processingTimeout;
-        private long overallRuntime;
-        private long retrieveContainersRuntime;
-        private long retrieveContainersCalls;
-
-        public void writeStatisticsToLog() {
-            LOGGER.debug(
-                    "Watchdog Statistics: "
-                            + "Number of overall executions: {}, "
-                            + "Executions with processing timeout: {}, "
-                            + "Containers removed gracefully: {}, "
-                            + "Containers removed with force: {}, "
-                            + "Containers removal failed: {}, "
-                            + "Nodes removed successfully: {}, "
-                            + "Nodes removal failed: {}, "
-                            + "Container removal average duration (gracefully): {} ms, "
-                            + "Container removal average duration (force): {} ms, "
-                            + "Average overall runtime of watchdog: {} ms, "
-                            + "Average runtime of container retrieval: {} ms",
-                    executions,
-                    processingTimeout,
-                    containersRemovedGracefully,
-                    containersRemovedForce,
-                    containersRemovedFailed,
-                    nodesRemoved,
-                    nodesRemovedFailed,
-                    getContainerRemovalAverageDurationGracefully(),
-                    getContainerRemovalAverageDurationForce(),
-                    getAverageOverallRuntime(),
-                    getAverageRetrieveContainerRuntime());
-        }
-
-        private void addExecution() {
-            executions++;
-        }
-
-        private void addContainerRemovalGracefully(long runtime) {
-            containersRemovedGracefully++;
-            containersRemovedGracefullyRuntimeSum += runtime;
-        }
-
-        private void addContainerRemovalForce(long runtime) {
-            containersRemovedForce++;
-            containersRemovedForceRuntimeSum += runtime;
+    private void removeNodeWithoutContainer(DockerTransientNode dtn) {
+        SlaveComputer computer = dtn.getComputer();
+        if (computer == null) {
+            // Probably the node is being closed down right now, so we shouldn't touch it.
+            return;
         }
 
-        private void addContainerRemovalFailed() {
-            containersRemovedFailed++;
+        if (!computer.isOffline()) {
+            // the node is still running; we should not touch it.
+            return;
         }
 
-        private void addNodeRemoved() {
-            nodesRemoved++;
-        }
+        // the container is already gone for the node, but the node did not notice it yet properly
+        LOGGER.info(
+                "{} has container ID {}, but the container does not exist in any docker cloud. Will remove node.",
+                dtn,
+                dtn.getContainerId());
 
-        private void addNodeRemovedFailed() {
-            nodesRemovedFailed++;
+        try {
+            removeNode(dtn);
+            executionStatistics.recordNodeRemoved(dtn.getCloudId());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to remove orphaned node {}", dtn.toString(), e);
+            executionStatistics.recordNodeRemovalFailed(dtn.getCloudId());
         }
+    }
 
-        private void addProcessingTimeout() {
-            processingTimeout++;
+    /**
+     * Checks a single container now, rather than waiting for the next
+     * execution, e.g. because docker has told us that it has been created or
+     * that it has stopped. If it has no node then it gets removed, just as if
+     * we had found it during a normal execution.
+     *
+     * @param dc          The cloud the container was found on.
+     * @param containerId The container.
+     */
+    @Restricted(NoExternalUse.class)
+    void checkContainer(DockerCloud dc, String containerId) {
+        if (!isWatchdogEnabled() || !isEphemeralNodeRecoveryComplete()) {
+            return;
         }
-
-        private void addOverallRuntime(long runtime) {
-            overallRuntime += runtime;
+        if (dc.getDisabled().isDisabled()) {
+            return;
         }
-
-        private void addRetrieveContainerRuntime(long runtime) {
-            retrieveContainersRuntime += runtime;
-            retrieveContainersCalls++;
+        try (final DockerClient client = dc.getDockerApi().getClient()) {
+            final ContainerNodeNameMap csm = retrieveContainers(dc, client, containerId);
+            final Instant snapshotInstant = clock.instant();
+            cleanUpSuperfluousContainers(
+                    client,
+                    loadNodeMap(),
+                    csm,
+                    dc,
+                    snapshotInstant,
+                    snapshotInstant.plus(ENDPOINT_PROCESSING_TIMEOUT));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to properly close a DockerClient instance after checking container {}", containerId, e);
+        } catch (ContainersRetrievalException handledByCode) {
+            // already logged; we'll try again on the next execution.
         }
+    }
 
-        private String getAverageOverallRuntime() {
-            if (executions == 0) {
-                return "0";
-            }
-            return Long.toString(overallRuntime / executions);
+    /**
+     * Removes the node of a container now, rather than waiting for the next
+     * execution, because docker has told us the container has been removed.
+     * As with a normal execution, the node is only removed if it's offline.
+     *
+     * @param containerId The container that has been removed.
+     */
+    @Restricted(NoExternalUse.class)
+    void checkNodesOfRemovedContainer(String containerId) {
+        if (!isWatchdogEnabled() || !isEphemeralNodeRecoveryComplete()) {
+            return;
         }
-
-        private String getContainerRemovalAverageDurationForce() {
-            if (containersRemovedForce == 0) {
-                return "0";
+        for (Node node : getAllNodes()) {
+            if (node instanceof DockerTransientNode) {
+                final DockerTransientNode dtn = (DockerTransientNode) node;
+                if (containerId.equals(dtn.getContainerId())) {
+                    removeNodeWithoutContainer(dtn);
+                }
             }
-            return Long.toString(containersRemovedForceRuntimeSum / containersRemovedForce);
         }
+    }
 
-        private String getContainerRemovalAverageDurationGracefully() {
-            if (containersRemovedGracefully == 0) {
-                return "0";
-            }
-            return Long.toString(containersRemovedGracefullyRuntimeSum / containersRemovedGracefully);
-        }
+    private void checkForTimeout(Instant startedTimestamp) {
+        final Instant now = clock.instant();
+        Duration runtime = Duration.between(startedTimestamp, now);
 
-        private String getAverageRetrieveContainerRuntime() {
-            if (retrieveContainersCalls == 0) {
-                return "0";
-            }
-            return Long.toString(retrieveContainersRuntime / retrieveContainersCalls);
+        if (runtime.compareTo(PROCESSING_TIMEOUT) > 0) {
+            throw new WatchdogProcessingTimeout();
         }
     }
 }
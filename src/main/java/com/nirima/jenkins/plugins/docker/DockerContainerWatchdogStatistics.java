@@ -0,0 +1,401 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * What the {@link DockerContainerWatchdog} has been doing, both since Jenkins
+ * started and over a recent window of time (so that recent problems don't get
+ * hidden by averages over a long time), overall and for each
+ * {@link DockerCloud}, along with the details of its last execution.
+ * <p>
+ * Docker hosts are checked in parallel (and containers can be checked because
+ * of docker events at any time), so this is updated by several threads at
+ * once.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerContainerWatchdogStatistics {
+    /** How long, in minutes, our "recent" window covers. */
+    private static final int WINDOW_IN_MINUTES = JenkinsUtils.getSystemPropertyLong(
+                    DockerContainerWatchdogStatistics.class.getName() + ".windowInMinutes", 60L)
+            .intValue();
+
+    private static final DockerContainerWatchdogStatistics INSTANCE =
+            new DockerContainerWatchdogStatistics(WINDOW_IN_MINUTES, System::currentTimeMillis);
+
+    /** The things we count (and, mostly, time). */
+    public enum Metric {
+        EXECUTIONS("Executions"),
+        PROCESSING_TIMEOUTS("Executions with processing timeout"),
+        ENDPOINT_TIMEOUTS("Docker hosts with processing timeout"),
+        CONTAINER_RETRIEVALS("Container list retrievals"),
+        CONTAINERS_REMOVED_GRACEFULLY("Containers removed gracefully"),
+        CONTAINERS_REMOVED_FORCE("Containers removed with force"),
+        CONTAINER_REMOVALS_FAILED("Container removals failed"),
+        NODES_REMOVED("Nodes removed"),
+        NODE_REMOVALS_FAILED("Node removals failed");
+
+        private final String description;
+
+        Metric(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final int windowInMinutes;
+    private final LongSupplier currentTimeMillis;
+
+    private final Counts allTime = new Counts();
+    private final Window window;
+    private final Map<String, Window> windowByCloud = new HashMap<>();
+
+    /** The execution that's in progress, if any. */
+    private Execution currentExecution;
+
+    private Execution lastExecution;
+
+    DockerContainerWatchdogStatistics(int windowInMinutes, @NonNull LongSupplier currentTimeMillis) {
+        this.windowInMinutes = Math.max(1, windowInMinutes);
+        this.currentTimeMillis = currentTimeMillis;
+        this.window = new Window(this.windowInMinutes);
+    }
+
+    /** @return The statistics used by everything in this JVM. */
+    @NonNull
+    public static DockerContainerWatchdogStatistics get() {
+        return INSTANCE;
+    }
+
+    /** @return How long, in minutes, the {@link #getRecent() recent} statistics cover. */
+    public int getWindowInMinutes() {
+        return windowInMinutes;
+    }
+
+    /** @return Everything we count, in the order we should show them. */
+    @NonNull
+    public List<Metric> getMetrics() {
+        return List.of(Metric.values());
+    }
+
+    /*
+     * Recording
+     */
+
+    synchronized void recordExecutionStarted() {
+        currentExecution = new Execution(currentTimeMillis.getAsLong());
+    }
+
+    /**
+     * @param runtimeInMs How long the execution took.
+     * @param outcome     What happened, in words.
+     * @param timedOut    true if it ran out of time.
+     */
+    synchronized void recordExecutionFinished(long runtimeInMs, @NonNull String outcome, boolean timedOut) {
+        record(null, Metric.EXECUTIONS, runtimeInMs);
+        if (timedOut) {
+            record(null, Metric.PROCESSING_TIMEOUTS, 0L);
+        }
+        final Execution execution =
+                currentExecution != null ? currentExecution : new Execution(currentTimeMillis.getAsLong());
+        execution.finish(runtimeInMs, outcome);
+        lastExecution = execution;
+        currentExecution = null;
+    }
+
+    synchronized void recordEndpointTimeout(@CheckForNull String cloudName) {
+        record(cloudName, Metric.ENDPOINT_TIMEOUTS, 0L);
+    }
+
+    synchronized void recordContainersRetrieved(@CheckForNull String cloudName, long runtimeInMs, int containers) {
+        record(cloudName, Metric.CONTAINER_RETRIEVALS, runtimeInMs);
+        if (currentExecution != null) {
+            currentExecution.containersFound += containers;
+        }
+    }
+
+    synchronized void recordContainerRemoved(@CheckForNull String cloudName, boolean forced, long runtimeInMs) {
+        record(cloudName, forced ? Metric.CONTAINERS_REMOVED_FORCE : Metric.CONTAINERS_REMOVED_GRACEFULLY, runtimeInMs);
+    }
+
+    synchronized void recordContainerRemovalFailed(@CheckForNull String cloudName) {
+        record(cloudName, Metric.CONTAINER_REMOVALS_FAILED, 0L);
+    }
+
+    synchronized void recordNodeRemoved(@CheckForNull String cloudName) {
+        record(cloudName, Metric.NODES_REMOVED, 0L);
+    }
+
+    synchronized void recordNodeRemovalFailed(@CheckForNull String cloudName) {
+        record(cloudName, Metric.NODE_REMOVALS_FAILED, 0L);
+    }
+
+    private void record(@CheckForNull String cloudName, Metric metric, long runtimeInMs) {
+        final long nowInMinutes = nowInMinutes();
+        allTime.add(metric, runtimeInMs);
+        window.add(nowInMinutes, metric, runtimeInMs);
+        if (cloudName != null) {
+            windowByCloud
+                    .computeIfAbsent(cloudName, k -> new Window(windowInMinutes))
+                    .add(nowInMinutes, metric, runtimeInMs);
+        }
+        if (currentExecution != null && metric != Metric.EXECUTIONS) {
+            currentExecution.counts.add(metric, runtimeInMs);
+        }
+    }
+
+    /*
+     * Reporting
+     */
+
+    /** @return Everything since Jenkins started. */
+    @NonNull
+    public synchronized Snapshot getAllTime() {
+        return new Snapshot(allTime);
+    }
+
+    /** @return Everything in the last {@link #getWindowInMinutes()} minutes. */
+    @NonNull
+    public synchronized Snapshot getRecent() {
+        return new Snapshot(window.sum(nowInMinutes()));
+    }
+
+    /**
+     * @return Everything in the last {@link #getWindowInMinutes()} minutes,
+     *         for each cloud (by name) that had anything happen.
+     */
+    @NonNull
+    public synchronized SortedMap<String, Snapshot> getRecentByCloud() {
+        final long nowInMinutes = nowInMinutes();
+        final SortedMap<String, Snapshot> result = new TreeMap<>();
+        for (Map.Entry<String, Window> entry : windowByCloud.entrySet()) {
+            final Counts counts = entry.getValue().sum(nowInMinutes);
+            if (!counts.isEmpty()) {
+                result.put(entry.getKey(), new Snapshot(counts));
+            }
+        }
+        return result;
+    }
+
+    /** @return The last execution that finished, or null if there hasn't been one. */
+    @CheckForNull
+    public synchronized Execution getLastExecution() {
+        return lastExecution;
+    }
+
+    private long nowInMinutes() {
+        return TimeUnit.MILLISECONDS.toMinutes(currentTimeMillis.getAsLong());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "last " + windowInMinutes + " minutes: " + getRecent() + "; since startup: " + getAllTime();
+    }
+
+    /**
+     * Counts, and total/maximum durations, of each {@link Metric}.
+     */
+    private static final class Counts {
+        private final long[] count = new long[Metric.values().length];
+        private final long[] totalMillis = new long[Metric.values().length];
+        private final long[] maxMillis = new long[Metric.values().length];
+
+        void add(Metric metric, long millis) {
+            final int i = metric.ordinal();
+            count[i]++;
+            totalMillis[i] += millis;
+            maxMillis[i] = Math.max(maxMillis[i], millis);
+        }
+
+        void addAll(Counts other) {
+            for (int i = 0; i < count.length; i++) {
+                count[i] += other.count[i];
+                totalMillis[i] += other.totalMillis[i];
+                maxMillis[i] = Math.max(maxMillis[i], other.maxMillis[i]);
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < count.length; i++) {
+                count[i] = 0L;
+                totalMillis[i] = 0L;
+                maxMillis[i] = 0L;
+            }
+        }
+
+        boolean isEmpty() {
+            for (long c : count) {
+                if (c != 0L) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@link Counts} for the last few minutes, in one-minute buckets which get
+     * reused as time moves on.
+     */
+    private static final class Window {
+        private final Counts[] buckets;
+        /** Which minute each bucket is counting. */
+        private final long[] bucketMinutes;
+
+        Window(int minutes) {
+            buckets = new Counts[minutes];
+            bucketMinutes = new long[minutes];
+            for (int i = 0; i < minutes; i++) {
+                buckets[i] = new Counts();
+                bucketMinutes[i] = -1L;
+            }
+        }
+
+        void add(long nowInMinutes, Metric metric, long millis) {
+            final int i = (int) (nowInMinutes % buckets.length);
+            if (bucketMinutes[i] != nowInMinutes) {
+                buckets[i].clear();
+                bucketMinutes[i] = nowInMinutes;
+            }
+            buckets[i].add(metric, millis);
+        }
+
+        Counts sum(long nowInMinutes) {
+            final Counts result = new Counts();
+            for (int i = 0; i < buckets.length; i++) {
+                if (bucketMinutes[i] > nowInMinutes - buckets.length) {
+                    result.addAll(buckets[i]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * An unchanging copy of some statistics.
+     */
+    public static final class Snapshot {
+        private final Map<Metric, long[]> values = new EnumMap<>(Metric.class);
+
+        Snapshot(Counts counts) {
+            for (Metric metric : Metric.values()) {
+                final int i = metric.ordinal();
+                values.put(metric, new long[] {counts.count[i], counts.totalMillis[i], counts.maxMillis[i]});
+            }
+        }
+
+        /**
+         * @param metric What was counted.
+         * @return How many times it happened.
+         */
+        public long getCount(@NonNull Metric metric) {
+            return values.get(metric)[0];
+        }
+
+        /**
+         * @param metric What was counted.
+         * @return How long, in milliseconds, it took on average (or zero for
+         *         things we don't time).
+         */
+        public long getAverageMillis(@NonNull Metric metric) {
+            final long[] v = values.get(metric);
+            return v[0] == 0L ? 0L : v[1] / v[0];
+        }
+
+        /**
+         * @param metric What was counted.
+         * @return The longest time, in milliseconds, it took.
+         */
+        public long getMaxMillis(@NonNull Metric metric) {
+            return values.get(metric)[2];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (Metric metric : Metric.values()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(metric.getDescription()).append(": ").append(getCount(metric));
+                if (getMaxMillis(metric) > 0L) {
+                    sb.append(" (average ").append(getAverageMillis(metric)).append(" ms)");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * What happened during one execution of the watchdog.
+     */
+    public static final class Execution {
+        private final long startedMillis;
+        private final Counts counts = new Counts();
+        private long containersFound;
+        private long runtimeMillis;
+        private String outcome;
+
+        Execution(long startedMillis) {
+            this.startedMillis = startedMillis;
+        }
+
+        void finish(long runtimeInMs, String outcome) {
+            this.runtimeMillis = runtimeInMs;
+            this.outcome = outcome;
+        }
+
+        /** @return When it started. */
+        @NonNull
+        public Date getStarted() {
+            return new Date(startedMillis);
+        }
+
+        /** @return How long, in milliseconds, it took. */
+        public long getRuntimeMillis() {
+            return runtimeMillis;
+        }
+
+        /** @return How it ended, in words. */
+        public String getOutcome() {
+            return outcome;
+        }
+
+        /** @return How many of our containers it found. */
+        public long getContainersFound() {
+            return containersFound;
+        }
+
+        /** @return How many containers it removed. */
+        public long getContainersRemoved() {
+            return counts.count[Metric.CONTAINERS_REMOVED_GRACEFULLY.ordinal()]
+                    + counts.count[Metric.CONTAINERS_REMOVED_FORCE.ordinal()];
+        }
+
+        /** @return How many nodes it removed. */
+        public long getNodesRemoved() {
+            return counts.count[Metric.NODES_REMOVED.ordinal()];
+        }
+
+        /** @return What it did. */
+        @NonNull
+        public Snapshot getCounts() {
+            return new Snapshot(counts);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Info;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pins the containers we create on a docker host to ranges of that host's CPU
+ * cores, so that agents sharing a big host don't all float across every core
+ * and thrash each other's caches.
+ * <p>
+ * Each container gets a contiguous range of cores, sized from its template's
+ * {@link DockerTemplateBase#getCpus()}. We hand out ranges that no other
+ * container is using if we can, and share the least-used cores if we can't.
+ * Ranges are released when the agent's container is stopped.
+ * <p>
+ * Which cores each container is using is also recorded in a container label,
+ * so we can work out what's in use after Jenkins restarts (or if a release
+ * got missed).
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerCpusetAllocator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerCpusetAllocator.class);
+
+    /**
+     * How long we trust an allocation whose container docker doesn't know
+     * about, i.e. how long we allow between allocation and container creation.
+     */
+    private static final long PENDING_ALLOCATION_GRACE_PERIOD_IN_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Map<String, DockerCpusetAllocator> ALLOCATORS = new ConcurrentHashMap<>();
+
+    private final String dockerHostUri;
+
+    /** Zero until we've asked docker. */
+    private volatile int numberOfCores;
+
+    /** Allocations, by node name. */
+    private final Map<String, Allocation> allocations = new HashMap<>();
+
+    private volatile boolean recoveredFromContainers;
+
+    DockerCpusetAllocator(@NonNull String dockerHostUri) {
+        this.dockerHostUri = dockerHostUri;
+    }
+
+    /**
+     * @param dockerHostUri The docker host.
+     * @return The allocator for that docker host.
+     */
+    @NonNull
+    static DockerCpusetAllocator forDockerHost(@NonNull String dockerHostUri) {
+        return ALLOCATORS.computeIfAbsent(dockerHostUri, DockerCpusetAllocator::new);
+    }
+
+    /**
+     * Releases the cores allocated to a node, if any.
+     *
+     * @param dockerHostUri The docker host the node's container was on.
+     * @param nodeName      The node.
+     */
+    public static void release(@NonNull String dockerHostUri, @NonNull String nodeName) {
+        final DockerCpusetAllocator allocator = ALLOCATORS.get(dockerHostUri);
+        if (allocator != null) {
+            allocator.release(nodeName);
+        }
+    }
+
+    /**
+     * Picks a range of cores for a new container.
+     *
+     * @param client        A client for our docker host.
+     * @param nodeName      The node the container will be for.
+     * @param coresRequired How many cores the container should have.
+     * @return A cpuset string, e.g. <code>4-7</code>, or null if the container
+     *         should not be pinned.
+     */
+    @CheckForNull
+    String allocate(@NonNull DockerClient client, @NonNull String nodeName, int coresRequired) {
+        if (coresRequired <= 0) {
+            return null;
+        }
+        // We only hold our lock while we work things out, never while we talk
+        // to docker, so a slow docker host doesn't hold up anyone else.
+        if (numberOfCores <= 0) {
+            final Info info = client.infoCmd().exec();
+            final Integer ncpu = info.getNCPU();
+            numberOfCores = ncpu == null ? 0 : ncpu;
+        }
+        if (coresRequired >= numberOfCores) {
+            return null; // pinning would achieve nothing.
+        }
+        List<Container> containers = recoveredFromContainers ? null : client.listContainersCmd().exec();
+        while (true) {
+            synchronized (this) {
+                if (containers != null) {
+                    recoverFromContainers(containers);
+                }
+                final int[] usage = calcUsage();
+                final int firstCore = chooseFirstCore(usage, coresRequired);
+                if (containers != null || isFree(usage, firstCore, coresRequired)) {
+                    final Allocation allocation =
+                            new Allocation(firstCore, coresRequired, System.currentTimeMillis());
+                    allocations.put(nodeName, allocation);
+                    final String result = allocation.toCpusetString();
+                    LOGGER.debug("Allocated cpuset {} on {} to node {}", result, dockerHostUri, nodeName);
+                    return result;
+                }
+            }
+            // before we start sharing, make sure we're not holding on to
+            // allocations whose containers have gone.
+            containers = client.listContainersCmd().exec();
+        }
+    }
+
+    /**
+     * Releases the cores allocated to a node, if any.
+     *
+     * @param nodeName The node.
+     */
+    synchronized void release(@NonNull String nodeName) {
+        final Allocation removed = allocations.remove(nodeName);
+        if (removed != null) {
+            LOGGER.debug("Released cpuset {} on {} from node {}", removed.toCpusetString(), dockerHostUri, nodeName);
+        }
+    }
+
+    /**
+     * Replaces our idea of what's allocated with what the labels on our
+     * running containers say, keeping any recent allocations whose containers
+     * haven't been created yet.
+     *
+     * @param containers The running containers on our docker host.
+     */
+    private void recoverFromContainers(List<Container> containers) {
+        final String ourJenkinsInstanceId = DockerTemplateBase.getJenkinsInstanceIdForContainerLabel();
+        final Map<String, Allocation> found = new HashMap<>();
+        for (final Container container : containers) {
+            final Map<String, String> labels = container.getLabels();
+            if (labels == null) {
+                continue;
+            }
+            if (!ourJenkinsInstanceId.equals(labels.get(DockerContainerLabelKeys.JENKINS_INSTANCE_ID))) {
+                continue;
+            }
+            final String nodeName = labels.get(DockerContainerLabelKeys.NODE_NAME);
+            final String cpuset = labels.get(DockerContainerLabelKeys.CPUSET);
+            if (nodeName == null || cpuset == null) {
+                continue;
+            }
+            final Allocation allocation = Allocation.parse(cpuset);
+            if (allocation != null) {
+                found.put(nodeName, allocation);
+            }
+        }
+        final long now = System.currentTimeMillis();
+        allocations
+                .entrySet()
+                .removeIf(e -> !found.containsKey(e.getKey())
+                        && now - e.getValue().allocatedTimestamp > PENDING_ALLOCATION_GRACE_PERIOD_IN_MS);
+        allocations.putAll(found);
+        recoveredFromContainers = true;
+        LOGGER.debug("Found {} containers pinned to cores on {}", found.size(), dockerHostUri);
+    }
+
+    private int[] calcUsage() {
+        final int[] usage = new int[numberOfCores];
+        for (final Allocation allocation : allocations.values()) {
+            for (int core = allocation.firstCore; core < allocation.firstCore + allocation.numberOfCores; core++) {
+                if (core < usage.length) {
+                    usage[core]++;
+                }
+            }
+        }
+        return usage;
+    }
+
+    private static boolean isFree(int[] usage, int firstCore, int coresRequired) {
+        for (int core = firstCore; core < firstCore + coresRequired; core++) {
+            if (usage[core] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chooses the contiguous range of cores that's least used, preferring
+     * ranges that start on a multiple of the range's size (so that ranges
+     * line up and don't straddle each other) and then lower-numbered cores.
+     *
+     * @param usage         How many containers are using each core.
+     * @param coresRequired How many cores are wanted; must be less than the
+     *                      number of cores.
+     * @return The first core of the chosen range.
+     */
+    @Restricted(NoExternalUse.class)
+    static int chooseFirstCore(@NonNull int[] usage, int coresRequired) {
+        int bestFirstCore = -1;
+        int bestBusiest = 0;
+        int bestTotal = 0;
+        boolean bestAligned = false;
+        for (int firstCore = 0; firstCore + coresRequired <= usage.length; firstCore++) {
+            int busiest = 0;
+            int total = 0;
+            for (int core = firstCore; core < firstCore + coresRequired; core++) {
+                busiest = Math.max(busiest, usage[core]);
+                total += usage[core];
+            }
+            final boolean aligned = firstCore % coresRequired == 0;
+            final boolean better = bestFirstCore < 0
+                    || busiest < bestBusiest
+                    || (busiest == bestBusiest && total < bestTotal)
+                    || (busiest == bestBusiest && total == bestTotal && aligned && !bestAligned);
+            if (better) {
+                bestFirstCore = firstCore;
+                bestBusiest = busiest;
+                bestTotal = total;
+                bestAligned = aligned;
+            }
+        }
+        return Math.max(bestFirstCore, 0);
+    }
+
+    /**
+     * Works out how many cores a container should be pinned to.
+     *
+     * @param cpus The template's {@link DockerTemplateBase#getCpus()}.
+     * @return The number of cores, or zero if the container shouldn't be
+     *         pinned.
+     */
+    @Restricted(NoExternalUse.class)
+    static int calcCoresRequired(@CheckForNull String cpus) {
+        if (cpus == null || cpus.isBlank()) {
+            return 0;
+        }
+        try {
+            final double cpusValue = Double.parseDouble(cpus.trim());
+            return cpusValue > 0 ? (int) Math.ceil(cpusValue) : 0;
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /** A range of cores given to a container. */
+    private static final class Allocation {
+        private final int firstCore;
+        private final int numberOfCores;
+        private final long allocatedTimestamp;
+
+        Allocation(int firstCore, int numberOfCores, long allocatedTimestamp) {
+            this.firstCore = firstCore;
+            this.numberOfCores = numberOfCores;
+            this.allocatedTimestamp = allocatedTimestamp;
+        }
+
+        String toCpusetString() {
+            return toCpusetString(firstCore, numberOfCores);
+        }
+
+        static String toCpusetString(int firstCore, int numberOfCores) {
+            if (numberOfCores == 1) {
+                return Integer.toString(firstCore);
+            }
+            return firstCore + "-" + (firstCore + numberOfCores - 1);
+        }
+
+        /**
+         * @param cpuset A cpuset string that we wrote, e.g. <code>4-7</code>.
+         * @return The allocation, or null if it isn't something we'd have written.
+         */
+        @CheckForNull
+        static Allocation parse(@NonNull String cpuset) {
+            final String[] bounds = cpuset.trim().split("-");
+            if (bounds.length > 2) {
+                return null;
+            }
+            try {
+                final int first = Integer.parseInt(bounds[0].trim());
+                final int last = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : first;
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                // it's on a running container, so it's not pending.
+                return new Allocation(first, last - first + 1, 0L);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+}
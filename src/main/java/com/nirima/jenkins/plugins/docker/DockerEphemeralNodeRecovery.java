@@ -0,0 +1,198 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.TaskListener;
+import io.jenkins.docker.DockerTransientNode;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recreates the nodes of single-use agents that weren't saved to disk (see
+ * {@link io.jenkins.docker.DockerEphemeralNode}) when Jenkins starts, so that
+ * their containers, which are still running, can carry on being used (and
+ * aren't mistaken for orphans by the {@link DockerContainerWatchdog}).
+ * <p>
+ * Everything we need comes from the labels we gave the container when we
+ * created it. As we can't know what the container did while Jenkins was
+ * down, a recreated node only takes the build that was already running on it
+ * (see {@link DockerTemplate#recreateEphemeralNode}).
+ */
+@Restricted(NoExternalUse.class)
+public class DockerEphemeralNodeRecovery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerEphemeralNodeRecovery.class);
+
+    /**
+     * The longest we'll wait for the docker hosts to tell us what containers
+     * they have. Any that haven't answered by then are left to the
+     * {@link DockerContainerWatchdog}, which waits for us before it starts.
+     */
+    private static final long LIST_TIMEOUT_IN_MS = JenkinsUtils.getSystemPropertyLong(
+            DockerEphemeralNodeRecovery.class.getName() + ".listTimeoutInMs", 60L * 1000L);
+
+    private static volatile boolean complete;
+
+    DockerEphemeralNodeRecovery() {}
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void recoverOnStartup() {
+        if (!DockerTemplate.isEphemeralOneShotNodesEnabled()) {
+            // we never made any nodes we'd have to recreate.
+            complete = true;
+            return;
+        }
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                final int recovered = new DockerEphemeralNodeRecovery().recover(DockerCloud.instances());
+                if (recovered > 0) {
+                    LOGGER.info("Recreated {} ephemeral node(s) for containers that were still running", recovered);
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error("Failed to recreate ephemeral nodes", ex);
+            } finally {
+                complete = true;
+            }
+        });
+    }
+
+    /**
+     * @return true once we've finished recreating nodes after Jenkins started.
+     *         Until then, containers without nodes may just be waiting for us.
+     */
+    static boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Recreates the nodes for any running containers that had ephemeral nodes.
+     *
+     * @param clouds The clouds whose containers we're to look at.
+     * @return How many nodes we recreated.
+     */
+    int recover(List<DockerCloud> clouds) {
+        final Map<String, String> labelFilter =
+                Map.of(DockerContainerLabelKeys.JENKINS_INSTANCE_ID, getJenkinsInstanceId());
+        // ask all the docker hosts at once, so one that's slow can't hold up the others.
+        final List<CompletableFuture<List<Container>>> listings = new ArrayList<>(clouds.size());
+        for (final DockerCloud cloud : clouds) {
+            listings.add(CompletableFuture.supplyAsync(() -> listContainers(cloud, labelFilter), getExecutor()));
+        }
+        final long deadlineInNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LIST_TIMEOUT_IN_MS);
+        int recovered = 0;
+        for (int i = 0; i < clouds.size(); i++) {
+            final DockerCloud cloud = clouds.get(i);
+            final DockerAPI api = cloud.getDockerApi();
+            final List<Container> containers;
+            try {
+                final long remainingInNanos = Math.max(0L, deadlineInNanos - System.nanoTime());
+                containers = listings.get(i).get(remainingInNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while listing containers in cloud {}", cloud.name);
+                break;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOGGER.warn("Unable to list containers in cloud {}", cloud.name, ex);
+                continue;
+            }
+            for (final Container container : containers) {
+                final Map<String, String> labels = container.getLabels() == null ? Map.of() : container.getLabels();
+                final String remoteFs = labels.get(DockerContainerLabelKeys.EPHEMERAL_NODE_REMOTE_FS);
+                final String nodeName = labels.get(DockerContainerLabelKeys.NODE_NAME);
+                final String templateName = labels.get(DockerContainerLabelKeys.TEMPLATE_NAME);
+                if (remoteFs == null || nodeName == null || templateName == null) {
+                    continue;
+                }
+                if (nodeExists(nodeName)) {
+                    // e.g. another cloud pointing at the same docker host got here first.
+                    continue;
+                }
+                final DockerTemplate template = findTemplate(cloud, templateName);
+                if (template == null) {
+                    continue;
+                }
+                try {
+                    final DockerTransientNode node =
+                            recreateNode(template, api, nodeName, container.getId(), remoteFs);
+                    node.setCloudId(cloud.name);
+                    addNode(node);
+                    recovered++;
+                    LOGGER.info(
+                            "Recreated node {} for container {} in cloud {}", nodeName, container.getId(), cloud.name);
+                } catch (Exception ex) {
+                    LOGGER.warn(
+                            "Unable to recreate node {} for container {} in cloud {}",
+                            nodeName,
+                            container.getId(),
+                            cloud.name,
+                            ex);
+                }
+            }
+        }
+        return recovered;
+    }
+
+    private static List<Container> listContainers(DockerCloud cloud, Map<String, String> labelFilter) {
+        try (final DockerClient client = cloud.getDockerApi().getClient()) {
+            // running containers only; anything else is for the watchdog.
+            return client.listContainersCmd().withLabelFilter(labelFilter).exec();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /*
+     * Methods used for decoupling on unit testing
+     */
+
+    protected Executor getExecutor() {
+        return Computer.threadPoolForRemoting;
+    }
+
+    protected String getJenkinsInstanceId() {
+        return DockerTemplateBase.getJenkinsInstanceIdForContainerLabel();
+    }
+
+    protected boolean nodeExists(String nodeName) {
+        return Jenkins.get().getNode(nodeName) != null;
+    }
+
+    protected DockerTransientNode recreateNode(
+            DockerTemplate template, DockerAPI api, String nodeName, String containerId, String remoteFs)
+            throws IOException, InterruptedException, Descriptor.FormException {
+        return template.recreateEphemeralNode(api, nodeName, containerId, remoteFs, TaskListener.NULL);
+    }
+
+    protected void addNode(DockerTransientNode node) throws IOException {
+        node.robustlyAddToJenkins();
+    }
+
+    @CheckForNull
+    private static DockerTemplate findTemplate(DockerCloud cloud, String templateName) {
+        for (final DockerTemplate template : cloud.getTemplates()) {
+            if (templateName.equals(template.getName())) {
+                return template;
+            }
+        }
+        return null;
+    }
+}
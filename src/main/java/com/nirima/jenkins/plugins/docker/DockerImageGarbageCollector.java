@@ -0,0 +1,230 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.ConflictException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Image;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodic job which removes least-recently-used images from the docker hosts
+ * of those {@link DockerCloud}s that have an
+ * {@link DockerCloud#getImageGcDiskBudget() image disk budget} configured.
+ * <p>
+ * Images are only ever considered for removal if they are not used by any
+ * container (running or not) on that host and if they are not referenced by
+ * any {@link DockerTemplate}. Of the remaining images, the ones which have not
+ * been used for provisioning for the longest time (or, if we've never used
+ * them, the oldest ones) get removed until the host is within its budget
+ * again.
+ */
+@Extension
+public class DockerImageGarbageCollector extends AsyncPeriodicWork {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerImageGarbageCollector.class);
+
+    /**
+     * The recurrence period how often this task shall be run.
+     * <p>
+     * NB: Reading the property here statically is the right thing to do,
+     * because getRecurrencePeriod() is required to return a constant.
+     */
+    private static final long RECURRENCE_PERIOD_IN_MS = JenkinsUtils.getSystemPropertyLong(
+                    DockerImageGarbageCollector.class.getName() + ".recurrenceInSeconds", 15L * 60L)
+            * 1000L;
+
+    /**
+     * When each image (by image ID) was last used to provision a container.
+     * Image IDs are content hashes, so they are the same on every docker host
+     * and we can share this between all clouds.
+     */
+    private static final Map<String, Long> IMAGE_LAST_USED = new ConcurrentHashMap<>();
+
+    public DockerImageGarbageCollector() {
+        super(String.format("%s Asynchronous Periodic Work", DockerImageGarbageCollector.class.getSimpleName()));
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD_IN_MS;
+    }
+
+    /**
+     * Records that an image has just been used to provision a container.
+     *
+     * @param imageId The ID of the image, as returned by inspecting it.
+     */
+    @Restricted(NoExternalUse.class)
+    static void recordImageUsage(@CheckForNull String imageId) {
+        if (imageId != null) {
+            IMAGE_LAST_USED.put(imageId, System.currentTimeMillis());
+        }
+    }
+
+    /*
+     * Methods used for decoupling on unit testing
+     */
+
+    protected List<DockerCloud> getAllClouds() {
+        return DockerCloud.instances();
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!JenkinsUtils.getSystemPropertyBoolean(DockerImageGarbageCollector.class.getName() + ".enabled", true)) {
+            LOGGER.debug("Docker Image Garbage Collector is disabled based on system configuration");
+            return;
+        }
+        final List<DockerCloud> allClouds = getAllClouds();
+        for (final DockerCloud cloud : allClouds) {
+            final Integer budgetInMB = cloud.getImageGcDiskBudget();
+            if (budgetInMB == null) {
+                continue;
+            }
+            if (cloud.getDisabled().isDisabled()) {
+                LOGGER.debug("Not collecting images on Docker Cloud {}, as it is disabled", cloud.getDisplayName());
+                continue;
+            }
+            listener.getLogger()
+                    .println(String.format("Collecting unused images on Docker Cloud %s", cloud.getDisplayName()));
+            try {
+                collect(cloud, allClouds, budgetInMB * 1024L * 1024L);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Unable to collect unused images on Docker Cloud {}", cloud.getDisplayName(), ex);
+            }
+        }
+    }
+
+    private void collect(DockerCloud cloud, List<DockerCloud> allClouds, long budgetInBytes) throws IOException {
+        final DockerAPI dockerApi = cloud.getDockerApi();
+        try (final DockerClient client = dockerApi.getClient()) {
+            final List<Image> images = client.listImagesCmd().exec();
+            final long used = getTotalSize(images);
+            if (used <= budgetInBytes) {
+                LOGGER.debug(
+                        "Images on Docker Cloud {} use {} bytes, within budget of {} bytes",
+                        cloud.getDisplayName(),
+                        used,
+                        budgetInBytes);
+                return;
+            }
+            final Set<String> protectedImageIds = getImageIdsInUse(client, allClouds);
+            final List<Image> toBeRemoved = selectImagesToRemove(images, protectedImageIds, budgetInBytes);
+            LOGGER.info(
+                    "Images on Docker Cloud {} use {} bytes, exceeding budget of {} bytes; removing {} unused images",
+                    cloud.getDisplayName(),
+                    used,
+                    budgetInBytes,
+                    toBeRemoved.size());
+            for (final Image image : toBeRemoved) {
+                final String imageId = image.getId();
+                try {
+                    client.removeImageCmd(imageId).withForce(false).exec();
+                    IMAGE_LAST_USED.remove(imageId);
+                    LOGGER.info("Removed unused image {} from Docker Cloud {}", imageId, cloud.getDisplayName());
+                } catch (NotFoundException handledByCode) {
+                    IMAGE_LAST_USED.remove(imageId);
+                } catch (ConflictException ex) {
+                    // e.g. a container got created from it since we looked
+                    LOGGER.debug("Unable to remove image {}: {}", imageId, ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out which images must not be removed: those used by any container
+     * on this host, and those referenced by any template in any cloud (we
+     * can't tell which clouds share a host, so we err on the side of caution).
+     */
+    private static Set<String> getImageIdsInUse(DockerClient client, List<DockerCloud> allClouds) {
+        final Set<String> result = new HashSet<>();
+        for (final Container container : client.listContainersCmd().withShowAll(true).exec()) {
+            result.add(container.getImageId());
+        }
+        final Set<String> referencedImageNames = new HashSet<>();
+        for (final DockerCloud cloud : allClouds) {
+            for (final DockerTemplate template : cloud.getTemplates()) {
+                referencedImageNames.add(template.getFullImageId());
+            }
+        }
+        for (final String imageName : referencedImageNames) {
+            try {
+                result.add(client.inspectImageCmd(imageName).exec().getId());
+            } catch (NotFoundException handledByCode) {
+                // not on this host, so nothing to protect.
+            }
+        }
+        return result;
+    }
+
+    private static long getTotalSize(List<Image> images) {
+        long result = 0L;
+        for (final Image image : images) {
+            final Long size = image.getSize();
+            if (size != null) {
+                result += size;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decides which images should be removed in order to get within budget.
+     *
+     * @param images            All the images on the host.
+     * @param protectedImageIds The IDs of images that must not be removed.
+     * @param budgetInBytes     How much disk space the images may use.
+     * @return The images to be removed, least-recently-used first.
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    static List<Image> selectImagesToRemove(
+            @NonNull List<Image> images, @NonNull Set<String> protectedImageIds, long budgetInBytes) {
+        final List<Image> candidates = new ArrayList<>();
+        for (final Image image : images) {
+            if (!protectedImageIds.contains(image.getId())) {
+                candidates.add(image);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(DockerImageGarbageCollector::getLastUsedMillis));
+        long used = getTotalSize(images);
+        final List<Image> result = new ArrayList<>();
+        for (final Image image : candidates) {
+            if (used <= budgetInBytes) {
+                break;
+            }
+            result.add(image);
+            final Long size = image.getSize();
+            used -= size == null ? 0L : size;
+        }
+        return result;
+    }
+
+    private static long getLastUsedMillis(Image image) {
+        final Long lastUsed = IMAGE_LAST_USED.get(image.getId());
+        if (lastUsed != null) {
+            return lastUsed;
+        }
+        final Long created = image.getCreated();
+        return created == null ? 0L : created * 1000L;
+    }
+}
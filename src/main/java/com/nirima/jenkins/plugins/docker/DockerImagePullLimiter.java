@@ -0,0 +1,187 @@
+package com.nirima.jenkins.plugins.docker;
+
+import com.github.dockerjava.core.NameParser;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits how many images we pull at once, both from any one registry and onto
+ * any one docker host, so that a burst of provisioning doesn't saturate the
+ * registry (or the host's network) and cause pulls to time out.
+ * <p>
+ * Pulls that have to wait are queued (fairly) until a slot becomes free.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerImagePullLimiter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerImagePullLimiter.class);
+
+    static final DockerImagePullLimiter INSTANCE = new DockerImagePullLimiter(
+            JenkinsUtils.getSystemPropertyLong(
+                            DockerImagePullLimiter.class.getName() + ".maxConcurrentPullsPerRegistry", 4L)
+                    .intValue(),
+            JenkinsUtils.getSystemPropertyLong(
+                            DockerImagePullLimiter.class.getName() + ".maxConcurrentPullsPerEndpoint", 4L)
+                    .intValue());
+
+    private final int maxPerRegistry;
+    private final int maxPerEndpoint;
+    private final Map<String, Semaphore> registrySlots = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> endpointSlots = new ConcurrentHashMap<>();
+    private final AtomicLong pulls = new AtomicLong();
+    private final AtomicLong pullsThatWaited = new AtomicLong();
+    private final AtomicLong queueWaitMillisSum = new AtomicLong();
+    private final AtomicLong queueWaitMillisMax = new AtomicLong();
+
+    /**
+     * @param maxPerRegistry How many pulls may run at once from any one
+     *                       registry. Zero or less means unlimited.
+     * @param maxPerEndpoint How many pulls may run at once onto any one docker
+     *                       host. Zero or less means unlimited.
+     */
+    DockerImagePullLimiter(int maxPerRegistry, int maxPerEndpoint) {
+        this.maxPerRegistry = maxPerRegistry;
+        this.maxPerEndpoint = maxPerEndpoint;
+    }
+
+    /** @return The limiter used by everything in this JVM. */
+    @NonNull
+    public static DockerImagePullLimiter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Waits until we're allowed to pull the given image onto the given docker
+     * host.
+     *
+     * @param endpointUri The docker host the image will be pulled onto.
+     * @param image       The image to be pulled.
+     * @param logger      Where to tell the user that we're waiting.
+     * @return A {@link Permit} which must be closed once the pull has finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @NonNull
+    Permit acquire(@NonNull String endpointUri, @NonNull String image, @NonNull PrintStream logger)
+            throws InterruptedException {
+        final String registry = getRegistryHostname(image);
+        final Semaphore endpointSemaphore = getSlots(endpointSlots, endpointUri, maxPerEndpoint);
+        final Semaphore registrySemaphore = getSlots(registrySlots, registry, maxPerRegistry);
+        final long startTime = System.nanoTime();
+        // Always acquire in the same order so that we can't deadlock.
+        final boolean waitedForEndpoint = acquire(endpointSemaphore, logger, image, "docker host " + endpointUri);
+        final boolean waitedForRegistry;
+        try {
+            waitedForRegistry = acquire(registrySemaphore, logger, image, "registry " + registry);
+        } catch (InterruptedException | RuntimeException ex) {
+            release(endpointSemaphore);
+            throw ex;
+        }
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        pulls.incrementAndGet();
+        if (waitedForEndpoint || waitedForRegistry) {
+            pullsThatWaited.incrementAndGet();
+            queueWaitMillisSum.addAndGet(waitMillis);
+            queueWaitMillisMax.accumulateAndGet(waitMillis, Math::max);
+            logger.println("Waited " + waitMillis + " ms in the pull queue for image " + image);
+            LOGGER.info("Image '{}' waited {} ms in the pull queue", image, waitMillis);
+        }
+        return new Permit(endpointSemaphore, registrySemaphore, waitMillis);
+    }
+
+    private static boolean acquire(Semaphore semaphore, PrintStream logger, String image, String what)
+            throws InterruptedException {
+        if (semaphore == null) {
+            return false;
+        }
+        if (semaphore.tryAcquire()) {
+            return false;
+        }
+        logger.println("Waiting to pull image " + image + ": too many concurrent pulls from " + what);
+        semaphore.acquire();
+        return true;
+    }
+
+    private static void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    private static Semaphore getSlots(Map<String, Semaphore> slots, String key, int max) {
+        if (max <= 0) {
+            return null;
+        }
+        return slots.computeIfAbsent(key, k -> new Semaphore(max, true));
+    }
+
+    @NonNull
+    static String getRegistryHostname(@NonNull String image) {
+        final String repos = NameParser.parseRepositoryTag(image).repos;
+        try {
+            return NameParser.resolveRepositoryName(repos).hostname;
+        } catch (RuntimeException ex) {
+            // docker will reject it anyway; just don't let that happen here.
+            return repos;
+        }
+    }
+
+    /** @return The number of pulls that have been allowed to start. */
+    public long getPullCount() {
+        return pulls.get();
+    }
+
+    /** @return The number of pulls that had to wait in the queue. */
+    public long getQueuedPullCount() {
+        return pullsThatWaited.get();
+    }
+
+    /** @return The average time, in milliseconds, that queued pulls waited. */
+    public long getAverageQueueWaitMillis() {
+        final long queued = pullsThatWaited.get();
+        return queued == 0L ? 0L : queueWaitMillisSum.get() / queued;
+    }
+
+    /** @return The longest time, in milliseconds, that any pull waited. */
+    public long getMaxQueueWaitMillis() {
+        return queueWaitMillisMax.get();
+    }
+
+    /**
+     * Permission to pull an image. Must be closed once the pull has finished.
+     */
+    static final class Permit implements AutoCloseable {
+        private final Semaphore endpointSemaphore;
+        private final Semaphore registrySemaphore;
+        private final long queueWaitMillis;
+        private boolean closed;
+
+        private Permit(Semaphore endpointSemaphore, Semaphore registrySemaphore, long queueWaitMillis) {
+            this.endpointSemaphore = endpointSemaphore;
+            this.registrySemaphore = registrySemaphore;
+            this.queueWaitMillis = queueWaitMillis;
+        }
+
+        /** @return How long, in milliseconds, we waited for this permit. */
+        long getQueueWaitMillis() {
+            return queueWaitMillis;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(registrySemaphore);
+                release(endpointSemaphore);
+            }
+        }
+    }
+}
@@ -8,10 +8,15 @@ import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.ManagementLink;
 import hudson.model.Saveable;
+import io.jenkins.docker.DockerContainerReaper;
+import io.jenkins.docker.DockerTerminationCoalescer;
+import io.jenkins.docker.DockerVolumeSweeper;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import jenkins.model.Jenkins;
 import org.kohsuke.stapler.StaplerProxy;
@@ -114,4 +119,42 @@ public class DockerManagement extends ManagementLink implements StaplerProxy, De
     public Collection<ServerDetail> getServers() {
         return DockerCloud.instances().stream().map(ServerDetail::new).collect(Collectors.toList());
     }
+
+    public DockerImagePullLimiter getImagePullLimiter() {
+        return DockerImagePullLimiter.get();
+    }
+
+    public DockerContainerWatchdogStatistics getWatchdogStatistics() {
+        return DockerContainerWatchdogStatistics.get();
+    }
+
+    public Collection<DockerContainerReaper> getContainerReapers() {
+        return DockerContainerReaper.all();
+    }
+
+    public Collection<DockerVolumeSweeper> getVolumeSweepers() {
+        return DockerVolumeSweeper.all();
+    }
+
+    public DockerTerminationCoalescer getTerminationCoalescer() {
+        return DockerTerminationCoalescer.get();
+    }
+
+    /**
+     * @return How long containers took to become ready, for each template
+     *         (by name) we've provisioned from since Jenkins started.
+     */
+    public Map<String, TimeToReadyStatistics> getTimeToReadyStatistics() {
+        final Map<String, TimeToReadyStatistics> result = new TreeMap<>();
+        for (DockerCloud cloud : DockerCloud.instances()) {
+            for (DockerTemplate template : cloud.getTemplates()) {
+                final String name = template.getName();
+                final TimeToReadyStatistics stats = name == null ? null : TimeToReadyStatistics.forTemplate(name);
+                if (stats != null) {
+                    result.put(name, stats);
+                }
+            }
+        }
+        return result;
+    }
 }
@@ -13,18 +13,22 @@ import com.github.dockerjava.api.command.InspectImageResponse;
 import com.github.dockerjava.api.command.PullImageCmd;
 import com.github.dockerjava.api.command.PullImageResultCallback;
 import com.github.dockerjava.api.exception.DockerClientException;
+import com.github.dockerjava.api.exception.DockerException;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.ContainerConfig;
+import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.PortBinding;
 import com.github.dockerjava.api.model.PullResponseItem;
 import com.google.common.base.Strings;
 import com.nirima.jenkins.plugins.docker.launcher.DockerComputerLauncher;
 import com.nirima.jenkins.plugins.docker.strategy.DockerOnceRetentionStrategy;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
 import com.nirima.jenkins.plugins.docker.utils.UniqueIdGenerator;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.Util;
+import hudson.model.Computer;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.DescriptorVisibilityFilter;
@@ -37,19 +41,29 @@ import hudson.slaves.NodeProperty;
 import hudson.slaves.NodePropertyDescriptor;
 import hudson.slaves.RetentionStrategy;
 import hudson.util.FormValidation;
+import io.jenkins.docker.DockerEphemeralNode;
 import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
 import io.jenkins.docker.connector.DockerComputerConnector;
 import io.jenkins.docker.connector.DockerComputerJNLPConnector;
+import java.io.EOFException;
 import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.docker.commons.credentials.DockerRegistryEndpoint;
@@ -58,6 +72,7 @@ import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.RelativePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +90,54 @@ public class DockerTemplate implements Describable<DockerTemplate> {
     /** Default value for {@link #getName()} if {@link #name} is null. */
     private static final String DEFAULT_NAME = "docker";
 
+    /** How many times we retry a pull that failed with a transient error. */
+    private static final int PULL_RETRIES =
+            JenkinsUtils.getSystemPropertyLong(DockerTemplate.class.getName() + ".pullRetries", 3L).intValue();
+
+    /** How long we wait before the first retry of a pull; doubled for each subsequent retry. */
+    private static final long PULL_RETRY_INITIAL_DELAY_IN_MS = JenkinsUtils.getSystemPropertyLong(
+            DockerTemplate.class.getName() + ".pullRetryInitialDelayInMs", 2000L);
+
+    /**
+     * If set, nodes for single-use agents are never saved to disk, and are
+     * recreated from their containers' labels when Jenkins restarts.
+     */
+    private static final boolean EPHEMERAL_ONE_SHOT_NODES =
+            JenkinsUtils.getSystemPropertyBoolean(DockerTemplate.class.getName() + ".ephemeralOneShotNodes", false);
+
+    /** The longest we'll ever wait between retries of a pull. */
+    private static final long PULL_RETRY_MAX_DELAY_IN_MS = 30000L;
+
+    /** Bits of pull error messages that tell us there's no point retrying. */
+    private static final List<String> PULL_NON_TRANSIENT_ERROR_MESSAGES =
+            List.of("not found", "unauthorized", "access denied", "denied:", "manifest unknown", "invalid reference");
+
+    /** Bits of pull error messages that tell us it might work next time. */
+    private static final List<String> PULL_TRANSIENT_ERROR_MESSAGES = List.of(
+            "connection reset",
+            "connection refused",
+            "timeout",
+            "timed out",
+            "unexpected eof",
+            "too many requests",
+            "status: 5",
+            "status code 5",
+            "service unavailable",
+            "bad gateway",
+            "gateway timeout",
+            "internal server error");
+
+    /**
+     * Where, relative to the agent's remote filesystem root, we put a tmpfs by
+     * default. This is where Jenkins puts the agent's job workspaces.
+     */
+    private static final String DEFAULT_TMPFS_WORKSPACE_PATH = "workspace";
+
+    private static final Pattern TMPFS_MODE_PATTERN = Pattern.compile("^[0-7]{3,4}$");
+
+    /** Default for {@link #getHealthyTimeout()}. */
+    private static final int DEFAULT_HEALTHY_TIMEOUT_SECONDS = 300;
+
     private int configVersion = 2;
 
     private final @CheckForNull String labelString;
@@ -98,8 +161,12 @@ public class DockerTemplate implements Describable<DockerTemplate> {
 
     private boolean removeVolumes;
 
+    private boolean deferVolumeRemoval;
+
     private int stopTimeout = DEFAULT_STOP_TIMEOUT;
 
+    private @CheckForNull DockerTerminationPolicy terminationPolicy;
+
     private @NonNull transient /*almost final*/ Set<LabelAtom> labelSet;
 
     private @CheckForNull DockerImagePullStrategy pullStrategy;
@@ -112,6 +179,22 @@ public class DockerTemplate implements Describable<DockerTemplate> {
 
     private @CheckForNull String name;
 
+    /** Size limit, in MB, of each tmpfs workspace mount. Null means no tmpfs. */
+    private @CheckForNull Integer tmpfsWorkspaceSize;
+
+    private @CheckForNull String tmpfsWorkspaceMode;
+
+    private @CheckForNull String tmpfsWorkspacePathsString;
+
+    /** If set, we don't connect to the container until it's healthy. */
+    private boolean waitUntilHealthy;
+
+    /** Healthcheck command to use instead of the image's own. */
+    private @CheckForNull String healthCheckCmd;
+
+    /** How long, in seconds, we'll wait for the container to be healthy. */
+    private @CheckForNull Integer healthyTimeout;
+
     /**
      * Default constructor; give an unusable instance.
      *
@@ -312,6 +395,19 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         labels.put(DockerContainerLabelKeys.NODE_NAME, nodeName);
     }
 
+    private static void setCpusetInContainerConfig(CreateContainerCmd containerConfig, String cpuset) {
+        HostConfig hostConfig = containerConfig.getHostConfig();
+        if (hostConfig == null) {
+            hostConfig = new HostConfig();
+            containerConfig.withHostConfig(hostConfig);
+        }
+        hostConfig.withCpusetCpus(cpuset);
+        final Map<String, String> existingLabels = containerConfig.getLabels();
+        final Map<String, String> labels = existingLabels == null ? new HashMap<>() : existingLabels;
+        labels.put(DockerContainerLabelKeys.CPUSET, cpuset);
+        containerConfig.withLabels(labels);
+    }
+
     /**
      * Retrieves the {@link Node} name chosen by
      * {@link #fillContainerConfig(CreateContainerCmd)}.
@@ -353,6 +449,15 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         this.removeVolumes = removeVolumes;
     }
 
+    public boolean isDeferVolumeRemoval() {
+        return deferVolumeRemoval;
+    }
+
+    @DataBoundSetter
+    public void setDeferVolumeRemoval(boolean deferVolumeRemoval) {
+        this.deferVolumeRemoval = deferVolumeRemoval;
+    }
+
     public int getStopTimeout() {
         return stopTimeout;
     }
@@ -362,6 +467,20 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         this.stopTimeout = timeout;
     }
 
+    @NonNull
+    public DockerTerminationPolicy getTerminationPolicy() {
+        return terminationPolicy != null ? terminationPolicy : DockerTerminationPolicy.AUTOMATIC;
+    }
+
+    @DataBoundSetter
+    public void setTerminationPolicy(DockerTerminationPolicy terminationPolicy) {
+        if (terminationPolicy == DockerTerminationPolicy.AUTOMATIC) {
+            this.terminationPolicy = null;
+        } else {
+            this.terminationPolicy = terminationPolicy;
+        }
+    }
+
     @CheckForNull
     public String getLabelString() {
         return labelString;
@@ -489,6 +608,252 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         return name.trim();
     }
 
+    @CheckForNull
+    public Integer getTmpfsWorkspaceSize() {
+        return tmpfsWorkspaceSize == null || tmpfsWorkspaceSize <= 0 ? null : tmpfsWorkspaceSize;
+    }
+
+    @DataBoundSetter
+    public void setTmpfsWorkspaceSize(Integer tmpfsWorkspaceSize) {
+        this.tmpfsWorkspaceSize = tmpfsWorkspaceSize == null || tmpfsWorkspaceSize <= 0 ? null : tmpfsWorkspaceSize;
+    }
+
+    @CheckForNull
+    public String getTmpfsWorkspaceMode() {
+        return Util.fixEmptyAndTrim(tmpfsWorkspaceMode);
+    }
+
+    @DataBoundSetter
+    public void setTmpfsWorkspaceMode(String tmpfsWorkspaceMode) {
+        this.tmpfsWorkspaceMode = Util.fixEmptyAndTrim(tmpfsWorkspaceMode);
+    }
+
+    @CheckForNull
+    public String getTmpfsWorkspacePathsString() {
+        return Util.fixEmptyAndTrim(tmpfsWorkspacePathsString);
+    }
+
+    @DataBoundSetter
+    public void setTmpfsWorkspacePathsString(String tmpfsWorkspacePathsString) {
+        this.tmpfsWorkspacePathsString = Util.fixEmptyAndTrim(tmpfsWorkspacePathsString);
+    }
+
+    public boolean isWaitUntilHealthy() {
+        return waitUntilHealthy;
+    }
+
+    @DataBoundSetter
+    public void setWaitUntilHealthy(boolean waitUntilHealthy) {
+        this.waitUntilHealthy = waitUntilHealthy;
+    }
+
+    @CheckForNull
+    public String getHealthCheckCmd() {
+        return Util.fixEmptyAndTrim(healthCheckCmd);
+    }
+
+    @DataBoundSetter
+    public void setHealthCheckCmd(String healthCheckCmd) {
+        this.healthCheckCmd = Util.fixEmptyAndTrim(healthCheckCmd);
+    }
+
+    @CheckForNull
+    public Integer getHealthyTimeout() {
+        return healthyTimeout == null || healthyTimeout <= 0 ? null : healthyTimeout;
+    }
+
+    @DataBoundSetter
+    public void setHealthyTimeout(Integer healthyTimeout) {
+        this.healthyTimeout = healthyTimeout == null || healthyTimeout <= 0 ? null : healthyTimeout;
+    }
+
+    /**
+     * Works out where, in the container, we're to mount tmpfs filesystems.
+     *
+     * @param effectiveRemoteFs The agent's remote filesystem root.
+     * @return The absolute paths to be mounted as tmpfs, which will be empty
+     *         if {@link #getTmpfsWorkspaceSize()} is not set.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    List<String> getTmpfsWorkspacePaths(@NonNull String effectiveRemoteFs) {
+        if (getTmpfsWorkspaceSize() == null) {
+            return Collections.emptyList();
+        }
+        return resolveTmpfsWorkspacePaths(splitTmpfsWorkspacePaths(getTmpfsWorkspacePathsString()), effectiveRemoteFs);
+    }
+
+    @NonNull
+    private static List<String> resolveTmpfsWorkspacePaths(
+            @NonNull List<String> configuredPaths, @NonNull String effectiveRemoteFs) {
+        final String remoteFsWithoutTrailingSlash = StringUtils.removeEnd(effectiveRemoteFs, "/");
+        final List<String> result = new ArrayList<>(configuredPaths.size());
+        for (final String path : configuredPaths) {
+            if (path.startsWith("/")) {
+                result.add(path);
+            } else if (path.equals(".")) {
+                result.add(remoteFsWithoutTrailingSlash.isEmpty() ? "/" : remoteFsWithoutTrailingSlash);
+            } else {
+                result.add(remoteFsWithoutTrailingSlash + '/' + path);
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    private static List<String> splitTmpfsWorkspacePaths(@CheckForNull String pathsString) {
+        final List<String> result = new ArrayList<>();
+        if (pathsString != null) {
+            for (final String line : pathsString.split("\n")) {
+                final String path = StringUtils.removeEnd(line.trim(), "/");
+                if (!path.isEmpty() && !result.contains(path)) {
+                    result.add(path);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(DEFAULT_TMPFS_WORKSPACE_PATH);
+        }
+        return result;
+    }
+
+    /**
+     * Adds our tmpfs workspace mounts (if any) to the container that's about
+     * to be created.
+     *
+     * @param containerConfig   The command that'll create the container.
+     * @param effectiveRemoteFs The agent's remote filesystem root.
+     * @return The paths that were mounted as tmpfs.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    List<String> addTmpfsWorkspace(@NonNull CreateContainerCmd containerConfig, @NonNull String effectiveRemoteFs) {
+        final Integer sizeInMb = getTmpfsWorkspaceSize();
+        if (sizeInMb == null) {
+            return Collections.emptyList();
+        }
+        final List<String> paths = getTmpfsWorkspacePaths(effectiveRemoteFs);
+        final String options = getTmpfsOptions(sizeInMb, getTmpfsWorkspaceMode());
+        HostConfig hostConfig = containerConfig.getHostConfig();
+        if (hostConfig == null) {
+            hostConfig = new HostConfig();
+            containerConfig.withHostConfig(hostConfig);
+        }
+        final Map<String, String> existingTmpFs = hostConfig.getTmpFs();
+        final Map<String, String> tmpFs = existingTmpFs == null ? new HashMap<>() : new HashMap<>(existingTmpFs);
+        for (final String path : paths) {
+            tmpFs.put(path, options);
+        }
+        hostConfig.withTmpFs(tmpFs);
+        return paths;
+    }
+
+    /**
+     * Checks that none of the tmpfs mounts would hide the agent's remote
+     * filesystem root. Our connectors copy remoting.jar (and anything else the
+     * agent needs) into that root before the container starts, so a tmpfs
+     * mounted over it (or over any of its parents) would leave the agent
+     * without them.
+     *
+     * @param absolutePaths     The paths to be mounted as tmpfs.
+     * @param effectiveRemoteFs The agent's remote filesystem root.
+     * @return {@link FormValidation#ok()} if all is well, otherwise an error
+     *         explaining what's wrong.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    static FormValidation checkTmpfsWorkspacePaths(
+            @NonNull List<String> absolutePaths, @NonNull String effectiveRemoteFs) {
+        final String remoteFsWithSlash = StringUtils.removeEnd(effectiveRemoteFs, "/") + '/';
+        for (final String path : absolutePaths) {
+            final String pathWithSlash = StringUtils.removeEnd(path, "/") + '/';
+            if (remoteFsWithSlash.startsWith(pathWithSlash)) {
+                return FormValidation.error(
+                        "tmpfs workspace path %s must not cover the remote file system root (%s) "
+                                + "as that would hide the files the agent needs to start.",
+                        path, effectiveRemoteFs);
+            }
+        }
+        return FormValidation.ok();
+    }
+
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    static FormValidation checkTmpfsWorkspaceMode(@CheckForNull String mode) {
+        if (mode == null || TMPFS_MODE_PATTERN.matcher(mode).matches()) {
+            return FormValidation.ok();
+        }
+        return FormValidation.error("Wrong mode format: '%s' (octal permissions, e.g. 1777, expected)", mode);
+    }
+
+    /**
+     * Checks our tmpfs workspace configuration before we create a container
+     * with it, as there's no point starting an agent that can't work.
+     *
+     * @param paths             The paths to be mounted as tmpfs.
+     * @param effectiveRemoteFs The agent's remote filesystem root.
+     * @param listener          Where to report any warnings.
+     * @throws IllegalArgumentException if the configuration is invalid.
+     */
+    private void checkTmpfsWorkspace(
+            @NonNull List<String> paths, @NonNull String effectiveRemoteFs, @NonNull TaskListener listener) {
+        final List<FormValidation> checks = List.of(
+                checkTmpfsWorkspacePaths(paths, effectiveRemoteFs),
+                checkTmpfsWorkspaceMode(getTmpfsWorkspaceMode()),
+                checkTmpfsWorkspaceSize(
+                        getTmpfsWorkspaceSize(), paths.size(), getDockerTemplateBase().getMemoryLimit()));
+        for (final FormValidation check : checks) {
+            if (check.kind == FormValidation.Kind.ERROR) {
+                throw new IllegalArgumentException(
+                        "Invalid tmpfs workspace in template " + getName() + ": " + check.getMessage());
+            }
+            if (check.kind != FormValidation.Kind.OK) {
+                LOGGER.warn("Template {}: {}", getName(), check.getMessage());
+                listener.getLogger().println(check.getMessage());
+            }
+        }
+    }
+
+    @NonNull
+    private static String getTmpfsOptions(int sizeInMb, @CheckForNull String mode) {
+        final String sizeOption = "size=" + sizeInMb + "m";
+        return mode == null ? sizeOption : sizeOption + ",mode=" + mode;
+    }
+
+    /**
+     * Checks that tmpfs mounts of the given size won't starve the container of
+     * memory, as anything written to a tmpfs counts towards the container's
+     * memory usage.
+     *
+     * @param tmpfsSizeInMb  The size of each tmpfs mount.
+     * @param numberOfMounts How many tmpfs mounts there will be.
+     * @param memoryLimitInMb The container's memory limit, if any.
+     * @return {@link FormValidation#ok()} if all is well, otherwise a warning
+     *         or error explaining what's wrong.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    static FormValidation checkTmpfsWorkspaceSize(
+            @CheckForNull Integer tmpfsSizeInMb, int numberOfMounts, @CheckForNull Integer memoryLimitInMb) {
+        if (tmpfsSizeInMb == null || tmpfsSizeInMb <= 0 || memoryLimitInMb == null || memoryLimitInMb <= 0) {
+            return FormValidation.ok();
+        }
+        final long totalTmpfsSizeInMb = (long) tmpfsSizeInMb * numberOfMounts;
+        if (totalTmpfsSizeInMb >= memoryLimitInMb) {
+            return FormValidation.error(
+                    "tmpfs workspace (%dMB in total) must be smaller than the memory limit (%dMB) "
+                            + "as files in tmpfs count towards the container's memory usage.",
+                    totalTmpfsSizeInMb, memoryLimitInMb);
+        }
+        if (totalTmpfsSizeInMb * 2L > memoryLimitInMb) {
+            return FormValidation.warning(
+                    "tmpfs workspace (%dMB in total) would leave less than half of the memory limit (%dMB) "
+                            + "for the build itself.",
+                    totalTmpfsSizeInMb, memoryLimitInMb);
+        }
+        return FormValidation.ok();
+    }
+
     /**
      * Xstream ignores default field values, so set them explicitly
      */
@@ -545,9 +910,17 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         template.setMode(Node.Mode.EXCLUSIVE);
         template.setPullStrategy(getPullStrategy());
         template.setRemoveVolumes(removeVolumes);
+        template.setDeferVolumeRemoval(deferVolumeRemoval);
         template.setStopTimeout(stopTimeout);
+        template.setTerminationPolicy(getTerminationPolicy());
         template.setRetentionStrategy((DockerOnceRetentionStrategy) retentionStrategy);
         template.setNodeProperties(makeCopyOfList(getNodeProperties()));
+        template.setTmpfsWorkspaceSize(tmpfsWorkspaceSize);
+        template.setTmpfsWorkspaceMode(tmpfsWorkspaceMode);
+        template.setTmpfsWorkspacePathsString(tmpfsWorkspacePathsString);
+        template.setWaitUntilHealthy(waitUntilHealthy);
+        template.setHealthCheckCmd(healthCheckCmd);
+        template.setHealthyTimeout(healthyTimeout);
         return template;
     }
 
@@ -572,14 +945,22 @@ public class DockerTemplate implements Describable<DockerTemplate> {
                 && mode == other.mode
                 && pullTimeout == other.pullTimeout
                 && removeVolumes == other.removeVolumes
+                && deferVolumeRemoval == other.deferVolumeRemoval
                 && stopTimeout == other.stopTimeout
+                && waitUntilHealthy == other.waitUntilHealthy
                 && Objects.equals(connector, other.connector)
                 && Objects.equals(remoteFs, other.remoteFs)
                 && Objects.equals(dockerTemplateBase, other.dockerTemplateBase)
                 && Objects.equals(retentionStrategy, other.retentionStrategy)
                 && Objects.equals(getNodeProperties(), other.getNodeProperties())
                 && getPullStrategy() == other.getPullStrategy()
-                && Objects.equals(getDisabled(), other.getDisabled());
+                && getTerminationPolicy() == other.getTerminationPolicy()
+                && Objects.equals(getDisabled(), other.getDisabled())
+                && Objects.equals(tmpfsWorkspaceSize, other.tmpfsWorkspaceSize)
+                && Objects.equals(tmpfsWorkspaceMode, other.tmpfsWorkspaceMode)
+                && Objects.equals(tmpfsWorkspacePathsString, other.tmpfsWorkspacePathsString)
+                && Objects.equals(healthCheckCmd, other.healthCheckCmd)
+                && Objects.equals(healthyTimeout, other.healthyTimeout);
     }
 
     @Override
@@ -595,14 +976,22 @@ public class DockerTemplate implements Describable<DockerTemplate> {
                 mode,
                 pullTimeout,
                 removeVolumes,
+                deferVolumeRemoval,
                 stopTimeout,
+                waitUntilHealthy,
                 connector,
                 remoteFs,
                 dockerTemplateBase,
                 retentionStrategy,
                 getNodeProperties(),
                 getPullStrategy(),
-                getDisabled());
+                getTerminationPolicy(),
+                getDisabled(),
+                tmpfsWorkspaceSize,
+                tmpfsWorkspaceMode,
+                tmpfsWorkspacePathsString,
+                healthCheckCmd,
+                healthyTimeout);
     }
 
     @Override
@@ -620,12 +1009,20 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         bldToString(sb, "retentionStrategy", retentionStrategy);
         bldToString(sb, "dockerTemplateBase", dockerTemplateBase);
         bldToString(sb, "removeVolumes", removeVolumes);
+        bldToString(sb, "deferVolumeRemoval", deferVolumeRemoval);
         bldToString(sb, "stopTimeout", stopTimeout);
+        bldToString(sb, "terminationPolicy", getTerminationPolicy());
         bldToString(sb, "pullStrategy", getPullStrategy());
         bldToString(sb, "pullTimeout", pullTimeout);
         bldToString(sb, "nodeProperties", getNodeProperties());
         bldToString(sb, "disabled", getDisabled());
         bldToString(sb, "name", name);
+        bldToString(sb, "tmpfsWorkspaceSize", tmpfsWorkspaceSize);
+        bldToString(sb, "tmpfsWorkspaceMode", tmpfsWorkspaceMode);
+        bldToString(sb, "tmpfsWorkspacePathsString", tmpfsWorkspacePathsString);
+        bldToString(sb, "waitUntilHealthy", waitUntilHealthy);
+        bldToString(sb, "healthCheckCmd", healthCheckCmd);
+        bldToString(sb, "healthyTimeout", healthyTimeout);
         endToString(sb);
         return sb.toString();
     }
@@ -650,25 +1047,31 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         if (shouldPullImage) {
             // TODO create a FlyWeightTask so end-user get visibility on pull operation progress
             LOGGER.info("Pulling image '{}'. This may take awhile...", image);
-
-            long startTime = System.currentTimeMillis();
-
-            try (final DockerClient client = api.getClient(pullTimeout)) {
-                final PullImageCmd cmd = client.pullImageCmd(image);
-                final DockerRegistryEndpoint registry = getRegistry();
-                DockerCloud.setRegistryAuthentication(cmd, registry, Jenkins.get());
-                cmd.exec(new PullImageResultCallback() {
-                            @Override
-                            public void onNext(PullResponseItem item) {
-                                super.onNext(item);
-                                listener.getLogger().println(item.getStatus());
-                            }
-                        })
-                        .awaitCompletion();
+            long retryDelay = PULL_RETRY_INITIAL_DELAY_IN_MS;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    doPullImage(api, image, listener);
+                    break;
+                } catch (IOException | RuntimeException ex) {
+                    if (attempt > PULL_RETRIES || !isTransientPullError(ex)) {
+                        throw ex;
+                    }
+                    // The daemon keeps the layers it has already downloaded,
+                    // so a retry only fetches what's still missing.
+                    LOGGER.warn(
+                            "Attempt {} of {} to pull image '{}' failed with a transient error; retrying in {} ms",
+                            attempt,
+                            PULL_RETRIES + 1,
+                            image,
+                            retryDelay,
+                            ex);
+                    listener.getLogger()
+                            .println("Attempt " + attempt + " to pull image " + image + " failed (" + ex
+                                    + "); retrying in " + retryDelay + " ms");
+                    Thread.sleep(retryDelay);
+                    retryDelay = Math.min(retryDelay * 2L, PULL_RETRY_MAX_DELAY_IN_MS);
+                }
             }
-
-            long pullTime = System.currentTimeMillis() - startTime;
-            LOGGER.info("Finished pulling image '{}', took {} ms", image, pullTime);
         }
 
         final InspectImageResponse result;
@@ -677,32 +1080,204 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         } catch (NotFoundException e) {
             throw new DockerClientException("Could not pull image: " + image, e);
         }
+        DockerImageGarbageCollector.recordImageUsage(result.getId());
         return result;
     }
 
+    private void doPullImage(DockerAPI api, String image, TaskListener listener)
+            throws IOException, InterruptedException {
+        final String endpointUri = String.valueOf(api.getDockerHost().getUri());
+        try (final DockerImagePullLimiter.Permit permit =
+                        DockerImagePullLimiter.INSTANCE.acquire(endpointUri, image, listener.getLogger());
+                final DockerClient client = api.getClient(pullTimeout)) {
+            final long startTime = System.currentTimeMillis();
+            final PullImageCmd cmd = client.pullImageCmd(image);
+            final DockerRegistryEndpoint registry = getRegistry();
+            DockerCloud.setRegistryAuthentication(cmd, registry, Jenkins.get());
+            cmd.exec(new PullImageResultCallback() {
+                        @Override
+                        public void onNext(PullResponseItem item) {
+                            super.onNext(item);
+                            listener.getLogger().println(item.getStatus());
+                        }
+                    })
+                    .awaitCompletion();
+            final long pullTime = System.currentTimeMillis() - startTime;
+            LOGGER.info(
+                    "Finished pulling image '{}', took {} ms (after waiting {} ms in the pull queue)",
+                    image,
+                    pullTime,
+                    permit.getQueueWaitMillis());
+        }
+    }
+
+    /**
+     * Decides whether a failed pull is worth retrying, i.e. whether it was
+     * caused by the registry (or network) having a bad moment rather than
+     * something that'll fail again, like a missing image or bad credentials.
+     *
+     * @param ex The reason the pull failed.
+     * @return true if a later attempt might succeed.
+     */
+    @Restricted(NoExternalUse.class)
+    static boolean isTransientPullError(@NonNull Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof DockerException) {
+                final int status = ((DockerException) t).getHttpStatus();
+                if (status == 401 || status == 403 || status == 404) {
+                    return false;
+                }
+                if (status >= 500) {
+                    return true;
+                }
+            }
+            if (t instanceof SocketTimeoutException
+                    || t instanceof SocketException
+                    || t instanceof EOFException
+                    || t instanceof TimeoutException) {
+                return true;
+            }
+            final String message = t.getMessage();
+            if (message != null) {
+                // errors reported by the daemon while pulling only come back as text
+                final String lowerCaseMessage = message.toLowerCase(Locale.ROOT);
+                for (final String nonTransient : PULL_NON_TRANSIENT_ERROR_MESSAGES) {
+                    if (lowerCaseMessage.contains(nonTransient)) {
+                        return false;
+                    }
+                }
+                for (final String transientMessage : PULL_TRANSIENT_ERROR_MESSAGES) {
+                    if (lowerCaseMessage.contains(transientMessage)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     @Restricted(NoExternalUse.class)
     public DockerTransientNode provisionNode(DockerAPI api, TaskListener listener)
             throws IOException, Descriptor.FormException, InterruptedException {
+        return provisionNode(api, listener, null);
+    }
+
+    /**
+     * Provisions a new node, optionally pinning its container to some of the
+     * docker host's CPU cores.
+     *
+     * @param api             The docker host to run the container on.
+     * @param listener        Where to log progress.
+     * @param cpusetAllocator Where to get CPU cores from, or null if the
+     *                        container is not to be pinned.
+     * @return The new node.
+     * @throws IOException                If docker goes wrong.
+     * @throws Descriptor.FormException   If the node can't be created.
+     * @throws InterruptedException       If interrupted.
+     */
+    @Restricted(NoExternalUse.class)
+    DockerTransientNode provisionNode(
+            DockerAPI api, TaskListener listener, @CheckForNull DockerCpusetAllocator cpusetAllocator)
+            throws IOException, Descriptor.FormException, InterruptedException {
+        return DockerComputerConnector.waitFor(provisionNodeAsync(api, listener, cpusetAllocator));
+    }
+
+    /**
+     * Like {@link #provisionNode(DockerAPI, TaskListener, DockerCpusetAllocator)}
+     * except that, once the container has been started, we don't tie up the
+     * calling thread while we wait for it to be ready for its agent (e.g. for
+     * sshd to start).
+     *
+     * @param api             The docker host to run the container on.
+     * @param listener        Where to log progress.
+     * @param cpusetAllocator Where to get CPU cores from, or null if the
+     *                        container is not to be pinned.
+     * @return A future which will be completed with the new node, or
+     *         exceptionally if its container never became ready.
+     * @throws IOException                If docker goes wrong.
+     * @throws Descriptor.FormException   If the node can't be created.
+     * @throws InterruptedException       If interrupted.
+     */
+    @Restricted(NoExternalUse.class)
+    CompletableFuture<DockerTransientNode> provisionNodeAsync(
+            DockerAPI api, TaskListener listener, @CheckForNull DockerCpusetAllocator cpusetAllocator)
+            throws IOException, Descriptor.FormException, InterruptedException {
+        boolean pulling = true;
         try {
             final InspectImageResponse image = pullImage(api, listener);
+            pulling = false;
             final String effectiveRemoteFsDir = getEffectiveRemoteFs(image);
+            final CompletableFuture<DockerTransientNode> result;
             try (final DockerClient client = api.getClient()) {
-                return doProvisionNode(api, client, effectiveRemoteFsDir, listener);
+                result = doProvisionNode(api, client, effectiveRemoteFsDir, listener, cpusetAllocator);
             }
+            return result.whenComplete((node, ex) -> {
+                if (ex != null) {
+                    final Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                            ? ex.getCause()
+                            : ex;
+                    disableAfterProvisioningFailure(DockerCloud.findCloudForTemplate(this), cause);
+                }
+            });
         } catch (IOException | Descriptor.FormException | InterruptedException | RuntimeException ex) {
-            final DockerCloud ourCloud = DockerCloud.findCloudForTemplate(this);
-            final long milliseconds = ourCloud == null ? 0L : ourCloud.getEffectiveErrorDurationInMilliseconds();
-            if (milliseconds > 0L) {
-                // if anything went wrong, disable ourselves for a while
-                final String reason = "Template provisioning failed.";
-                final DockerDisabled reasonForDisablement = getDisabled();
-                reasonForDisablement.disableBySystem(reason, milliseconds, ex);
-                setDisabled(reasonForDisablement);
+            if (pulling && isTransientPullError(ex)) {
+                // the registry is having a bad time; that's not our fault.
+                LOGGER.info("Not disabling template {} as its image pull failed with a transient error", getName());
+                throw ex;
             }
+            disableAfterProvisioningFailure(DockerCloud.findCloudForTemplate(this), ex);
             throw ex;
         }
     }
 
+    /**
+     * Disables this template for a while, so that a cloud doesn't keep
+     * provisioning (and failing) over and over again.
+     *
+     * @param ourCloud The cloud we belong to, which says how long we're to
+     *                 be disabled for.
+     * @param ex       What went wrong.
+     */
+    private void disableAfterProvisioningFailure(@CheckForNull DockerCloud ourCloud, @NonNull Throwable ex) {
+        final long milliseconds = ourCloud == null ? 0L : ourCloud.getEffectiveErrorDurationInMilliseconds();
+        if (milliseconds > 0L) {
+            // if anything went wrong, disable ourselves for a while
+            final String reason = "Template provisioning failed.";
+            final DockerDisabled reasonForDisablement = getDisabled();
+            reasonForDisablement.disableBySystem(reason, milliseconds, ex);
+            setDisabled(reasonForDisablement);
+        }
+    }
+
+    /**
+     * Disables the template that a container was made from, as if its
+     * provisioning had failed. Used when we didn't check the container at
+     * provisioning time and only find out later that it has stopped.
+     *
+     * @param cloud           The cloud the container belongs to.
+     * @param containerLabels The container's labels, which say which template
+     *                        it was made from.
+     * @param ex              What went wrong.
+     */
+    @Restricted(NoExternalUse.class)
+    public static void disableTemplateOfFailedContainer(
+            @CheckForNull DockerCloud cloud, @CheckForNull Map<String, String> containerLabels, @NonNull Throwable ex) {
+        final String templateName =
+                containerLabels == null ? null : containerLabels.get(DockerContainerLabelKeys.TEMPLATE_NAME);
+        if (cloud == null || templateName == null) {
+            return;
+        }
+        for (final DockerTemplate template : cloud.getTemplates()) {
+            if (templateName.equals(template.getName())) {
+                LOGGER.info(
+                        "Disabling template {} as one of its containers stopped before its agent connected",
+                        templateName);
+                template.disableAfterProvisioningFailure(cloud, ex);
+                return;
+            }
+        }
+    }
+
     @NonNull
     private String getEffectiveRemoteFs(final InspectImageResponse image) {
         final String remoteFsOrNull = getRemoteFs();
@@ -721,11 +1296,12 @@ public class DockerTemplate implements Describable<DockerTemplate> {
         return "/";
     }
 
-    private DockerTransientNode doProvisionNode(
+    private CompletableFuture<DockerTransientNode> doProvisionNode(
             final DockerAPI api,
             final DockerClient client,
             final String effectiveRemoteFsDir,
-            final TaskListener listener)
+            final TaskListener listener,
+            final DockerCpusetAllocator cpusetAllocator)
             throws IOException, Descriptor.FormException, InterruptedException {
         final String ourImage = getImage(); // can't be null
         LOGGER.info("Trying to run container for image \"{}\"", ourImage);
@@ -733,51 +1309,228 @@ public class DockerTemplate implements Describable<DockerTemplate> {
 
         final CreateContainerCmd cmd = client.createContainerCmd(ourImage);
         fillContainerConfig(cmd);
-
-        ourConnector.beforeContainerCreated(api, effectiveRemoteFsDir, cmd);
+        final String ourHealthCheckCmd = getHealthCheckCmd();
+        if (ourHealthCheckCmd != null) {
+            cmd.withHealthcheck(DockerContainerHealth.createHealthCheck(ourHealthCheckCmd));
+        }
+        final List<String> tmpfsPaths = getTmpfsWorkspacePaths(effectiveRemoteFsDir);
+        if (!tmpfsPaths.isEmpty()) {
+            checkTmpfsWorkspace(tmpfsPaths, effectiveRemoteFsDir, listener);
+            addTmpfsWorkspace(cmd, effectiveRemoteFsDir);
+        }
 
         final String nodeName = getNodeNameFromContainerConfig(cmd);
-        LOGGER.info("Trying to run container for node {} from image: {}", nodeName, ourImage);
+        final boolean ephemeral = isEphemeralNode();
+        if (ephemeral) {
+            setEphemeralNodeRemoteFsInContainerConfig(cmd, effectiveRemoteFsDir);
+        }
+        final String cpuset = cpusetAllocator == null
+                ? null
+                : cpusetAllocator.allocate(
+                        client, nodeName, DockerCpusetAllocator.calcCoresRequired(dockerTemplateBase.getCpus()));
+        boolean finallyReleaseTheCpuset = cpuset != null;
+        if (cpuset != null) {
+            setCpusetInContainerConfig(cmd, cpuset);
+            listener.getLogger().println("Pinning container for node " + nodeName + " to CPU cores " + cpuset);
+        }
+        final String containerId;
+        try {
+            ourConnector.beforeContainerCreated(api, effectiveRemoteFsDir, cmd);
+
+            LOGGER.info("Trying to run container for node {} from image: {}", nodeName, ourImage);
+            containerId = cmd.exec().getId();
+            finallyReleaseTheCpuset = false;
+        } finally {
+            if (finallyReleaseTheCpuset && cpusetAllocator != null) {
+                cpusetAllocator.release(nodeName);
+            }
+        }
         boolean finallyRemoveTheContainer = true;
-        final String containerId = cmd.exec().getId();
         // if we get this far, we have created the container so,
         // if we fail to return the node, we need to ensure it's cleaned up.
         LOGGER.info("Started container ID {} for node {} from image: {}", containerId, nodeName, ourImage);
 
         try {
-            final DockerTransientNode node = new DockerTransientNode(nodeName, containerId, effectiveRemoteFsDir);
-            node.setNodeDescription(
-                    "Docker Agent [" + ourImage + " on " + api.getDockerHost().getUri() + " ID " + containerId + "]");
-            node.setMode(getMode());
-            node.setLabelString(getLabelString());
-            node.setRetentionStrategy(makeCopy(getRetentionStrategy()));
-            robustlySetNodeProperties(node, makeCopyOfList(getNodeProperties()));
-            node.setRemoveVolumes(isRemoveVolumes());
-            node.setStopTimeout(getStopTimeout());
-            node.setDockerAPI(api);
+            final String tmpfsDescription = tmpfsPaths.isEmpty()
+                    ? ""
+                    : " with " + getTmpfsWorkspaceSize() + "MB tmpfs on " + String.join(", ", tmpfsPaths);
+            final DockerTransientNode node =
+                    createNode(api, nodeName, containerId, effectiveRemoteFsDir, ephemeral, tmpfsDescription);
             ourConnector.beforeContainerStarted(api, effectiveRemoteFsDir, node);
+            final long startedNanos = System.nanoTime();
+            final long startedEpochSecs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
             client.startContainerCmd(containerId).exec();
             ourConnector.afterContainerStarted(api, effectiveRemoteFsDir, node);
-            final ComputerLauncher nodeLauncher =
-                    ourConnector.createLauncher(api, containerId, effectiveRemoteFsDir, listener);
-            node.setLauncher(nodeLauncher);
+            final CompletableFuture<ComputerLauncher> launcherFuture;
+            if (isWaitUntilHealthy()) {
+                final Integer timeoutOrNull = getHealthyTimeout();
+                final int timeout = timeoutOrNull == null ? DEFAULT_HEALTHY_TIMEOUT_SECONDS : timeoutOrNull;
+                // the event stream needs a connection that outlives our caller's.
+                final DockerClient healthClient = api.getClient();
+                launcherFuture = DockerContainerHealth.waitUntilHealthyAsync(
+                                healthClient,
+                                containerId,
+                                startedEpochSecs,
+                                TimeUnit.SECONDS.toMillis(timeout),
+                                listener.getLogger())
+                        .whenComplete((healthy, ex) -> closeQuietly(healthClient))
+                        .thenComposeAsync(
+                                healthy -> {
+                                    try {
+                                        return ourConnector.createLauncherAsync(
+                                                api, containerId, effectiveRemoteFsDir, listener);
+                                    } catch (IOException | InterruptedException ex) {
+                                        throw new CompletionException(ex);
+                                    }
+                                },
+                                Computer.threadPoolForRemoting);
+            } else {
+                launcherFuture = ourConnector.createLauncherAsync(api, containerId, effectiveRemoteFsDir, listener);
+            }
+            // from here on, it's up to the future to clean up if it fails.
             finallyRemoveTheContainer = false;
-            return node;
+            return launcherFuture.handle((nodeLauncher, ex) -> {
+                if (ex != null) {
+                    try (final DockerClient cleanupClient = api.getClient()) {
+                        removeAbortedContainer(cleanupClient, containerId, nodeName, cpuset, cpusetAllocator);
+                    } catch (IOException | RuntimeException cleanupEx) {
+                        LOGGER.error("Unable to remove container '" + containerId + "' due to exception:", cleanupEx);
+                    }
+                    throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+                }
+                final long timeToReadyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+                TimeToReadyStatistics.record(getName(), timeToReadyMillis);
+                LOGGER.debug(
+                        "Container {} for node {} was ready after {}ms", containerId, nodeName, timeToReadyMillis);
+                node.setLauncher(nodeLauncher);
+                return node;
+            });
         } finally {
             // if something went wrong, cleanup aborted container
             // while ensuring that the original exception escapes.
             if (finallyRemoveTheContainer) {
-                try {
-                    client.removeContainerCmd(containerId).withForce(true).exec();
-                } catch (NotFoundException handledByCode) {
-                    LOGGER.info("Unable to remove container '" + containerId + "' as it had already gone.");
-                } catch (Throwable ex) {
-                    LOGGER.error("Unable to remove container '" + containerId + "' due to exception:", ex);
-                }
+                removeAbortedContainer(client, containerId, nodeName, cpuset, cpusetAllocator);
             }
         }
     }
 
+    private static void closeQuietly(DockerClient client) {
+        try {
+            client.close();
+        } catch (IOException ex) {
+            LOGGER.debug("Failed to close DockerClient", ex);
+        }
+    }
+
+    private static void removeAbortedContainer(
+            DockerClient client,
+            String containerId,
+            String nodeName,
+            @CheckForNull String cpuset,
+            @CheckForNull DockerCpusetAllocator cpusetAllocator) {
+        if (cpuset != null && cpusetAllocator != null) {
+            cpusetAllocator.release(nodeName);
+        }
+        try {
+            client.removeContainerCmd(containerId).withForce(true).exec();
+        } catch (NotFoundException handledByCode) {
+            LOGGER.info("Unable to remove container '" + containerId + "' as it had already gone.");
+        } catch (Throwable ex) {
+            LOGGER.error("Unable to remove container '" + containerId + "' due to exception:", ex);
+        }
+    }
+
+    private DockerTransientNode createNode(
+            final DockerAPI api,
+            final String nodeName,
+            final String containerId,
+            final String effectiveRemoteFsDir,
+            final boolean ephemeral,
+            final String extraDescription)
+            throws IOException, Descriptor.FormException {
+        final DockerTransientNode node = ephemeral
+                ? new DockerEphemeralNode(nodeName, containerId, effectiveRemoteFsDir)
+                : new DockerTransientNode(nodeName, containerId, effectiveRemoteFsDir);
+        node.setNodeDescription("Docker Agent [" + getImage() + " on " + api.getDockerHost().getUri() + " ID "
+                + containerId + "]" + extraDescription);
+        node.setMode(getMode());
+        node.setLabelString(getLabelString());
+        node.setRetentionStrategy(makeCopy(getRetentionStrategy()));
+        robustlySetNodeProperties(node, makeCopyOfList(getNodeProperties()));
+        node.setRemoveVolumes(isRemoveVolumes());
+        node.setDeferVolumeRemoval(isDeferVolumeRemoval());
+        node.setStopTimeout(getStopTimeout());
+        node.setTerminationPolicy(getTerminationPolicy());
+        node.setDockerAPI(api);
+        return node;
+    }
+
+    /**
+     * Recreates the (ephemeral) node for a container that we started before
+     * Jenkins restarted and which is still running.
+     * <p>
+     * We can't know whether that container has already been used, so the node
+     * is given no labels and {@link Node.Mode#EXCLUSIVE} use, meaning that the
+     * only build it will take is one that asks for it by name, i.e. a build
+     * resuming on the agent it was running on. Its (fresh)
+     * {@link DockerOnceRetentionStrategy} then removes it once that's done, or
+     * once it's been idle for too long if nothing resumes.
+     *
+     * @param api                  The docker host the container is on.
+     * @param nodeName             The container's node name, from its labels.
+     * @param containerId          The container.
+     * @param effectiveRemoteFsDir The node's remote FS root, from the
+     *                             container's labels.
+     * @param listener             Where to log progress.
+     * @return A node that will reconnect to the container once it's added to
+     *         Jenkins.
+     * @throws IOException              if it all went wrong.
+     * @throws InterruptedException     if interrupted.
+     * @throws Descriptor.FormException if we couldn't create the node.
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    DockerTransientNode recreateEphemeralNode(
+            final DockerAPI api,
+            final String nodeName,
+            final String containerId,
+            final String effectiveRemoteFsDir,
+            final TaskListener listener)
+            throws IOException, InterruptedException, Descriptor.FormException {
+        final DockerTransientNode node = createNode(api, nodeName, containerId, effectiveRemoteFsDir, true, "");
+        node.setMode(Node.Mode.EXCLUSIVE);
+        node.setLabelString("");
+        node.setLauncher(getConnector().createLauncher(api, containerId, effectiveRemoteFsDir, listener));
+        return node;
+    }
+
+    /**
+     * @return true if single-use agents may have nodes that aren't saved to
+     *         disk, i.e. there may be nodes to recreate when Jenkins starts.
+     */
+    static boolean isEphemeralOneShotNodesEnabled() {
+        return EPHEMERAL_ONE_SHOT_NODES;
+    }
+
+    /**
+     * @return true if nodes made from this template aren't to be saved to
+     *         disk, which is only the case for single-use agents whose
+     *         connector can reconnect to them after Jenkins restarts.
+     */
+    boolean isEphemeralNode() {
+        return EPHEMERAL_ONE_SHOT_NODES
+                && getRetentionStrategy() instanceof DockerOnceRetentionStrategy
+                && getConnector().canReconnectToRunningContainer();
+    }
+
+    private static void setEphemeralNodeRemoteFsInContainerConfig(
+            CreateContainerCmd containerConfig, String effectiveRemoteFsDir) {
+        final Map<String, String> existingLabels = containerConfig.getLabels();
+        final Map<String, String> labels = existingLabels == null ? new HashMap<>() : existingLabels;
+        labels.put(DockerContainerLabelKeys.EPHEMERAL_NODE_REMOTE_FS, effectiveRemoteFsDir);
+        containerConfig.withLabels(labels);
+    }
+
     /**
      * Returns a node name for a new node that doesn't clash with any we've
      * currently got.
@@ -820,6 +1573,11 @@ public class DockerTemplate implements Describable<DockerTemplate> {
             // no point calling setNodeProperties if we've got nothing to set.
             return;
         }
+        if (node instanceof DockerEphemeralNode) {
+            // it's persisting that makes this unreliable, and these don't get persisted.
+            node.setNodeProperties(nodeProperties);
+            return;
+        }
         final int maxAttempts = 10;
         for (int attempt = 1; ; attempt++) {
             try {
@@ -878,6 +1636,43 @@ public class DockerTemplate implements Describable<DockerTemplate> {
             return FormValidation.validateNonNegativeInteger(value);
         }
 
+        public FormValidation doCheckTmpfsWorkspaceSize(
+                @QueryParameter String value,
+                @QueryParameter String tmpfsWorkspacePathsString,
+                @RelativePath("dockerTemplateBase") @QueryParameter String memoryLimit) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+            final FormValidation sizeCheck = FormValidation.validatePositiveInteger(value);
+            if (sizeCheck.kind != FormValidation.Kind.OK) {
+                return sizeCheck;
+            }
+            final Integer memoryLimitOrNull;
+            try {
+                memoryLimitOrNull =
+                        Util.fixEmptyAndTrim(memoryLimit) == null ? null : Integer.valueOf(memoryLimit.trim());
+            } catch (NumberFormatException ex) {
+                return FormValidation.ok(); // the memory limit has its own validation
+            }
+            final int numberOfMounts = splitTmpfsWorkspacePaths(Util.fixEmptyAndTrim(tmpfsWorkspacePathsString))
+                    .size();
+            return checkTmpfsWorkspaceSize(Integer.valueOf(value.trim()), numberOfMounts, memoryLimitOrNull);
+        }
+
+        public FormValidation doCheckTmpfsWorkspacePathsString(
+                @QueryParameter String value, @QueryParameter String remoteFs) {
+            // if there's no remote FS root set then it'll come from the image,
+            // so the best we can do here is catch paths that'd cover any root.
+            final String remoteFsOrRoot = Util.fixEmptyAndTrim(remoteFs) == null ? "/" : remoteFs.trim();
+            final List<String> paths =
+                    resolveTmpfsWorkspacePaths(splitTmpfsWorkspacePaths(Util.fixEmptyAndTrim(value)), remoteFsOrRoot);
+            return checkTmpfsWorkspacePaths(paths, remoteFsOrRoot);
+        }
+
+        public FormValidation doCheckTmpfsWorkspaceMode(@QueryParameter String value) {
+            return checkTmpfsWorkspaceMode(Util.fixEmptyAndTrim(value));
+        }
+
         @Override
         public String getDisplayName() {
             return "Docker Template";
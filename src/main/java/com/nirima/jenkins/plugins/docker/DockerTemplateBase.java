@@ -32,6 +32,7 @@ import com.google.common.collect.Iterables;
 import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Describable;
@@ -147,6 +148,12 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
 
     private @CheckForNull Map<String, String> extraDockerLabels;
 
+    /**
+     * Our configuration, parsed once into docker-java objects.
+     * See {@link #getCompiledSpec()}.
+     */
+    private @CheckForNull transient volatile CompiledContainerSpec compiledSpec;
+
     @DataBoundConstructor
     public DockerTemplateBase(String image) {
         if (image == null) {
@@ -248,6 +255,11 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
         if (pullCredentialsId == null && registry != null) {
             pullCredentialsId = registry.getCredentialsId();
         }
+        try {
+            getCompiledSpec();
+        } catch (RuntimeException ex) {
+            // invalid config; we'll complain about that when we try to use it.
+        }
         return this;
     }
 
@@ -796,7 +808,9 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
             containerConfig.withCmd(cmdOrNull);
         }
 
-        hostConfig(containerConfig).withPortBindings(Iterables.toArray(getPortMappings(), PortBinding.class));
+        final CompiledContainerSpec spec = getCompiledSpec();
+
+        hostConfig(containerConfig).withPortBindings(spec.portBindings.clone());
         hostConfig(containerConfig).withPublishAllPorts(bindAllPorts);
         hostConfig(containerConfig).withPrivileged(privileged);
 
@@ -808,19 +822,12 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
         } else {
             labels = existingLabelsOrNull;
         }
-        final Map<String, String> extraDockerLabelsOrNull = getExtraDockerLabels();
-        if (extraDockerLabelsOrNull != null && !extraDockerLabelsOrNull.isEmpty()) {
-            labels.putAll(extraDockerLabelsOrNull);
-        }
+        labels.putAll(spec.labels);
         labels.put(DockerContainerLabelKeys.JENKINS_INSTANCE_ID, getJenkinsInstanceIdForContainerLabel());
         labels.put(DockerContainerLabelKeys.JENKINS_URL, getJenkinsUrlForContainerLabel());
-        labels.put(DockerContainerLabelKeys.CONTAINER_IMAGE, getImage());
 
-        final String cpusOrNull = getCpus();
-        if (cpusOrNull != null && !cpusOrNull.isEmpty()) {
-            final Double cpu_double = Double.parseDouble(cpusOrNull) * 1e9;
-            final Long nanoCpus = cpu_double.longValue();
-            hostConfig(containerConfig).withNanoCPUs(nanoCpus);
+        if (spec.nanoCpus != null) {
+            hostConfig(containerConfig).withNanoCPUs(spec.nanoCpus);
         }
 
         final Long cpuPeriodOrNull = getCpuPeriod();
@@ -877,29 +884,16 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
         }
 
         // https://github.com/docker/docker/blob/ed257420025772acc38c51b0f018de3ee5564d0f/runconfig/parse.go#L182-L196
-        final String[] mountsOrNull = getMounts();
-        if (mountsOrNull != null && mountsOrNull.length > 0) {
-            ArrayList<Mount> mnts = new ArrayList<>();
-            parseMountsStrings(mountsOrNull, mnts);
-            hostConfig(containerConfig).withMounts(mnts);
+        if (!spec.mounts.isEmpty()) {
+            hostConfig(containerConfig).withMounts(new ArrayList<>(spec.mounts));
         }
 
-        final String[] volumesFrom2OrNull = getVolumesFrom2();
-        if (volumesFrom2OrNull != null && volumesFrom2OrNull.length > 0) {
-            ArrayList<VolumesFrom> volFrom = new ArrayList<>();
-            for (String volFromStr : volumesFrom2OrNull) {
-                volFrom.add(VolumesFrom.parse(volFromStr));
-            }
-            hostConfig(containerConfig).withVolumesFrom(volFrom.toArray(new VolumesFrom[0]));
+        if (spec.volumesFrom.length > 0) {
+            hostConfig(containerConfig).withVolumesFrom(spec.volumesFrom.clone());
         }
 
-        final String[] devicesOrNull = getDevices();
-        if (devicesOrNull != null && devicesOrNull.length > 0) {
-            final List<Device> list = new ArrayList<>();
-            for (String deviceStr : devicesOrNull) {
-                list.add(Device.parse(deviceStr));
-            }
-            hostConfig(containerConfig).withDevices(list);
+        if (!spec.devices.isEmpty()) {
+            hostConfig(containerConfig).withDevices(new ArrayList<>(spec.devices));
         }
 
         containerConfig.withTty(tty);
@@ -930,19 +924,145 @@ public class DockerTemplateBase implements Describable<DockerTemplateBase>, Seri
             hostConfig(containerConfig).withSecurityOpts(securityOptionsOrNull);
         }
 
-        final List<String> capabilitiesToAddOrNull = getCapabilitiesToAdd();
-        if (CollectionUtils.isNotEmpty(capabilitiesToAddOrNull)) {
-            hostConfig(containerConfig).withCapAdd(toCapabilities(capabilitiesToAddOrNull));
+        if (spec.capabilitiesToAdd.length > 0) {
+            hostConfig(containerConfig).withCapAdd(spec.capabilitiesToAdd.clone());
         }
 
-        final List<String> capabilitiesToDropOrNull = getCapabilitiesToDrop();
-        if (CollectionUtils.isNotEmpty(capabilitiesToDropOrNull)) {
-            hostConfig(containerConfig).withCapDrop(toCapabilities(capabilitiesToDropOrNull));
+        if (spec.capabilitiesToDrop.length > 0) {
+            hostConfig(containerConfig).withCapDrop(spec.capabilitiesToDrop.clone());
         }
 
         return containerConfig;
     }
 
+    /**
+     * Gets our configuration as parsed docker-java objects, parsing it only if
+     * it has changed since we last did so.
+     *
+     * @return Our {@link CompiledContainerSpec}.
+     * @throws IllegalArgumentException if anything is invalid.
+     */
+    @NonNull
+    private CompiledContainerSpec getCompiledSpec() {
+        final CompiledContainerSpec existing = compiledSpec;
+        if (existing != null && existing.isCompiledFrom(this)) {
+            return existing;
+        }
+        final CompiledContainerSpec result = new CompiledContainerSpec(this);
+        compiledSpec = result;
+        return result;
+    }
+
+    /**
+     * The parts of a {@link DockerTemplateBase} that are expensive to turn into
+     * docker-java objects, parsed once so that every container we create from
+     * the template only has to copy them.
+     * <p>
+     * Instances are never modified once created. Callers must copy the arrays
+     * and lists before handing them to docker-java, as it doesn't promise not
+     * to modify what it's given.
+     */
+    private static final class CompiledContainerSpec {
+        // The configuration we were compiled from. Setters replace rather than
+        // modify these, so if any of them is no longer the same object then
+        // the configuration has changed and we're out of date.
+        private final String bindPortsSource;
+        private final String cpusSource;
+        private final String[] mountsSource;
+        private final String[] volumesFrom2Source;
+        private final String[] devicesSource;
+        private final List<String> capabilitiesToAddSource;
+        private final List<String> capabilitiesToDropSource;
+        private final Map<String, String> extraDockerLabelsSource;
+
+        private final PortBinding[] portBindings;
+        private final @CheckForNull Long nanoCpus;
+        private final List<Mount> mounts;
+        private final VolumesFrom[] volumesFrom;
+        private final List<Device> devices;
+        private final Capability[] capabilitiesToAdd;
+        private final Capability[] capabilitiesToDrop;
+        private final Map<String, String> labels;
+
+        private CompiledContainerSpec(DockerTemplateBase t) {
+            bindPortsSource = t.bindPorts;
+            cpusSource = t.cpus;
+            mountsSource = t.mounts;
+            volumesFrom2Source = t.volumesFrom2;
+            devicesSource = t.devices;
+            capabilitiesToAddSource = t.capabilitiesToAdd;
+            capabilitiesToDropSource = t.capabilitiesToDrop;
+            extraDockerLabelsSource = t.extraDockerLabels;
+
+            portBindings = Iterables.toArray(t.getPortMappings(), PortBinding.class);
+
+            final String cpusOrNull = t.getCpus();
+            if (cpusOrNull != null && !cpusOrNull.isEmpty()) {
+                final Double cpu_double = Double.parseDouble(cpusOrNull) * 1e9;
+                nanoCpus = cpu_double.longValue();
+            } else {
+                nanoCpus = null;
+            }
+
+            // https://github.com/docker/docker/blob/ed257420025772acc38c51b0f018de3ee5564d0f/runconfig/parse.go#L182-L196
+            final String[] mountsOrNull = t.getMounts();
+            final List<Mount> mnts = new ArrayList<>();
+            if (mountsOrNull != null) {
+                parseMountsStrings(mountsOrNull, mnts);
+            }
+            mounts = Collections.unmodifiableList(mnts);
+
+            final String[] volumesFrom2OrNull = t.getVolumesFrom2();
+            final List<VolumesFrom> volFrom = new ArrayList<>();
+            if (volumesFrom2OrNull != null) {
+                for (String volFromStr : volumesFrom2OrNull) {
+                    volFrom.add(VolumesFrom.parse(volFromStr));
+                }
+            }
+            volumesFrom = volFrom.toArray(new VolumesFrom[0]);
+
+            final String[] devicesOrNull = t.getDevices();
+            final List<Device> devs = new ArrayList<>();
+            if (devicesOrNull != null) {
+                for (String deviceStr : devicesOrNull) {
+                    devs.add(Device.parse(deviceStr));
+                }
+            }
+            devices = Collections.unmodifiableList(devs);
+
+            final List<String> capabilitiesToAddOrNull = t.getCapabilitiesToAdd();
+            capabilitiesToAdd = CollectionUtils.isNotEmpty(capabilitiesToAddOrNull)
+                    ? toCapabilities(capabilitiesToAddOrNull)
+                    : new Capability[0];
+            final List<String> capabilitiesToDropOrNull = t.getCapabilitiesToDrop();
+            capabilitiesToDrop = CollectionUtils.isNotEmpty(capabilitiesToDropOrNull)
+                    ? toCapabilities(capabilitiesToDropOrNull)
+                    : new Capability[0];
+
+            final Map<String, String> lbls = new HashMap<>();
+            final Map<String, String> extraDockerLabelsOrNull = t.getExtraDockerLabels();
+            if (extraDockerLabelsOrNull != null) {
+                lbls.putAll(extraDockerLabelsOrNull);
+            }
+            lbls.put(DockerContainerLabelKeys.CONTAINER_IMAGE, t.getImage());
+            labels = Collections.unmodifiableMap(lbls);
+        }
+
+        @SuppressFBWarnings(
+                value = "ES_COMPARING_STRINGS_WITH_EQ",
+                justification = "Identity, not equality, is what tells us the setters have been called.")
+        private boolean isCompiledFrom(DockerTemplateBase t) {
+            return bindPortsSource == t.bindPorts
+                    && cpusSource == t.cpus
+                    && mountsSource == t.mounts
+                    && volumesFrom2Source == t.volumesFrom2
+                    && devicesSource == t.devices
+                    && capabilitiesToAddSource == t.capabilitiesToAdd
+                    && capabilitiesToDropSource == t.capabilitiesToDrop
+                    && extraDockerLabelsSource == t.extraDockerLabels;
+        }
+    }
+
     /**
      * Parses a given mountsString value, appending any {@link Mount}s to the specified lists.
      * @param mounts The strings to be parsed.
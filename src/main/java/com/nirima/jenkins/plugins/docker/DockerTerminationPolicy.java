@@ -0,0 +1,39 @@
+package com.nirima.jenkins.plugins.docker;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * How we get rid of an agent's container once we've finished with it.
+ */
+public enum DockerTerminationPolicy {
+    AUTOMATIC("Automatic (force remove single-use agents once their build is done, else stop gracefully)"),
+    GRACEFUL("Stop gracefully, then remove"),
+    KILL_THEN_REMOVE("Kill, then remove"),
+    FORCE_REMOVE("Force remove");
+
+    private final String description;
+
+    DockerTerminationPolicy(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Decides what {@link #AUTOMATIC} means for a given container.
+     *
+     * @param workCompleted true if the agent was only meant to be used once
+     *                      and it has done its work, so there's nothing in the
+     *                      container that we care about any more.
+     * @return The policy to use, which won't be {@link #AUTOMATIC}.
+     */
+    @NonNull
+    public DockerTerminationPolicy resolve(boolean workCompleted) {
+        if (this != AUTOMATIC) {
+            return this;
+        }
+        return workCompleted ? FORCE_REMOVE : GRACEFUL;
+    }
+}
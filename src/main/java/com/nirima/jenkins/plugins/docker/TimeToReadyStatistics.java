@@ -0,0 +1,84 @@
+package com.nirima.jenkins.plugins.docker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Records how long containers from each {@link DockerTemplate} took to become
+ * ready, i.e. from being started to us having a launcher that can connect to
+ * them (which, for SSH agents, includes waiting for sshd to accept
+ * connections).
+ */
+@Restricted(NoExternalUse.class)
+public final class TimeToReadyStatistics {
+    private static final Map<String, TimeToReadyStatistics> BY_TEMPLATE_NAME = new ConcurrentHashMap<>();
+
+    private long count;
+    private long totalMillis;
+    private long minMillis = Long.MAX_VALUE;
+    private long maxMillis;
+    private long lastMillis;
+
+    TimeToReadyStatistics() {}
+
+    /**
+     * Records a container becoming ready.
+     *
+     * @param templateName The {@link DockerTemplate#getName()} of the template
+     *                     the container came from.
+     * @param millis       How long it took to become ready.
+     */
+    static void record(@NonNull String templateName, long millis) {
+        BY_TEMPLATE_NAME
+                .computeIfAbsent(templateName, k -> new TimeToReadyStatistics())
+                .add(millis);
+    }
+
+    /**
+     * @param templateName The {@link DockerTemplate#getName()} of a template.
+     * @return The statistics for that template, or null if we've not
+     *         provisioned anything from it (since Jenkins started).
+     */
+    @CheckForNull
+    public static TimeToReadyStatistics forTemplate(@NonNull String templateName) {
+        return BY_TEMPLATE_NAME.get(templateName);
+    }
+
+    synchronized void add(long millis) {
+        count++;
+        totalMillis += millis;
+        minMillis = Math.min(minMillis, millis);
+        maxMillis = Math.max(maxMillis, millis);
+        lastMillis = millis;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getAverageMillis() {
+        return count == 0 ? 0L : totalMillis / count;
+    }
+
+    public synchronized long getMinMillis() {
+        return count == 0 ? 0L : minMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized long getLastMillis() {
+        return lastMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "count=" + count + ", average=" + getAverageMillis() + "ms, min=" + getMinMillis() + "ms, max="
+                + maxMillis + "ms, last=" + lastMillis + "ms";
+    }
+}
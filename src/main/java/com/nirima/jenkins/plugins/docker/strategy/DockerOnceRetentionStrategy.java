@@ -5,7 +5,6 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
-import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Executor;
 import hudson.model.ExecutorListener;
@@ -15,6 +14,7 @@ import hudson.model.Queue.FlyweightTask;
 import hudson.slaves.RetentionStrategy;
 import hudson.util.FormValidation;
 import io.jenkins.docker.DockerComputer;
+import io.jenkins.docker.DockerTerminationCoalescer;
 import io.jenkins.docker.DockerTransientNode;
 import java.util.Objects;
 import java.util.logging.Level;
@@ -212,6 +212,11 @@ public class DockerOnceRetentionStrategy extends RetentionStrategy<DockerCompute
                 Level.FINE,
                 "Node {0} has completed Task {1}. Tasks in progress now={2}. Terminating as non-trivial work has been done.",
                 new Object[] {executor.getOwner().getName(), task, newNumberOfTasksInProgress});
+        final DockerTransientNode node = c.getNode();
+        if (node != null) {
+            // nothing in the container matters now, so it needn't be stopped gracefully.
+            node.setWorkCompleted();
+        }
         terminateContainer(c);
     }
 
@@ -243,14 +248,10 @@ public class DockerOnceRetentionStrategy extends RetentionStrategy<DockerCompute
     @Restricted(NoExternalUse.class)
     protected void terminateContainer(final DockerComputer c) {
         c.setAcceptingTasks(false); // just in case
-        Computer.threadPoolForRemoting.submit(() -> {
-            Queue.withLock(() -> {
-                DockerTransientNode node = c.getNode();
-                if (node != null) {
-                    node._terminate(c.getListener());
-                }
-            });
-        });
+        final DockerTransientNode node = c.getNode();
+        if (node != null) {
+            DockerTerminationCoalescer.get().terminate(node, c.getListener());
+        }
     }
 
     @Override
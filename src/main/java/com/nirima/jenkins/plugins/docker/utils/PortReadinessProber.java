@@ -0,0 +1,301 @@
+package com.nirima.jenkins.plugins.docker.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for TCP ports to accept connections, for any number of ports at once,
+ * using a single thread and non-blocking connects.
+ * <p>
+ * Each port is retried with exponential backoff (plus jitter, so that lots of
+ * containers started together don't all get probed in lock-step) until it
+ * accepts a connection or we run out of time, at which point its future is
+ * completed.
+ */
+@Restricted(NoExternalUse.class)
+public final class PortReadinessProber {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortReadinessProber.class);
+    /** How long we wait before the first retry. */
+    static final long INITIAL_RETRY_DELAY_MILLIS =
+            JenkinsUtils.getSystemPropertyLong(PortReadinessProber.class.getName() + ".initialRetryDelayMillis", 100L);
+
+    private static PortReadinessProber instance;
+
+    /** Probes that have been asked for but which the selector thread hasn't seen yet. */
+    private final Queue<Probe> newProbes = new ConcurrentLinkedQueue<>();
+    /** Probes waiting for their next attempt. Only touched by the selector thread. */
+    private final PriorityQueue<Probe> waiting =
+            new PriorityQueue<>(Comparator.comparingLong(probe -> probe.nextAttemptNanos));
+
+    private final Selector selector;
+
+    PortReadinessProber() throws IOException {
+        selector = Selector.open();
+        final Thread thread = new Thread(this::run, "Docker port readiness prober");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The prober shared by everything in this JVM.
+     * @throws IOException if we couldn't create it.
+     */
+    @NonNull
+    public static synchronized PortReadinessProber get() throws IOException {
+        if (instance == null) {
+            instance = new PortReadinessProber();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts probing a port.
+     *
+     * @param host          The host to connect to.
+     * @param port          The port to connect to.
+     * @param maxRetryDelay The longest we'll wait between attempts, in
+     *                      milliseconds. Also the longest we'll wait for any
+     *                      one attempt to connect.
+     * @param timeout       How long, in milliseconds, we're to keep trying
+     *                      for. We always make at least one attempt.
+     * @return A future that will be completed with true once the port accepts
+     *         a connection, or false if it never did. Cancelling it stops the
+     *         probing.
+     */
+    @NonNull
+    public CompletableFuture<Boolean> probe(@NonNull String host, int port, long maxRetryDelay, long timeout) {
+        final long now = System.nanoTime();
+        final Probe probe = new Probe(
+                host,
+                port,
+                TimeUnit.MILLISECONDS.toNanos(Math.max(1L, maxRetryDelay)),
+                now + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeout)),
+                now);
+        newProbes.add(probe);
+        selector.wakeup();
+        return probe.result;
+    }
+
+    /** Stops our thread. Only for use by tests. */
+    void close() throws IOException {
+        selector.close();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                takeNewProbes();
+                final long now = System.nanoTime();
+                startDueAttempts(now);
+                timeOutSlowAttempts(now);
+                selector.select(calcSelectTimeoutMillis(System.nanoTime()));
+                final Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    final SelectionKey key = selected.next();
+                    selected.remove();
+                    finishAttempt(key);
+                }
+            } catch (ClosedSelectorException ex) {
+                return;
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.warn("Unexpected exception while probing ports", ex);
+            }
+        }
+    }
+
+    private void takeNewProbes() {
+        Probe probe;
+        while ((probe = newProbes.poll()) != null) {
+            waiting.add(probe);
+        }
+    }
+
+    private void startDueAttempts(long now) {
+        while (!waiting.isEmpty() && waiting.peek().nextAttemptNanos - now <= 0) {
+            final Probe probe = waiting.poll();
+            if (probe.result.isDone()) {
+                continue; // cancelled
+            }
+            startAttempt(probe, now);
+        }
+    }
+
+    private void startAttempt(Probe probe, long now) {
+        probe.attempts++;
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(probe.resolveAddress())) {
+                closeQuietly(channel);
+                succeeded(probe);
+                return;
+            }
+            probe.attemptDeadlineNanos = now + probe.maxRetryDelayNanos;
+            channel.register(selector, SelectionKey.OP_CONNECT, probe);
+        } catch (IOException | UnresolvedAddressException ex) {
+            closeQuietly(channel);
+            failed(probe, now, ex);
+        }
+    }
+
+    private void finishAttempt(SelectionKey key) {
+        final Probe probe = (Probe) key.attachment();
+        final SocketChannel channel = (SocketChannel) key.channel();
+        key.cancel();
+        try {
+            final boolean connected = channel.finishConnect();
+            closeQuietly(channel);
+            if (connected) {
+                succeeded(probe);
+            } else {
+                failed(probe, System.nanoTime(), null);
+            }
+        } catch (IOException ex) {
+            closeQuietly(channel);
+            failed(probe, System.nanoTime(), ex);
+        }
+    }
+
+    private void timeOutSlowAttempts(long now) {
+        final List<SelectionKey> timedOut = new ArrayList<>();
+        for (final SelectionKey key : selector.keys()) {
+            final Probe probe = (Probe) key.attachment();
+            if (key.isValid() && (probe.result.isDone() || probe.attemptDeadlineNanos - now <= 0)) {
+                timedOut.add(key);
+            }
+        }
+        for (final SelectionKey key : timedOut) {
+            final Probe probe = (Probe) key.attachment();
+            key.cancel();
+            closeQuietly(key.channel());
+            if (!probe.result.isDone()) {
+                failed(probe, now, null);
+            }
+        }
+    }
+
+    private long calcSelectTimeoutMillis(long now) {
+        long earliest = Long.MAX_VALUE;
+        if (!waiting.isEmpty()) {
+            earliest = waiting.peek().nextAttemptNanos - now;
+        }
+        for (final SelectionKey key : selector.keys()) {
+            if (!key.isValid()) {
+                continue; // cancelled, but the selector hasn't forgotten it yet.
+            }
+            earliest = Math.min(earliest, ((Probe) key.attachment()).attemptDeadlineNanos - now);
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return 0L; // nothing to do; wait until we're woken up.
+        }
+        // select(0) means forever, so we must wait at least 1ms.
+        return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(earliest) + 1L);
+    }
+
+    private static void succeeded(Probe probe) {
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probe.startedNanos);
+        LOGGER.debug(
+                "Port {}:{} accepted a connection after {} attempts and {}ms",
+                probe.host,
+                probe.port,
+                probe.attempts,
+                elapsedMillis);
+        probe.result.complete(Boolean.TRUE);
+    }
+
+    private void failed(Probe probe, long now, Throwable cause) {
+        if (probe.result.isDone()) {
+            return; // cancelled
+        }
+        if (now - probe.deadlineNanos >= 0) {
+            LOGGER.debug(
+                    "Giving up on port {}:{} after {} attempts: {}",
+                    probe.host,
+                    probe.port,
+                    probe.attempts,
+                    cause == null ? "timed out" : cause.toString());
+            probe.result.complete(Boolean.FALSE);
+            return;
+        }
+        // we always have one last try when we run out of time.
+        final long delay = probe.calcNextRetryDelayNanos();
+        probe.nextAttemptNanos = now + delay - probe.deadlineNanos > 0 ? probe.deadlineNanos : now + delay;
+        waiting.add(probe);
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+        }
+    }
+
+    private static final class Probe {
+        private final String host;
+        private final int port;
+        private final long maxRetryDelayNanos;
+        private final long deadlineNanos;
+        private final long startedNanos;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private InetSocketAddress address;
+        private long nextAttemptNanos;
+        private long attemptDeadlineNanos;
+        private long backoffNanos;
+        private int attempts;
+
+        Probe(String host, int port, long maxRetryDelayNanos, long deadlineNanos, long now) {
+            this.host = host;
+            this.port = port;
+            this.maxRetryDelayNanos = maxRetryDelayNanos;
+            this.deadlineNanos = deadlineNanos;
+            this.startedNanos = now;
+            this.nextAttemptNanos = now;
+            this.backoffNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(INITIAL_RETRY_DELAY_MILLIS), maxRetryDelayNanos);
+        }
+
+        InetSocketAddress resolveAddress() {
+            // if the name didn't resolve last time, try again.
+            if (address == null || address.isUnresolved()) {
+                address = new InetSocketAddress(host, port);
+            }
+            return address;
+        }
+
+        /**
+         * @return How long to wait before the next attempt: somewhere between
+         *         half and all of the current backoff, after which the backoff
+         *         doubles (up to the maximum).
+         */
+        long calcNextRetryDelayNanos() {
+            final long half = backoffNanos / 2;
+            final long delay = half + ThreadLocalRandom.current().nextLong(half + 1);
+            backoffNanos = Math.min(backoffNanos * 2, maxRetryDelayNanos);
+            return delay;
+        }
+    }
+}
@@ -6,6 +6,9 @@ import com.trilead.ssh2.Connection;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
@@ -38,6 +41,8 @@ public class PortUtils {
         private int retries = DEFAULT_RETRIES;
         protected static final int DEFAULT_RETRY_DELAY_SECONDS = 2;
         private long retryDelay = SECONDS.toMillis(DEFAULT_RETRY_DELAY_SECONDS);
+        /** Set once {@link #execute()} has seen the port open. */
+        private volatile boolean succeeded;
 
         private ConnectionCheck(String host, int port) {
             this.host = host;
@@ -91,9 +96,9 @@ public class PortUtils {
 
         /**
          * Tests the connection. If {@link #withRetries(int)} was set to more
-         * than zero then more than one attempt will be made, waiting (for the
-         * period specified by {@link #withEveryRetryWaitFor(int, TimeUnit)})
-         * between attempts.
+         * than zero then we keep trying for as long as those retries would
+         * have taken, waiting (for no more than the period specified by
+         * {@link #withEveryRetryWaitFor(int, TimeUnit)}) between attempts.
          *
          * @return true if the connection succeeded, false if it failed despite
          *         any retries.
@@ -101,21 +106,48 @@ public class PortUtils {
          *             if interrupted while waiting between retries.
          */
         public boolean execute() throws InterruptedException {
-            LOGGER.trace("Testing connectivity to {} port {}", host, port);
-            for (int i = 1; i <= retries; i++) {
-                if (executeOnce()) {
-                    return true;
-                }
-                Thread.sleep(retryDelay);
+            final CompletableFuture<Boolean> result = executeAsync();
+            try {
+                return result.get();
+            } catch (InterruptedException ex) {
+                result.cancel(false);
+                throw ex;
+            } catch (ExecutionException ex) {
+                LOGGER.warn("Failed to test connectivity to {} port {}", host, port, ex.getCause());
+                return false;
             }
-            if (executeOnce()) {
-                return true;
+        }
+
+        /**
+         * Tests the connection without tying up a thread while doing so. Like
+         * {@link #execute()}, except that the waiting between retries is done
+         * by the shared {@link PortReadinessProber}, which backs off
+         * exponentially (starting quickly, so that we notice a port opening
+         * sooner than a fixed delay would) up to the retry wait time.
+         *
+         * @return A future which will be completed with true if the connection
+         *         succeeded, false if it failed despite any retries.
+         */
+        public CompletableFuture<Boolean> executeAsync() {
+            LOGGER.trace("Testing connectivity to {} port {}", host, port);
+            final PortReadinessProber prober;
+            try {
+                prober = PortReadinessProber.get();
+            } catch (IOException ex) {
+                return CompletableFuture.failedFuture(ex);
             }
-            LOGGER.warn(
-                    "Could not connect to {} port {}. Are you sure this location is contactable from Jenkins?",
-                    host,
-                    port);
-            return false;
+            final long timeout = Math.max(0, retries) * retryDelay;
+            return prober.probe(host, port, retryDelay, timeout).thenApply(connected -> {
+                if (connected) {
+                    succeeded = true;
+                } else {
+                    LOGGER.warn(
+                            "Could not connect to {} port {}. Are you sure this location is contactable from Jenkins?",
+                            host,
+                            port);
+                }
+                return connected;
+            });
         }
     }
 
@@ -141,7 +173,8 @@ public class PortUtils {
          * {@link ConnectionCheck#withEveryRetryWaitFor(int, TimeUnit)}) between
          * attempts. Note that, prior to testing that the port accepts SSH
          * connection, it will first be tested to verify that it is open to TCP
-         * connections using {@link ConnectionCheck#execute()}, and this will
+         * connections using {@link ConnectionCheck#execute()} (unless that has
+         * already succeeded), and this will
          * also be subjected to retries, so that the total retry time for a port
          * that is initially unavailable and then slow to accept SSH connections
          * can be up to double what might be expected.
@@ -160,7 +193,7 @@ public class PortUtils {
          *             if interrupted while waiting between retries.
          */
         public boolean execute() throws InterruptedException {
-            if (!parent.execute()) {
+            if (!parent.succeeded && !parent.execute()) {
                 throw new IllegalStateException(String.format("Port %d is not opened to connect to", parent.port));
             }
 
@@ -178,6 +211,45 @@ public class PortUtils {
             return executeOnce(thisTryNumber, totalTriesIntended);
         }
 
+        /**
+         * Tests the SSH connection without tying up a thread while waiting.
+         * Like {@link #execute()}, except that the TCP check is done by
+         * {@link ConnectionCheck#executeAsync()}, each SSH handshake is
+         * attempted on the given executor, and the wait between attempts is
+         * scheduled rather than slept.
+         *
+         * @param executor Where to attempt each SSH handshake, each of which
+         *                 blocks for no longer than the SSH timeout.
+         * @return A future which will be completed with true if the connection
+         *         succeeded, false if it failed despite any retries, or
+         *         exceptionally with an {@link IllegalStateException} if the
+         *         TCP port is not reachable despite retries.
+         */
+        public CompletableFuture<Boolean> executeAsync(Executor executor) {
+            final CompletableFuture<Boolean> portOpen =
+                    parent.succeeded ? CompletableFuture.completedFuture(true) : parent.executeAsync();
+            return portOpen.thenCompose(open -> {
+                if (!open) {
+                    throw new IllegalStateException(String.format("Port %d is not opened to connect to", parent.port));
+                }
+                return executeAsync(1, Math.max(0, parent.retries) + 1, executor);
+            });
+        }
+
+        private CompletableFuture<Boolean> executeAsync(
+                final int thisTryNumber, final int totalTriesIntended, final Executor executor) {
+            final Executor tryExecutor = thisTryNumber == 1
+                    ? executor
+                    : CompletableFuture.delayedExecutor(parent.retryDelay, TimeUnit.MILLISECONDS, executor);
+            return CompletableFuture.supplyAsync(() -> executeOnce(thisTryNumber, totalTriesIntended), tryExecutor)
+                    .thenCompose(connected -> {
+                        if (connected || thisTryNumber >= totalTriesIntended) {
+                            return CompletableFuture.completedFuture(connected);
+                        }
+                        return executeAsync(thisTryNumber + 1, totalTriesIntended, executor);
+                    });
+        }
+
         private boolean executeOnce(final int thisTryNumber, final int totalTriesIntended) {
             final Connection sshConnection = new Connection(parent.host, parent.port);
             try {
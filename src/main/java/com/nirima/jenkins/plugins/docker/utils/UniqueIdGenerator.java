@@ -1,13 +1,19 @@
 package com.nirima.jenkins.plugins.docker.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class UniqueIdGenerator {
     private final int radix;
     private final int idLength;
-    private long lastNanoTimeUsed;
+    /**
+     * The last number we handed out. Updated lock-free, as this is shared by
+     * every template and used on the provisioning path.
+     */
+    private final AtomicLong lastNanoTimeUsed;
 
     public UniqueIdGenerator(int radix) {
         this.radix = radix;
-        this.lastNanoTimeUsed = System.nanoTime() - 1L;
+        this.lastNanoTimeUsed = new AtomicLong(System.nanoTime() - 1L);
         this.idLength = Long.toUnsignedString(-1L, radix).length();
     }
 
@@ -27,14 +33,14 @@ public class UniqueIdGenerator {
 
     private long getNextUniqueNumber() {
         final long currentNanoTime = System.nanoTime();
-        synchronized (this) {
-            final long nanosSinceLastTime = currentNanoTime - lastNanoTimeUsed;
-            if (nanosSinceLastTime > 0) {
-                lastNanoTimeUsed = currentNanoTime;
-                return currentNanoTime;
-            }
-            lastNanoTimeUsed++;
-            return lastNanoTimeUsed;
+        return lastNanoTimeUsed.accumulateAndGet(currentNanoTime, UniqueIdGenerator::nextUniqueNumber);
+    }
+
+    private static long nextUniqueNumber(long lastNumberUsed, long currentNanoTime) {
+        final long nanosSinceLastTime = currentNanoTime - lastNumberUsed;
+        if (nanosSinceLastTime > 0) {
+            return currentNanoTime;
         }
+        return lastNumberUsed + 1L;
     }
 }
@@ -0,0 +1,316 @@
+package io.jenkins.docker;
+
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops and removes the containers of terminated {@link DockerTransientNode}s
+ * in the background, with one reaper per docker host.
+ * <p>
+ * Each reaper only uses a few threads, so that when lots of agents finish at
+ * once we don't end up with a thread per container, all blocked waiting for
+ * docker to stop them. Containers are reaped in the order they were
+ * submitted, each container is only queued once however often it's
+ * submitted, and containers we fail to remove are retried (with exponential
+ * backoff) a few times before we give up and leave them for the
+ * {@link com.nirima.jenkins.plugins.docker.DockerContainerWatchdog}.
+ * <p>
+ * The queue is bounded; if it's full then we don't queue the container at all
+ * and leave it for the watchdog instead.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerContainerReaper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerContainerReaper.class);
+
+    private static final int MAX_CONCURRENT_REAPS_PER_ENDPOINT = JenkinsUtils.getSystemPropertyLong(
+                    DockerContainerReaper.class.getName() + ".maxConcurrentReapsPerEndpoint", 4L)
+            .intValue();
+    private static final int MAX_QUEUE_SIZE_PER_ENDPOINT = JenkinsUtils.getSystemPropertyLong(
+                    DockerContainerReaper.class.getName() + ".maxQueueSizePerEndpoint", 1000L)
+            .intValue();
+    private static final int MAX_ATTEMPTS =
+            JenkinsUtils.getSystemPropertyLong(DockerContainerReaper.class.getName() + ".maxAttempts", 5L).intValue();
+    private static final long INITIAL_RETRY_DELAY_IN_MS = JenkinsUtils.getSystemPropertyLong(
+            DockerContainerReaper.class.getName() + ".initialRetryDelayMillis", 1000L);
+    private static final long MAX_RETRY_DELAY_IN_MS =
+            JenkinsUtils.getSystemPropertyLong(DockerContainerReaper.class.getName() + ".maxRetryDelayMillis", 60000L);
+
+    private static final Map<String, DockerContainerReaper> REAPERS = new ConcurrentHashMap<>();
+
+    /**
+     * Stops and/or removes a container.
+     */
+    @FunctionalInterface
+    interface ReapAction {
+        /**
+         * Tries to get rid of the container, logging anything that goes wrong.
+         *
+         * @return true if the container is gone, false if we should try again
+         *         later.
+         */
+        boolean reap();
+    }
+
+    private final String endpointUri;
+    private final int maxQueueSize;
+    private final int maxAttempts;
+    private final long initialRetryDelayInMs;
+    private final long maxRetryDelayInMs;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Containers that are queued, being reaped, or waiting for a retry. */
+    private final Map<String, Reap> outstanding = new HashMap<>();
+
+    private final AtomicLong reapedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong reapMillisSum = new AtomicLong();
+    private final AtomicLong maxReapMillis = new AtomicLong();
+    private final AtomicLong lastReapMillis = new AtomicLong();
+
+    DockerContainerReaper(
+            @NonNull String endpointUri,
+            int maxConcurrentReaps,
+            int maxQueueSize,
+            int maxAttempts,
+            long initialRetryDelayInMs,
+            long maxRetryDelayInMs) {
+        this.endpointUri = endpointUri;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialRetryDelayInMs = initialRetryDelayInMs;
+        this.maxRetryDelayInMs = maxRetryDelayInMs;
+        executor = new ScheduledThreadPoolExecutor(
+                Math.max(1, maxConcurrentReaps),
+                new NamingThreadFactory(new DaemonThreadFactory(), "DockerContainerReaper " + endpointUri));
+        // don't keep threads for docker hosts we've not used for a while.
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param endpointUri The docker host.
+     * @return The reaper for that docker host.
+     */
+    @NonNull
+    static DockerContainerReaper forEndpoint(@NonNull String endpointUri) {
+        return REAPERS.computeIfAbsent(
+                endpointUri,
+                uri -> new DockerContainerReaper(
+                        uri,
+                        MAX_CONCURRENT_REAPS_PER_ENDPOINT,
+                        MAX_QUEUE_SIZE_PER_ENDPOINT,
+                        MAX_ATTEMPTS,
+                        INITIAL_RETRY_DELAY_IN_MS,
+                        MAX_RETRY_DELAY_IN_MS));
+    }
+
+    /** @return The reapers for all the docker hosts we've reaped containers on. */
+    @NonNull
+    public static Collection<DockerContainerReaper> all() {
+        return new ArrayList<>(REAPERS.values());
+    }
+
+    /**
+     * Queues a container to be reaped. If the container is already queued
+     * then it isn't queued again.
+     *
+     * @param containerId The container.
+     * @param action      What to do to get rid of it.
+     * @return A future that completes with true once the container is gone, or
+     *         false if we gave up (or couldn't queue it).
+     */
+    @NonNull
+    CompletableFuture<Boolean> reap(@NonNull String containerId, @NonNull ReapAction action) {
+        final Reap reap;
+        synchronized (outstanding) {
+            final Reap existing = outstanding.get(containerId);
+            if (existing != null) {
+                deduplicatedCount.incrementAndGet();
+                return existing.result;
+            }
+            if (outstanding.size() >= maxQueueSize) {
+                rejectedCount.incrementAndGet();
+                LOGGER.warn(
+                        "Too many containers ({}) waiting to be reaped on {}; leaving container '{}' for the watchdog.",
+                        outstanding.size(),
+                        endpointUri,
+                        containerId);
+                return CompletableFuture.completedFuture(false);
+            }
+            reap = new Reap(containerId, action);
+            outstanding.put(containerId, reap);
+        }
+        try {
+            executor.execute(reap);
+        } catch (RejectedExecutionException ex) {
+            LOGGER.warn("Unable to reap container '{}' on {}", containerId, endpointUri, ex);
+            reap.finish(false);
+        }
+        return reap.result;
+    }
+
+    private long getRetryDelay(int attemptsSoFar) {
+        final int doublings = Math.min(attemptsSoFar - 1, 30);
+        return Math.min(maxRetryDelayInMs, initialRetryDelayInMs << doublings);
+    }
+
+    /** Stops all our threads. Only for use by tests. */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /** @return The docker host whose containers we reap. */
+    @NonNull
+    public String getEndpointUri() {
+        return endpointUri;
+    }
+
+    /**
+     * @return How many containers are waiting to be reaped (including any
+     *         that are being reaped right now or waiting for a retry).
+     */
+    public int getQueueDepth() {
+        synchronized (outstanding) {
+            return outstanding.size();
+        }
+    }
+
+    /** @return How many containers are being reaped right now. */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /** @return How many containers we've reaped. */
+    public long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    /** @return How many containers we gave up on. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** @return How many times we've had to retry. */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /** @return How many containers we didn't queue because the queue was full. */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /** @return How many containers were submitted when they were already queued. */
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * @return The average time, in milliseconds, from a container being queued
+     *         to it being gone.
+     */
+    public long getAverageReapMillis() {
+        final long reaped = reapedCount.get();
+        return reaped == 0L ? 0L : reapMillisSum.get() / reaped;
+    }
+
+    /** @return The longest time, in milliseconds, that any container took to be reaped. */
+    public long getMaxReapMillis() {
+        return maxReapMillis.get();
+    }
+
+    /** @return How long, in milliseconds, the last container took to be reaped. */
+    public long getLastReapMillis() {
+        return lastReapMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DockerContainerReaper[" + endpointUri + ": queued=" + getQueueDepth() + ", active="
+                + getActiveCount() + ", reaped=" + getReapedCount() + ", failed=" + getFailedCount() + ", retries="
+                + getRetryCount() + ", rejected=" + getRejectedCount() + ", averageReap=" + getAverageReapMillis()
+                + "ms, maxReap=" + getMaxReapMillis() + "ms]";
+    }
+
+    private final class Reap implements Runnable {
+        private final String containerId;
+        private final ReapAction action;
+        private final long queuedNanos = System.nanoTime();
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        /** Only touched by whichever of our threads is running us. */
+        private int attempts;
+
+        Reap(String containerId, ReapAction action) {
+            this.containerId = containerId;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            attempts++;
+            boolean gone;
+            try {
+                gone = action.reap();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Failed to reap container '{}' on {}", containerId, endpointUri, ex);
+                gone = false;
+            }
+            if (gone) {
+                finish(true);
+                return;
+            }
+            if (attempts >= maxAttempts) {
+                LOGGER.warn(
+                        "Giving up reaping container '{}' on {} after {} attempts; leaving it for the watchdog.",
+                        containerId,
+                        endpointUri,
+                        attempts);
+                finish(false);
+                return;
+            }
+            final long delay = getRetryDelay(attempts);
+            retryCount.incrementAndGet();
+            LOGGER.debug("Will retry reaping container '{}' on {} in {}ms", containerId, endpointUri, delay);
+            try {
+                executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                finish(false);
+            }
+        }
+
+        void finish(boolean gone) {
+            synchronized (outstanding) {
+                outstanding.remove(containerId);
+            }
+            if (gone) {
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedNanos);
+                reapedCount.incrementAndGet();
+                reapMillisSum.addAndGet(millis);
+                maxReapMillis.accumulateAndGet(millis, Math::max);
+                lastReapMillis.set(millis);
+            } else {
+                failedCount.incrementAndGet();
+            }
+            result.complete(gone);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.jenkins.docker;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Descriptor;
+import hudson.model.Node;
+import java.io.IOException;
+import jenkins.model.EphemeralNode;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A {@link DockerTransientNode} that Jenkins never saves to disk.
+ * <p>
+ * Single-use agents only live for a few minutes, so writing (and then
+ * deleting) their configuration is wasted effort, and lots of nodes being
+ * saved at once is what makes adding them to Jenkins unreliable. Instead,
+ * after Jenkins restarts, we recreate the nodes of any containers that are
+ * still running from the labels we gave those containers.
+ */
+public class DockerEphemeralNode extends DockerTransientNode implements EphemeralNode {
+    private static final long serialVersionUID = 2811468263071651962L;
+
+    /**
+     * See {@link DockerTransientNode#DockerTransientNode(String, String, String)}.
+     *
+     * @param nodeName    Name of the node.
+     * @param containerId Docker container id.
+     * @param workdir     remoteFs home dir.
+     * @throws Descriptor.FormException See
+     *                                  {@link DockerTransientNode#DockerTransientNode(String, String, String)}.
+     * @throws IOException              See
+     *                                  {@link DockerTransientNode#DockerTransientNode(String, String, String)}.
+     */
+    public DockerEphemeralNode(@NonNull String nodeName, @NonNull String containerId, String workdir)
+            throws Descriptor.FormException, IOException {
+        super(nodeName, containerId, workdir);
+    }
+
+    @Override
+    public Node asNode() {
+        return this;
+    }
+
+    /**
+     * As we're never saved, adding us to Jenkins can't collide with other
+     * nodes being saved, so there's no need to retry.
+     */
+    @Override
+    @Restricted(NoExternalUse.class)
+    public void robustlyAddToJenkins() throws IOException {
+        Jenkins.get().addNode(this);
+    }
+
+    @Override
+    public DockerTransientNodeDescriptor getDescriptor() {
+        return Jenkins.get().getDescriptorByType(DockerTransientNodeDescriptor.class);
+    }
+}
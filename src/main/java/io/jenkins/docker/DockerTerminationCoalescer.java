@@ -0,0 +1,134 @@
+package io.jenkins.docker;
+
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Terminates {@link DockerTransientNode}s in batches.
+ * <p>
+ * Removing a node has to be done while holding the {@link Queue} lock, and
+ * when lots of agents finish at once (e.g. at the end of a big matrix build),
+ * them all taking that lock one after another holds up everything else that
+ * needs it. Instead, we gather up the nodes that are to be terminated over a
+ * short period and then terminate them all under a single acquisition of the
+ * lock. This only covers the Jenkins side of termination; the containers
+ * themselves are stopped and removed afterwards by the
+ * {@link DockerContainerReaper}, outside of the lock.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerTerminationCoalescer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerTerminationCoalescer.class);
+
+    /** How long we wait, after a node is submitted, for others to join it. */
+    private static final long WINDOW_IN_MS =
+            JenkinsUtils.getSystemPropertyLong(DockerTerminationCoalescer.class.getName() + ".windowMillis", 100L);
+
+    private static final DockerTerminationCoalescer INSTANCE = new DockerTerminationCoalescer(
+            WINDOW_IN_MS,
+            Executors.newSingleThreadScheduledExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "DockerTerminationCoalescer")),
+            Queue::withLock);
+
+    private final long windowInMs;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<Runnable> lock;
+
+    /** Nodes waiting to be terminated, in the order they were submitted. */
+    private Map<DockerTransientNode, TaskListener> pending = new LinkedHashMap<>();
+
+    private boolean flushScheduled;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong terminationCount = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    /**
+     * @param windowInMs How long to gather nodes for before terminating them.
+     * @param scheduler  What runs the terminations. Should only have one
+     *                   thread, as there's no point running batches in
+     *                   parallel if they all need the same lock.
+     * @param lock       Runs something while holding the {@link Queue} lock.
+     */
+    DockerTerminationCoalescer(long windowInMs, ScheduledExecutorService scheduler, Consumer<Runnable> lock) {
+        this.windowInMs = windowInMs;
+        this.scheduler = scheduler;
+        this.lock = lock;
+    }
+
+    /** @return The coalescer used by everything in this JVM. */
+    @NonNull
+    public static DockerTerminationCoalescer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Arranges for a node to be terminated (by calling
+     * {@link DockerTransientNode#_terminate(TaskListener)} with the queue lock
+     * held) very soon. Submitting a node that's already waiting does nothing.
+     *
+     * @param node     The node to be terminated.
+     * @param listener Where to log progress.
+     */
+    public synchronized void terminate(@NonNull DockerTransientNode node, @NonNull TaskListener listener) {
+        pending.putIfAbsent(node, listener);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, windowInMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        final Map<DockerTransientNode, TaskListener> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Terminating {} node(s)", batch.size());
+        lock.accept(() -> {
+            for (final Map.Entry<DockerTransientNode, TaskListener> entry : batch.entrySet()) {
+                try {
+                    entry.getKey()._terminate(entry.getValue());
+                } catch (RuntimeException ex) {
+                    LOGGER.warn("Failed to terminate node {}", entry.getKey().getNodeName(), ex);
+                }
+            }
+        });
+        batchCount.incrementAndGet();
+        terminationCount.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+    }
+
+    /** @return How many times we've taken the queue lock to terminate nodes. */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /** @return How many nodes we've terminated. */
+    public long getTerminationCount() {
+        return terminationCount.get();
+    }
+
+    /** @return The most nodes we've terminated in one go. */
+    public long getLargestBatch() {
+        return largestBatch.get();
+    }
+}
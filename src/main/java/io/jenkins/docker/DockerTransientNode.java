@@ -1,12 +1,15 @@
 package io.jenkins.docker;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.ConflictException;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.exception.NotModifiedException;
 import com.nirima.jenkins.plugins.docker.DockerCloud;
+import com.nirima.jenkins.plugins.docker.DockerCpusetAllocator;
 import com.nirima.jenkins.plugins.docker.DockerOfflineCause;
 import com.nirima.jenkins.plugins.docker.DockerTemplate;
+import com.nirima.jenkins.plugins.docker.DockerTerminationPolicy;
 import com.nirima.jenkins.plugins.docker.strategy.DockerOnceRetentionStrategy;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -19,6 +22,8 @@ import hudson.slaves.Cloud;
 import hudson.slaves.ComputerLauncher;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
@@ -43,8 +48,18 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
 
     private boolean removeVolumes;
 
+    private boolean deferVolumeRemoval;
+
     private int stopTimeout = DockerTemplate.DEFAULT_STOP_TIMEOUT;
 
+    private DockerTerminationPolicy terminationPolicy;
+
+    /**
+     * Set once a single-use agent has done its work, so we know we needn't
+     * be gentle with its container.
+     */
+    private transient volatile boolean workCompleted;
+
     private String cloudId;
 
     private ProvisioningActivity.Id provisioningId;
@@ -141,6 +156,14 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
         this.removeVolumes = removeVolumes;
     }
 
+    public boolean isDeferVolumeRemoval() {
+        return deferVolumeRemoval;
+    }
+
+    public void setDeferVolumeRemoval(boolean deferVolumeRemoval) {
+        this.deferVolumeRemoval = deferVolumeRemoval;
+    }
+
     public int getStopTimeout() {
         return this.stopTimeout;
     }
@@ -149,6 +172,25 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
         this.stopTimeout = timeout;
     }
 
+    @NonNull
+    public DockerTerminationPolicy getTerminationPolicy() {
+        return terminationPolicy != null ? terminationPolicy : DockerTerminationPolicy.AUTOMATIC;
+    }
+
+    public void setTerminationPolicy(DockerTerminationPolicy terminationPolicy) {
+        this.terminationPolicy = terminationPolicy;
+    }
+
+    /**
+     * Tells us that this (single-use) agent has done all the work it'll ever
+     * do, so a {@link DockerTerminationPolicy#AUTOMATIC} termination policy
+     * can get rid of its container as fast as possible.
+     */
+    @Restricted(NoExternalUse.class)
+    public void setWorkCompleted() {
+        this.workCompleted = true;
+    }
+
     public String getCloudId() {
         return cloudId;
     }
@@ -259,33 +301,24 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
         }
 
         final String ourContainerId = getContainerId();
-        Computer.threadPoolForRemoting.submit(() -> {
-            synchronized (DockerTransientNode.this) {
-                if (containerRemoved) {
-                    return; // nothing left to do here
-                }
-                final DockerAPI api;
-                try {
-                    api = getDockerAPI();
-                } catch (RuntimeException ex) {
-                    logger.error(
-                            "Unable to stop and remove container '" + ourContainerId + "' for node '" + name
-                                    + "' due to exception:",
-                            ex);
-                    return;
-                }
-                final boolean[] newValues = stopAndRemoveContainer(
-                        api,
-                        logger,
-                        "for node '" + name + "'",
-                        removeVolumes,
-                        stopTimeout,
-                        ourContainerId,
-                        containerStopped);
-                containerStopped = newValues[0];
-                containerRemoved = newValues[1];
+        DockerAPI api = null;
+        try {
+            api = getDockerAPI();
+            if (api == null) {
+                logger.println("Unable to stop and remove container '" + ourContainerId + "' for node '" + name
+                        + "' as we don't know which docker host it's on.");
             }
-        });
+        } catch (RuntimeException ex) {
+            logger.error(
+                    "Unable to stop and remove container '" + ourContainerId + "' for node '" + name
+                            + "' due to exception:",
+                    ex);
+        }
+        if (api != null) {
+            final DockerAPI ourApi = api;
+            DockerContainerReaper.forEndpoint(api.getDockerHost().getUri())
+                    .reap(ourContainerId, () -> stopAndRemoveContainer(ourApi, logger));
+        }
 
         try {
             Jenkins.get().removeNode(this);
@@ -295,6 +328,33 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
         }
     }
 
+    /**
+     * Stops and removes our container, unless we've done so already.
+     *
+     * @return true if the container no longer exists.
+     */
+    private synchronized boolean stopAndRemoveContainer(final DockerAPI api, final ILogger logger) {
+        if (containerRemoved) {
+            return true; // nothing left to do here
+        }
+        final boolean[] newValues = stopAndRemoveContainer(
+                api,
+                logger,
+                "for node '" + name + "'",
+                getTerminationPolicy().resolve(workCompleted),
+                removeVolumes,
+                deferVolumeRemoval,
+                stopTimeout,
+                containerId,
+                containerStopped);
+        containerStopped = newValues[0];
+        containerRemoved = newValues[1];
+        if (containerStopped) {
+            DockerCpusetAllocator.release(api.getDockerHost().getUri(), name);
+        }
+        return containerRemoved;
+    }
+
     /**
      * Removes a container, optionally stopping it first.
      *
@@ -305,15 +365,42 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
             final DockerAPI api,
             final ILogger logger,
             final String containerDescription,
+            final DockerTerminationPolicy policy,
             final boolean removeVolumes,
+            final boolean deferVolumeRemoval,
             final int stopTimeout,
             final String containerId,
             final boolean containerAlreadyStopped) {
         boolean containerNowStopped = containerAlreadyStopped;
         boolean containerNowRemoved = false;
 
+        // for FORCE_REMOVE, one request does the lot, so it's only stopped once that has worked.
+        final boolean forceRemove = policy == DockerTerminationPolicy.FORCE_REMOVE;
+        if (policy == DockerTerminationPolicy.KILL_THEN_REMOVE) {
+            try (final DockerClient client = api.getClient()) {
+                if (!containerNowStopped) {
+                    client.killContainerCmd(containerId).exec();
+                    containerNowStopped = true;
+                    logger.println("Killed container '" + containerId + "' " + containerDescription + ".");
+                }
+            } catch (NotFoundException handledByCode) {
+                logger.println("Can't kill container '" + containerId + "' " + containerDescription
+                        + " as it does not exist.");
+                containerNowStopped = true;
+                containerNowRemoved = true; // no point trying to remove the container if it's already gone.
+            } catch (ConflictException handledByCode) {
+                // docker says "conflict" if it's not running.
+                logger.println("Container '" + containerId + "' already stopped " + containerDescription + ".");
+                containerNowStopped = true;
+            } catch (Exception ex) {
+                logger.error(
+                        "Failed to kill container '" + containerId + "' " + containerDescription + " due to exception:",
+                        ex);
+            }
+        }
+
         try (final DockerClient client = api.getClient()) {
-            if (!containerNowStopped) {
+            if (!containerNowStopped && !forceRemove) {
                 client.stopContainerCmd(containerId)
                         .withTimeout(stopTimeout > 0 ? stopTimeout : DockerTemplate.DEFAULT_STOP_TIMEOUT)
                         .exec();
@@ -334,16 +421,39 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
                     ex);
         }
 
+        List<String> volumesToRemoveLater = List.of();
+        if (removeVolumes && deferVolumeRemoval && !containerNowRemoved) {
+            try (final DockerClient client = api.getClient()) {
+                volumesToRemoveLater = getAnonymousVolumeNames(client.inspectContainerCmd(containerId).exec());
+            } catch (NotFoundException handledByCode) {
+                // we'll find out when we try to remove it.
+            } catch (Exception ex) {
+                logger.error(
+                        "Can't find the volumes of container '" + containerId + "' " + containerDescription
+                                + " so they'll be removed with it, due to exception:",
+                        ex);
+                volumesToRemoveLater = null;
+            }
+        }
+
         try (final DockerClient client = api.getClient()) {
             if (!containerNowRemoved) {
                 client.removeContainerCmd(containerId)
-                        .withRemoveVolumes(removeVolumes)
+                        .withRemoveVolumes(removeVolumes && (!deferVolumeRemoval || volumesToRemoveLater == null))
+                        .withForce(forceRemove)
                         .exec();
+                containerNowStopped = true;
                 containerNowRemoved = true;
                 logger.println("Removed container '" + containerId + "' " + containerDescription + ".");
+                if (volumesToRemoveLater != null && !volumesToRemoveLater.isEmpty()) {
+                    DockerVolumeSweeper.forEndpoint(api).sweep(api, volumesToRemoveLater);
+                    logger.println("Queued " + volumesToRemoveLater.size() + " volume(s) of container '"
+                            + containerId + "' " + containerDescription + " for removal.");
+                }
             }
         } catch (NotFoundException handledByCode) {
             logger.println("Container '" + containerId + "' already gone " + containerDescription + ".");
+            containerNowStopped = true;
             containerNowRemoved = true;
         } catch (ConflictException handledByCode) {
             logger.println("Container '" + containerId + "' removal already in progress.");
@@ -356,6 +466,23 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
         return new boolean[] {containerNowStopped, containerNowRemoved};
     }
 
+    @NonNull
+    private static List<String> getAnonymousVolumeNames(InspectContainerResponse inspect) {
+        final List<InspectContainerResponse.Mount> mounts = inspect.getMounts();
+        if (mounts == null) {
+            return List.of();
+        }
+        final List<String> result = new ArrayList<>();
+        for (final InspectContainerResponse.Mount mount : mounts) {
+            // named volumes aren't removed with the container, so we leave those alone too.
+            final String volumeName = mount.getName();
+            if (DockerVolumeSweeper.isAnonymousVolumeName(volumeName)) {
+                result.add(volumeName);
+            }
+        }
+        return result;
+    }
+
     /**
      * Utility method that gracefully terminates a docker container (preferably
      * one that we started). Intended to only be used when we do not have a
@@ -397,7 +524,9 @@ public class DockerTransientNode extends AbstractCloudSlave implements TrackedIt
                 api,
                 tl,
                 containerDescription,
+                DockerTerminationPolicy.GRACEFUL,
                 removeVolumes,
+                false,
                 DockerTemplate.DEFAULT_STOP_TIMEOUT,
                 containerId,
                 containerAlreadyStopped);
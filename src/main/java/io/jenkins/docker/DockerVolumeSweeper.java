@@ -0,0 +1,258 @@
+package io.jenkins.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.ConflictException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.docker.client.DockerAPI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes the anonymous volumes of containers we've removed, in the
+ * background, one at a time and no faster than a set rate, so that when lots
+ * of agents finish at once their volumes don't all get deleted at once (which
+ * can make a docker host very busy) and removing their containers isn't held
+ * up by it.
+ * <p>
+ * There's one sweeper per docker host. Volumes that are still in use are
+ * retried a few times. Anything left over (e.g. because Jenkins restarted
+ * before we got to it) is a dangling volume, which
+ * <code>docker volume prune</code> will get rid of.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerVolumeSweeper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerVolumeSweeper.class);
+
+    private static final long INTERVAL_IN_MS =
+            JenkinsUtils.getSystemPropertyLong(DockerVolumeSweeper.class.getName() + ".intervalMillis", 200L);
+    private static final int MAX_QUEUE_SIZE_PER_ENDPOINT = JenkinsUtils.getSystemPropertyLong(
+                    DockerVolumeSweeper.class.getName() + ".maxQueueSizePerEndpoint", 10000L)
+            .intValue();
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Docker names anonymous volumes with 64 hex digits. */
+    private static final Pattern ANONYMOUS_VOLUME_NAME = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Map<String, DockerVolumeSweeper> SWEEPERS = new ConcurrentHashMap<>();
+
+    /**
+     * Removes a volume.
+     */
+    @FunctionalInterface
+    interface VolumeRemover {
+        /**
+         * @param api The docker host to remove it from.
+         * @param volumeName The volume to remove.
+         * @return true if the volume is gone, false if it's still in use and
+         *         we should try again later.
+         * @throws Exception if it all went wrong.
+         */
+        boolean remove(DockerAPI api, String volumeName) throws Exception;
+    }
+
+    private final String endpointUri;
+    private final VolumeRemover remover;
+    private final long intervalInMs;
+    private final int maxQueueSize;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** Volumes waiting to be removed, oldest first. */
+    private final Set<String> queue = new LinkedHashSet<>();
+    /** How many times we've tried to remove each queued volume. */
+    private final Map<String, Integer> attempts = new HashMap<>();
+
+    private boolean sweeping;
+
+    /**
+     * How we talk to the docker host; whatever we were given most recently,
+     * as the cloud's configuration (e.g. its credentials) may have changed
+     * since we were created.
+     */
+    private volatile DockerAPI api;
+
+    private final AtomicLong removedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    DockerVolumeSweeper(
+            @NonNull String endpointUri, @NonNull VolumeRemover remover, long intervalInMs, int maxQueueSize) {
+        this.endpointUri = endpointUri;
+        this.remover = remover;
+        this.intervalInMs = Math.max(0L, intervalInMs);
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        final ThreadFactory namingThreadFactory =
+                new NamingThreadFactory(new DaemonThreadFactory(), "DockerVolumeSweeper " + endpointUri);
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = namingThreadFactory.newThread(r);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param api The docker host.
+     * @return The sweeper for that docker host.
+     */
+    @NonNull
+    static DockerVolumeSweeper forEndpoint(@NonNull DockerAPI api) {
+        return SWEEPERS.computeIfAbsent(
+                api.getDockerHost().getUri(),
+                uri -> new DockerVolumeSweeper(
+                        uri, DockerVolumeSweeper::removeVolume, INTERVAL_IN_MS, MAX_QUEUE_SIZE_PER_ENDPOINT));
+    }
+
+    /** @return The sweepers for all the docker hosts we've removed volumes on. */
+    @NonNull
+    public static Collection<DockerVolumeSweeper> all() {
+        return new ArrayList<>(SWEEPERS.values());
+    }
+
+    /**
+     * @param volumeName The name of a volume.
+     * @return true if it's the sort of name docker gives to anonymous volumes.
+     */
+    static boolean isAnonymousVolumeName(String volumeName) {
+        return volumeName != null && ANONYMOUS_VOLUME_NAME.matcher(volumeName).matches();
+    }
+
+    private static boolean removeVolume(DockerAPI api, String volumeName) throws Exception {
+        try (final DockerClient client = api.getClient()) {
+            client.removeVolumeCmd(volumeName).exec();
+            return true;
+        } catch (NotFoundException handledByCode) {
+            return true;
+        } catch (ConflictException handledByCode) {
+            // still in use, e.g. the container removal hasn't finished yet.
+            return false;
+        }
+    }
+
+    /**
+     * Queues volumes for removal.
+     *
+     * @param api How to talk to the docker host. This (rather than anything
+     *            we were given before) is used for all removals from now on.
+     * @param volumeNames The volumes to remove.
+     */
+    void sweep(@NonNull DockerAPI api, @NonNull Collection<String> volumeNames) {
+        this.api = api;
+        synchronized (queue) {
+            for (final String volumeName : volumeNames) {
+                if (queue.size() >= maxQueueSize) {
+                    droppedCount.incrementAndGet();
+                    LOGGER.warn(
+                            "Too many volumes waiting to be removed on {}; leaving volume {}", endpointUri, volumeName);
+                    continue;
+                }
+                queue.add(volumeName);
+            }
+            if (sweeping || queue.isEmpty()) {
+                return;
+            }
+            sweeping = true;
+        }
+        schedule(0L);
+    }
+
+    private void schedule(long delayInMs) {
+        try {
+            executor.schedule(this::sweepOne, delayInMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            synchronized (queue) {
+                sweeping = false;
+            }
+        }
+    }
+
+    private void sweepOne() {
+        final String volumeName;
+        synchronized (queue) {
+            final Iterator<String> it = queue.iterator();
+            if (!it.hasNext()) {
+                sweeping = false;
+                return;
+            }
+            volumeName = it.next();
+            it.remove();
+        }
+        boolean gone;
+        try {
+            gone = remover.remove(api, volumeName);
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to remove volume {} on {}", volumeName, endpointUri, ex);
+            gone = false;
+        }
+        synchronized (queue) {
+            final int attemptsSoFar = attempts.getOrDefault(volumeName, 0) + 1;
+            if (gone) {
+                attempts.remove(volumeName);
+                removedCount.incrementAndGet();
+                LOGGER.debug("Removed volume {} on {}", volumeName, endpointUri);
+            } else if (attemptsSoFar >= MAX_ATTEMPTS) {
+                attempts.remove(volumeName);
+                failedCount.incrementAndGet();
+                LOGGER.info("Giving up removing volume {} on {}", volumeName, endpointUri);
+            } else {
+                // try again once we've done everything else.
+                attempts.put(volumeName, attemptsSoFar);
+                queue.add(volumeName);
+            }
+        }
+        schedule(intervalInMs);
+    }
+
+    /** Stops our thread. Only for use by tests. */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /** @return The docker host whose volumes we remove. */
+    @NonNull
+    public String getEndpointUri() {
+        return endpointUri;
+    }
+
+    /** @return How many volumes are waiting to be removed. */
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /** @return How many volumes we've removed. */
+    public long getRemovedCount() {
+        return removedCount.get();
+    }
+
+    /** @return How many volumes we gave up on. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** @return How many volumes we didn't queue because the queue was full. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -15,6 +15,7 @@ import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.SSLConfig;
 import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
 import com.github.dockerjava.transport.DockerHttpClient;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
 import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
@@ -27,7 +28,9 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.URI;
 import java.time.Duration;
 import java.util.List;
@@ -52,6 +55,22 @@ import org.slf4j.LoggerFactory;
 public class DockerAPI extends AbstractDescribableImpl<DockerAPI> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DockerAPI.class);
 
+    /**
+     * Size, in bytes, of the send buffer of the TCP sockets returned by
+     * {@link #getSocket()}. Zero or less means the OS default.
+     */
+    private static final int SOCKET_SEND_BUFFER_SIZE = JenkinsUtils.getSystemPropertyLong(
+                    DockerAPI.class.getName() + ".socketSendBufferSize", 0L)
+            .intValue();
+
+    /**
+     * Size, in bytes, of the receive buffer of the TCP sockets returned by
+     * {@link #getSocket()}. Zero or less means the OS default.
+     */
+    private static final int SOCKET_RECEIVE_BUFFER_SIZE = JenkinsUtils.getSystemPropertyLong(
+                    DockerAPI.class.getName() + ".socketReceiveBufferSize", 0L)
+            .intValue();
+
     private DockerServerEndpoint dockerHost;
 
     /** Connection timeout in seconds */
@@ -305,6 +324,12 @@ public class DockerAPI extends AbstractDescribableImpl<DockerAPI> {
 
     /**
      * Create a plain {@link Socket} to docker API endpoint
+     * <p>
+     * As these sockets are used for long-lived streams (e.g. remoting channels
+     * to attached containers), TCP sockets have Nagle's algorithm turned off,
+     * and their buffer sizes can be set using the system properties
+     * <code>io.jenkins.docker.client.DockerAPI.socketSendBufferSize</code> and
+     * <code>io.jenkins.docker.client.DockerAPI.socketReceiveBufferSize</code>.
      *
      * @return The {@link Socket} direct to the docker daemon.
      * @throws IOException if anything goes wrong.
@@ -321,15 +346,33 @@ public class DockerAPI extends AbstractDescribableImpl<DockerAPI> {
             }
 
             final SSLConfig sslConfig = toSSlConfig(dockerHost.getCredentialsId());
-            if (sslConfig != null) {
-                return sslConfig.getSSLContext().getSocketFactory().createSocket(uri.getHost(), uri.getPort());
+            final Socket socket = new Socket();
+            configureTcpSocket(socket);
+            // buffer sizes have to be set before we connect to take full effect.
+            socket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()), Math.max(connectTimeout, 0) * 1000);
+            if (sslConfig == null) {
+                return socket;
             }
-            return new Socket(uri.getHost(), uri.getPort());
+            // layering TLS on top keeps the host name, so we still send SNI.
+            return sslConfig
+                    .getSSLContext()
+                    .getSocketFactory()
+                    .createSocket(socket, uri.getHost(), uri.getPort(), true);
         } catch (Exception e) {
             throw new IOException("Failed to create a Socker for docker URI " + dockerHost.getUri(), e);
         }
     }
 
+    private static void configureTcpSocket(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(true);
+        if (SOCKET_SEND_BUFFER_SIZE > 0) {
+            socket.setSendBufferSize(SOCKET_SEND_BUFFER_SIZE);
+        }
+        if (SOCKET_RECEIVE_BUFFER_SIZE > 0) {
+            socket.setReceiveBufferSize(SOCKET_RECEIVE_BUFFER_SIZE);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
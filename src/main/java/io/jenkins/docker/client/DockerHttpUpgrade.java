@@ -0,0 +1,178 @@
+package io.jenkins.docker.client;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A minimal HTTP/1.1 client for the docker API calls that upgrade the
+ * connection to a raw stream (e.g. starting an exec), which we need as plain
+ * streams rather than the callbacks docker-java would give us.
+ * <p>
+ * We send the request in one go, read the response headers in chunks rather
+ * than a byte at a time, and keep whatever we read beyond the headers so it
+ * can be handed to the {@link DockerMultiplexedInputStream}.
+ */
+@Restricted(NoExternalUse.class)
+public final class DockerHttpUpgrade {
+    /** We refuse to read more than this much response header. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final String statusLine;
+    private final List<String> headerLines;
+    private final byte[] readAhead;
+    private final int readAheadOff;
+    private final int readAheadLen;
+
+    private DockerHttpUpgrade(
+            InputStream in,
+            String statusLine,
+            List<String> headerLines,
+            byte[] readAhead,
+            int readAheadOff,
+            int readAheadLen) {
+        this.in = in;
+        this.statusLine = statusLine;
+        this.headerLines = headerLines;
+        this.readAhead = readAhead;
+        this.readAheadOff = readAheadOff;
+        this.readAheadLen = readAheadLen;
+    }
+
+    /**
+     * POSTs a JSON request asking for the connection to be upgraded to a raw
+     * stream, and reads the response headers.
+     *
+     * @param in       The connection's input stream.
+     * @param out      The connection's output stream.
+     * @param path     The request path, e.g. <code>/v1.40/exec/1234/start</code>.
+     * @param jsonBody The request body.
+     * @return The response, once docker has agreed to switch protocols.
+     * @throws IOException if docker does not agree to switch protocols, or we
+     *                     fail to talk to it.
+     */
+    @NonNull
+    public static DockerHttpUpgrade post(
+            @NonNull InputStream in, @NonNull OutputStream out, @NonNull String path, @NonNull String jsonBody)
+            throws IOException {
+        final byte[] body = jsonBody.getBytes(StandardCharsets.UTF_8);
+        final String requestHeader = "POST " + path + " HTTP/1.1\r\n"
+                + "Host: docker.sock\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Upgrade: tcp\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "\r\n";
+        final byte[] header = requestHeader.getBytes(StandardCharsets.US_ASCII);
+        final byte[] request = Arrays.copyOf(header, header.length + body.length);
+        System.arraycopy(body, 0, request, header.length, body.length);
+        out.write(request);
+        out.flush();
+        return readResponse(in);
+    }
+
+    @NonNull
+    static DockerHttpUpgrade readResponse(@NonNull InputStream in) throws IOException {
+        byte[] buf = new byte[DockerMultiplexedInputStream.DEFAULT_BUFFER_SIZE];
+        int len = 0;
+        int scannedUpTo = 0;
+        int headerEnd;
+        while ((headerEnd = findEndOfHeader(buf, scannedUpTo, len)) < 0) {
+            scannedUpTo = len;
+            if (len == buf.length) {
+                if (buf.length >= MAX_HEADER_SIZE) {
+                    throw new IOException("HTTP response header is larger than " + MAX_HEADER_SIZE + " bytes");
+                }
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            final int n = in.read(buf, len, buf.length - len);
+            if (n < 0) {
+                throw new IOException("Unexpected EOF reading HTTP response header: "
+                        + new String(buf, 0, len, StandardCharsets.ISO_8859_1));
+            }
+            len += n;
+        }
+        final List<String> lines = splitLines(buf, headerEnd);
+        final String statusLine = lines.isEmpty() ? "" : lines.get(0);
+        if (!statusLine.startsWith("HTTP/1.1 101 ")) { // Switching Protocols
+            throw new IOException("Unexpected HTTP response status line " + statusLine);
+        }
+        final List<String> headerLines = Collections.unmodifiableList(new ArrayList<>(lines.subList(1, lines.size())));
+        int bodyStart = headerEnd;
+        while (bodyStart < len && buf[bodyStart] != '\n') {
+            bodyStart++;
+        }
+        bodyStart++; // skip the final \n
+        return new DockerHttpUpgrade(in, statusLine, headerLines, buf, bodyStart, len - bodyStart);
+    }
+
+    /**
+     * Looks for the blank line that ends the HTTP header, accepting bare LFs
+     * as well as CRLFs.
+     *
+     * @return The index of the start of the blank line's line terminator, or
+     *         -1 if we've not got it yet.
+     */
+    private static int findEndOfHeader(byte[] buf, int from, int to) {
+        // we only look for the LF that ends the blank line, so we needn't look
+        // back at anything before what we've already checked.
+        for (int i = Math.max(from, 1); i < to; i++) {
+            if (buf[i] != '\n') {
+                continue;
+            }
+            // we're at a LF; was the previous line empty?
+            if (buf[i - 1] == '\n') {
+                return i;
+            }
+            if (buf[i - 1] == '\r' && i >= 2 && buf[i - 2] == '\n') {
+                return i - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> splitLines(byte[] buf, int end) {
+        final List<String> lines = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < end; i++) {
+            if (buf[i] == '\n') {
+                final int lineEnd = i > lineStart && buf[i - 1] == '\r' ? i - 1 : i;
+                lines.add(new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1));
+                lineStart = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    /** @return The HTTP response status line. */
+    @NonNull
+    public String getStatusLine() {
+        return statusLine;
+    }
+
+    /** @return The HTTP response headers, one per line. */
+    @NonNull
+    public List<String> getHeaderLines() {
+        return headerLines;
+    }
+
+    /**
+     * @param streamName What to call the stream when logging.
+     * @return The stdout of the upgraded connection, starting with anything we
+     *         read along with the response headers.
+     */
+    @NonNull
+    public InputStream openDemultiplexedStream(@NonNull String streamName) {
+        return new DockerMultiplexedInputStream(
+                in, streamName, DockerMultiplexedInputStream.DEFAULT_BUFFER_SIZE, readAhead, readAheadOff, readAheadLen);
+    }
+}
@@ -10,93 +10,212 @@ import org.slf4j.LoggerFactory;
 /**
  * De-multiplex an <code>application/vnd.docker.raw-stream</code> as described on
  * <a href="https://docs.docker.com/engine/api/v1.32/#operation/ContainerAttach">Docker API documentation</a>
+ * <p>
+ * All remoting traffic for attached agents goes through here, so we read ahead
+ * into a buffer (rather than reading each frame header and payload
+ * separately), return data from as many stdout frames as we've got to hand in
+ * each read, and don't allocate anything per frame.
  *
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
  */
 public class DockerMultiplexedInputStream extends InputStream {
+    private static final int HEADER_SIZE = 8;
+    private static final int STREAM_TYPE_STDOUT = 1;
+    private static final int STREAM_TYPE_STDERR = 2;
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    /** Most stderr we'll log from any one frame; the rest gets skipped. */
+    private static final int MAX_STDERR_LOGGED = 4096;
 
     private final InputStream multiplexed;
     private final String name;
-    private int next;
+    /** Data read from {@link #multiplexed} but not yet processed. */
+    private final byte[] buffer;
+
+    private int bufferPos;
+    private int bufferLimit;
+    /** Bytes of the current stdout frame's payload that we've yet to return. */
+    private int stdoutRemaining;
+    /** Bytes of the current stderr frame's payload that we've yet to consume. */
+    private int stderrRemaining;
+    /** Allocated when we first see a stderr frame, which should be never. */
+    private byte[] stderrBuffer;
+
+    private int stderrLength;
+    private int stderrSkipped;
+    private final byte[] singleByte = new byte[1];
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DockerMultiplexedInputStream.class);
 
     public DockerMultiplexedInputStream(InputStream in, String streamName) {
+        this(in, streamName, DEFAULT_BUFFER_SIZE);
+    }
+
+    DockerMultiplexedInputStream(InputStream in, String streamName, int bufferSize) {
+        this(in, streamName, bufferSize, null, 0, 0);
+    }
+
+    /**
+     * @param in            The multiplexed stream.
+     * @param streamName    What to call the stream when logging.
+     * @param bufferSize    How much to read from <code>in</code> at once.
+     * @param readAhead     Data that's already been read from <code>in</code>
+     *                      (e.g. along with the HTTP response headers), which
+     *                      is to be processed before anything else.
+     * @param readAheadOff  Where the data starts in <code>readAhead</code>.
+     * @param readAheadLen  How much data there is.
+     */
+    DockerMultiplexedInputStream(
+            InputStream in, String streamName, int bufferSize, byte[] readAhead, int readAheadOff, int readAheadLen) {
         multiplexed = in;
         name = streamName;
-        next = 0;
+        buffer = new byte[Math.max(Math.max(bufferSize, HEADER_SIZE), readAheadLen)];
+        if (readAheadLen > 0) {
+            System.arraycopy(readAhead, readAheadOff, buffer, 0, readAheadLen);
+            bufferLimit = readAheadLen;
+        }
     }
 
     @Override
     public int read() throws IOException {
-        if (!readInternal()) {
-            return -1; // EOF reading header
-        }
-        int nextByte = multiplexed.read();
-        if (nextByte >= 0) {
-            next--;
-        }
-        return nextByte;
+        final int bytesRead = read(singleByte, 0, 1);
+        return bytesRead <= 0 ? -1 : singleByte[0] & 0xff;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        if (!readInternal()) {
-            return -1; // EOF reading header
+        if (len == 0) {
+            return 0;
         }
-        int bytesRead = multiplexed.read(b, off, Math.min(next, len));
-        if (bytesRead >= 0) {
-            next -= bytesRead;
+        int copied = 0;
+        while (copied < len) {
+            final int buffered = bufferLimit - bufferPos;
+            if (stdoutRemaining > 0) {
+                if (buffered > 0) {
+                    final int n = Math.min(Math.min(len - copied, stdoutRemaining), buffered);
+                    System.arraycopy(buffer, bufferPos, b, off + copied, n);
+                    bufferPos += n;
+                    stdoutRemaining -= n;
+                    copied += n;
+                    continue;
+                }
+                if (copied > 0 && multiplexed.available() <= 0) {
+                    break; // don't block when we've got something to return.
+                }
+                final int wanted = Math.min(len - copied, stdoutRemaining);
+                if (wanted >= buffer.length) {
+                    // no point copying big chunks via our buffer.
+                    final int n = multiplexed.read(b, off + copied, wanted);
+                    if (n < 0) {
+                        break; // EOF
+                    }
+                    stdoutRemaining -= n;
+                    copied += n;
+                    continue;
+                }
+            } else if (stderrRemaining > 0) {
+                if (buffered > 0) {
+                    consumeStderr(buffered);
+                    continue;
+                }
+                if (copied > 0 && multiplexed.available() <= 0) {
+                    break; // don't block when we've got something to return.
+                }
+            } else if (buffered >= HEADER_SIZE) {
+                final int streamType = buffer[bufferPos];
+                if (streamType != STREAM_TYPE_STDOUT && streamType != STREAM_TYPE_STDERR) {
+                    if (copied > 0) {
+                        break; // return what we've got; complain next time.
+                    }
+                    throw new IOException("Unexpected application/vnd.docker.raw-stream frame type "
+                            + Arrays.toString(Arrays.copyOfRange(buffer, bufferPos, bufferPos + HEADER_SIZE)));
+                }
+                final int size = ((buffer[bufferPos + 4] & 0xff) << 24)
+                        + ((buffer[bufferPos + 5] & 0xff) << 16)
+                        + ((buffer[bufferPos + 6] & 0xff) << 8)
+                        + (buffer[bufferPos + 7] & 0xff);
+                bufferPos += HEADER_SIZE;
+                if (streamType == STREAM_TYPE_STDOUT) {
+                    stdoutRemaining = size;
+                } else {
+                    // not expected. Read payload and log it for diagnostic
+                    stderrRemaining = size;
+                    if (size == 0) {
+                        logStderr();
+                    }
+                }
+                continue;
+            } else if (copied > 0 && multiplexed.available() <= 0) {
+                break; // don't block when we've got something to return.
+            }
+            if (!fillBuffer()) {
+                if (stderrRemaining > 0) {
+                    stderrRemaining = 0;
+                    logStderr();
+                }
+                break; // EOF
+            }
         }
-        return bytesRead;
+        return copied > 0 ? copied : -1;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return Math.min(stdoutRemaining, bufferLimit - bufferPos);
     }
 
     /**
-     * @return False if we reached EOF while reading the header.
+     * Reads more data into our buffer, keeping whatever's already there.
+     *
+     * @return False if we reached EOF.
      */
-    private boolean readInternal() throws IOException {
-        while (next == 0) {
-            byte[] header = new byte[8];
-            int todo = 8;
-            while (todo > 0) {
-                int i = multiplexed.read(header, 8 - todo, todo);
-                if (i < 0) {
-                    return false; // EOF
+    private boolean fillBuffer() throws IOException {
+        if (bufferPos > 0) {
+            final int buffered = bufferLimit - bufferPos;
+            System.arraycopy(buffer, bufferPos, buffer, 0, buffered);
+            bufferPos = 0;
+            bufferLimit = buffered;
+        }
+        final int n = multiplexed.read(buffer, bufferLimit, buffer.length - bufferLimit);
+        if (n < 0) {
+            return false;
+        }
+        bufferLimit += n;
+        return true;
+    }
+
+    private void consumeStderr(int buffered) {
+        final int n = Math.min(stderrRemaining, buffered);
+        if (stderrBuffer == null) {
+            stderrBuffer = new byte[MAX_STDERR_LOGGED];
+        }
+        final int toKeep = Math.min(n, stderrBuffer.length - stderrLength);
+        System.arraycopy(buffer, bufferPos, stderrBuffer, stderrLength, toKeep);
+        stderrLength += toKeep;
+        stderrSkipped += n - toKeep;
+        bufferPos += n;
+        stderrRemaining -= n;
+        if (stderrRemaining == 0) {
+            logStderr();
+        }
+    }
+
+    private void logStderr() {
+        if (LOGGER.isInfoEnabled() && stderrLength > 0) {
+            final String dataAsString = new String(stderrBuffer, 0, stderrLength, StandardCharsets.UTF_8);
+            final String dataAsTrimmedString = dataAsString.replaceAll("\\s*$", "");
+            if (!dataAsTrimmedString.isEmpty()) {
+                if (stderrSkipped > 0) {
+                    LOGGER.info(
+                            "stderr from {}: {} ... ({} more bytes not shown)",
+                            name,
+                            dataAsTrimmedString,
+                            stderrSkipped);
+                } else {
+                    LOGGER.info("stderr from {}: {}", name, dataAsTrimmedString);
                 }
-                todo -= i;
-            }
-            int size = ((header[4] & 0xff) << 24)
-                    + ((header[5] & 0xff) << 16)
-                    + ((header[6] & 0xff) << 8)
-                    + (header[7] & 0xff);
-            switch (header[0]) {
-                case 1: // STDOUT
-                    next = size;
-                    break;
-                case 2: // STDERR
-                    // not expected. Read payload and log it for diagnostic
-                    byte[] payload = new byte[size];
-                    int received = 0;
-                    while (received < size) {
-                        int i = multiplexed.read(payload, received, size - received);
-                        if (i < 0) {
-                            break; // EOF
-                        }
-                        received += i;
-                    }
-                    if (LOGGER.isInfoEnabled()) {
-                        final String dataAsString = new String(payload, 0, received, StandardCharsets.UTF_8);
-                        final String dataAsTrimmedString = dataAsString.replaceAll("\\s*$", "");
-                        if (!dataAsTrimmedString.isEmpty()) {
-                            LOGGER.info("stderr from {}: {}", name, dataAsTrimmedString);
-                        }
-                    }
-                    break;
-                default:
-                    throw new IOException(
-                            "Unexpected application/vnd.docker.raw-stream frame type " + Arrays.toString(header));
             }
         }
-        return true;
+        stderrLength = 0;
+        stderrSkipped = 0;
     }
 }
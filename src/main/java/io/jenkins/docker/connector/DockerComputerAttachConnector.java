@@ -24,21 +24,27 @@ import hudson.model.TaskListener;
 import hudson.remoting.Channel;
 import hudson.slaves.ComputerLauncher;
 import hudson.slaves.SlaveComputer;
+import hudson.util.FormValidation;
 import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
-import io.jenkins.docker.client.DockerMultiplexedInputStream;
+import io.jenkins.docker.client.DockerHttpUpgrade;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.io.PrintWriter;
 import java.io.Serializable;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.Deflater;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
@@ -46,6 +52,7 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 
 /**
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
@@ -64,6 +71,14 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
     @CheckForNull
     private String[] entryPointCmd;
 
+    private boolean useRemotingVolume;
+
+    @CheckForNull
+    private Integer compressionLevel;
+
+    /** {@link StdioCompression}, as a java agent jar, ready to be copied into containers. */
+    private static volatile InMemoryTarArchive compressionAgentTarArchive;
+
     @DataBoundConstructor
     public DockerComputerAttachConnector() {}
 
@@ -125,13 +140,36 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         this.jvmArgs = fixEmpty(jvmArgs);
     }
 
+    public boolean isUseRemotingVolume() {
+        return useRemotingVolume;
+    }
+
+    @DataBoundSetter
+    public void setUseRemotingVolume(boolean useRemotingVolume) {
+        this.useRemotingVolume = useRemotingVolume;
+    }
+
+    @CheckForNull
+    public Integer getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setCompressionLevel(Integer compressionLevel) {
+        if (compressionLevel == null || compressionLevel <= 0) {
+            this.compressionLevel = null;
+        } else {
+            this.compressionLevel = Math.min(compressionLevel, Deflater.BEST_COMPRESSION);
+        }
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = super.hashCode();
         result = prime * result + Arrays.hashCode(entryPointCmd);
         result = prime * result + Arrays.hashCode(jvmArgs);
-        result = prime * result + Objects.hash(javaExe, user);
+        result = prime * result + Objects.hash(javaExe, user, useRemotingVolume, compressionLevel);
         return result;
     }
 
@@ -147,7 +185,9 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         return Arrays.equals(entryPointCmd, other.entryPointCmd)
                 && Objects.equals(javaExe, other.javaExe)
                 && Arrays.equals(jvmArgs, other.jvmArgs)
-                && Objects.equals(user, other.user);
+                && Objects.equals(user, other.user)
+                && useRemotingVolume == other.useRemotingVolume
+                && Objects.equals(compressionLevel, other.compressionLevel);
     }
 
     @Override
@@ -157,6 +197,8 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         bldToString(sb, "javaExe", javaExe);
         bldToString(sb, "jvmArgs", jvmArgs);
         bldToString(sb, "entryPointCmd", entryPointCmd);
+        bldToString(sb, "useRemotingVolume", useRemotingVolume);
+        bldToString(sb, "compressionLevel", compressionLevel);
         endToString(sb);
         return sb.toString();
     }
@@ -167,15 +209,78 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         // We need our container to just sit there and do nothing when it's started.
         // We'll then (later) do a docker-exec to it to run the real Jenkins agent code.
         ensureWaiting(cmd);
+        if (useRemotingVolume) {
+            RemotingVolume.mountInto(api, remoting, cmd);
+        }
     }
 
     @Override
     public void beforeContainerStarted(DockerAPI api, String workdir, DockerTransientNode node)
             throws IOException, InterruptedException {
+        final boolean needCompressionAgent = getCompressionLevel() != null;
+        if (useRemotingVolume && !needCompressionAgent) {
+            return; // it's already there, in the volume we mounted.
+        }
         final String containerId = node.getContainerId();
         try (final DockerClient client = api.getClient()) {
-            injectRemotingJar(containerId, workdir, client);
+            if (!useRemotingVolume) {
+                injectRemotingJar(containerId, workdir, client);
+            }
+            if (needCompressionAgent) {
+                try (InputStream tar = getCompressionAgentTarArchive().openStream()) {
+                    client.copyArchiveToContainerCmd(containerId)
+                            .withTarInputStream(tar)
+                            .withRemotePath(workdir)
+                            .exec();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets {@link StdioCompression} as a java agent jar, in a tar archive. Like
+     * the remoting jar, this is only built once.
+     *
+     * @return The compression agent jar, archived.
+     * @throws IOException if we can't read our own classes.
+     */
+    @NonNull
+    static InMemoryTarArchive getCompressionAgentTarArchive() throws IOException {
+        InMemoryTarArchive result = compressionAgentTarArchive;
+        if (result == null) {
+            synchronized (DockerComputerAttachConnector.class) {
+                result = compressionAgentTarArchive;
+                if (result == null) {
+                    result = InMemoryTarArchive.of(COMPRESSION_AGENT_JAR_NAME, createCompressionAgentJar(), 0644);
+                    compressionAgentTarArchive = result;
+                }
+            }
         }
+        return result;
+    }
+
+    static byte[] createCompressionAgentJar() throws IOException {
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(new Attributes.Name("Premain-Class"), StdioCompression.class.getName());
+        final List<Class<?>> classes = new ArrayList<>();
+        classes.add(StdioCompression.class);
+        classes.addAll(Arrays.asList(StdioCompression.class.getDeclaredClasses()));
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bos, manifest)) {
+            for (final Class<?> c : classes) {
+                final String classFileName = c.getName().replace('.', '/') + ".class";
+                try (InputStream classFile = c.getClassLoader().getResourceAsStream(classFileName)) {
+                    if (classFile == null) {
+                        throw new IOException("Unable to find " + classFileName);
+                    }
+                    jar.putNextEntry(new JarEntry(classFileName));
+                    classFile.transferTo(jar);
+                    jar.closeEntry();
+                }
+            }
+        }
+        return bos.toByteArray();
     }
 
     @Restricted(NoExternalUse.class)
@@ -183,6 +288,7 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         JavaExe("JAVA_EXE", "The Java Executable, e.g. java, /usr/bin/java etc."), //
         JvmArgs("JVM_ARGS", "Any arguments for the JVM itself, e.g. -Xmx250m."), //
         JarName("JAR_NAME", "The name of the jar file the node must run, e.g. agent.jar."), //
+        JarPath("JAR_PATH", "The full path of the jar file the node must run, e.g. /home/jenkins/agent.jar."), //
         RemoteFs("FS_DIR", "The filesystem folder in which the agent process is to be run."), //
         JenkinsUrl("JENKINS_URL", "The Jenkins root URL.");
         private final String name;
@@ -207,18 +313,37 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
     private static final String DEFAULT_ENTRY_POINT_CMD_STRING = "${" + ArgumentVariables.JavaExe.getName() + "}\n"
             + "${" + ArgumentVariables.JvmArgs.getName() + "}\n"
             + "-jar\n"
-            + "${" + ArgumentVariables.RemoteFs.getName() + "}/${" + ArgumentVariables.JarName.getName() + "}\n"
+            + "${" + ArgumentVariables.JarPath.getName() + "}\n"
             + "-noReconnect\n"
             + "-noKeepAlive\n"
             + "-agentLog\n"
             + "${" + ArgumentVariables.RemoteFs.getName() + "}/agent.log";
+    /** What {@link #getCompressionAgentTarArchive()} puts in the agent's working directory. */
+    private static final String COMPRESSION_AGENT_JAR_NAME = "docker-stdio-compression.jar";
 
     @Override
     protected ComputerLauncher createLauncher(
             DockerAPI api, String workdir, InspectContainerResponse inspect, TaskListener listener)
             throws IOException, InterruptedException {
+        return createLauncherWithoutInspection(api, inspect.getId(), workdir, listener);
+    }
+
+    @Override
+    protected ComputerLauncher createLauncherWithoutInspection(
+            DockerAPI api, String containerId, String workdir, TaskListener listener)
+            throws IOException, InterruptedException {
+        final String jarPath =
+                useRemotingVolume ? RemotingVolume.getJarPath(remoting) : workdir + '/' + remoting.getName();
         return new DockerAttachLauncher(
-                api, inspect.getId(), getUser(), workdir, getJavaExe(), getJvmArgsString(), getEntryPointCmdString());
+                api,
+                containerId,
+                getUser(),
+                workdir,
+                jarPath,
+                getJavaExe(),
+                getJvmArgsString(),
+                getEntryPointCmdString(),
+                getCompressionLevel());
     }
 
     @Extension(ordinal = 100)
@@ -250,6 +375,24 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
             return Arrays.asList(args);
         }
 
+        public FormValidation doCheckCompressionLevel(@QueryParameter String value) {
+            final String level = Util.fixEmptyAndTrim(value);
+            if (level == null) {
+                return FormValidation.ok();
+            }
+            try {
+                final int l = Integer.parseInt(level);
+                if (l >= Deflater.BEST_SPEED && l <= Deflater.BEST_COMPRESSION) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException ex) {
+                // fall through
+            }
+            return FormValidation.error(
+                    "Compression level must be from %d (fastest) to %d (smallest), or empty for no compression",
+                    Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION);
+        }
+
         @Override
         public String getDisplayName() {
             return "Attach Docker container";
@@ -261,25 +404,31 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
         private final String containerId;
         private final String userOrNull;
         private final String remoteFs;
+        private final String jarPath;
         private final String javaExeOrNull;
         private final String jvmArgsOrEmpty;
         private final String entryPointCmdOrEmpty;
+        private final Integer compressionLevelOrNull;
 
         private DockerAttachLauncher(
                 DockerAPI api,
                 String containerId,
                 String user,
                 String remoteFs,
+                String jarPath,
                 String javaExe,
                 String jvmArgs,
-                String entryPointCmd) {
+                String entryPointCmd,
+                Integer compressionLevel) {
             this.api = api;
             this.containerId = containerId;
             this.userOrNull = user;
             this.remoteFs = remoteFs;
+            this.jarPath = jarPath;
             this.javaExeOrNull = javaExe;
             this.jvmArgsOrEmpty = jvmArgs;
             this.entryPointCmdOrEmpty = entryPointCmd;
+            this.compressionLevelOrNull = compressionLevel;
         }
 
         @Override
@@ -288,9 +437,14 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
             final PrintStream logger = computer.getListener().getLogger();
             final String jenkinsUrl = Jenkins.get().getRootUrl();
             final String effectiveJavaExe = StringUtils.isNotBlank(javaExeOrNull) ? javaExeOrNull : DEFAULT_JAVA_EXE;
-            final String effectiveJvmArgs = StringUtils.isNotBlank(jvmArgsOrEmpty) ? jvmArgsOrEmpty : DEFAULT_JVM_ARGS;
+            final String configuredJvmArgs = StringUtils.isNotBlank(jvmArgsOrEmpty) ? jvmArgsOrEmpty : DEFAULT_JVM_ARGS;
+            // the agent JVM has to compress its stdout (and decompress its stdin) to match us.
+            final String effectiveJvmArgs = compressionLevelOrNull == null
+                    ? configuredJvmArgs
+                    : "-javaagent:" + remoteFs + '/' + COMPRESSION_AGENT_JAR_NAME + '=' + compressionLevelOrNull + "\n"
+                            + configuredJvmArgs;
             final EnvVars knownVariables = calculateVariablesForVariableSubstitution(
-                    effectiveJavaExe, effectiveJvmArgs, remoting.getName(), remoteFs, jenkinsUrl);
+                    effectiveJavaExe, effectiveJvmArgs, remoting.getName(), jarPath, remoteFs, jenkinsUrl);
             final String effectiveEntryPointCmdString = StringUtils.isNotBlank(entryPointCmdOrEmpty)
                     ? entryPointCmdOrEmpty
                     : DEFAULT_ENTRY_POINT_CMD_STRING;
@@ -322,36 +476,27 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
             final Socket socket = api.getSocket();
             final OutputStream out = socket.getOutputStream();
             final InputStream in = socket.getInputStream();
-            final PrintWriter w = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
-            w.println("POST /v" + actualApiVersion + "/exec/" + execId + "/start HTTP/1.1");
-            w.println("Host: docker.sock");
-            w.println("Content-Type: application/json");
-            w.println("Upgrade: tcp");
-            w.println("Connection: Upgrade");
-            w.println("Content-Length: " + js.length());
-            w.println();
-            w.println(js);
-            w.flush();
-
-            // read HTTP response headers
-            String line = readLine(in);
-            logger.println(line);
-            if (!line.startsWith("HTTP/1.1 101 ")) { // Switching Protocols
-                throw new IOException("Unexpected HTTP response status line " + line);
-            }
-
-            // Skip HTTP header
-            while ((line = readLine(in)).length() > 0) {
-                if (line.length() == 0) {
-                    break; // end of header
-                }
-                logger.println(line);
+            final DockerHttpUpgrade response =
+                    DockerHttpUpgrade.post(in, out, "/v" + actualApiVersion + "/exec/" + execId + "/start", js);
+            logger.println(response.getStatusLine());
+            for (final String headerLine : response.getHeaderLines()) {
+                logger.println(headerLine);
             }
 
             final InputStream demux =
-                    new DockerMultiplexedInputStream(in, computer.getDisplayName() + " (" + containerId + ")");
+                    response.openDemultiplexedStream(computer.getDisplayName() + " (" + containerId + ")");
+            final InputStream channelIn;
+            final OutputStream channelOut;
+            if (compressionLevelOrNull == null) {
+                channelIn = demux;
+                channelOut = out;
+            } else {
+                logger.println("Using compression level " + compressionLevelOrNull);
+                channelIn = StdioCompression.decompress(demux);
+                channelOut = StdioCompression.compress(out, compressionLevelOrNull);
+            }
 
-            computer.setChannel(demux, out, listener, new Channel.Listener() {
+            computer.setChannel(channelIn, channelOut, listener, new Channel.Listener() {
                 @Override
                 public void onClosed(Channel channel, IOException cause) {
                     // Bye!
@@ -363,6 +508,7 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
                 @NonNull final String javaExe,
                 @NonNull final String jvmArgs,
                 @NonNull final String jarName,
+                @NonNull final String jarPath,
                 @NonNull final String remoteFs,
                 @NonNull final String jenkinsUrl)
                 throws IOException, InterruptedException {
@@ -383,6 +529,9 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
                     case JarName:
                         argValue = jarName;
                         break;
+                    case JarPath:
+                        argValue = jarPath;
+                        break;
                     case RemoteFs:
                         argValue = remoteFs;
                         break;
@@ -404,17 +553,5 @@ public class DockerComputerAttachConnector extends DockerComputerConnector imple
             return knownVariables;
         }
 
-        private static String readLine(InputStream in) throws IOException {
-            StringBuilder s = new StringBuilder();
-            int c;
-            while ((c = in.read()) > 0) {
-                if (c == '\r') {
-                    break; // EOL
-                }
-                s.append((char) c);
-            }
-            in.read(); // \n
-            return s.toString();
-        }
     }
 }
@@ -4,6 +4,7 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.thoughtworks.xstream.InitializationException;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.DescriptorExtensionList;
@@ -20,6 +21,10 @@ import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
@@ -47,6 +52,9 @@ public abstract class DockerComputerConnector extends AbstractDescribableImpl<Do
         }
     }
 
+    /** {@link #remoting}, ready to be copied into containers. See {@link #getRemotingTarArchive()}. */
+    private static volatile InMemoryTarArchive remotingTarArchive;
+
     @Override
     public int hashCode() {
         return super.hashCode();
@@ -149,13 +157,40 @@ public abstract class DockerComputerConnector extends AbstractDescribableImpl<Do
     protected String injectRemotingJar(
             @NonNull String containerId, @NonNull String workdir, @NonNull DockerClient client) {
         // Copy agent.jar into container
-        client.copyArchiveToContainerCmd(containerId)
-                .withHostResource(remoting.getAbsolutePath())
-                .withRemotePath(workdir)
-                .exec();
+        try (InputStream tar = getRemotingTarArchive().openStream()) {
+            client.copyArchiveToContainerCmd(containerId)
+                    .withTarInputStream(tar)
+                    .withRemotePath(workdir)
+                    .exec();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
         return workdir + '/' + remoting.getName();
     }
 
+    /**
+     * Gets {@link #remoting} as a tar archive. The archive is only built once,
+     * and is then kept in memory, so that we don't have to read and re-archive
+     * the jar for every container.
+     *
+     * @return The remoting jar, archived.
+     * @throws IOException if we can't read the remoting jar.
+     */
+    @NonNull
+    static InMemoryTarArchive getRemotingTarArchive() throws IOException {
+        InMemoryTarArchive result = remotingTarArchive;
+        if (result == null) {
+            synchronized (DockerComputerConnector.class) {
+                result = remotingTarArchive;
+                if (result == null) {
+                    result = InMemoryTarArchive.of(remoting);
+                    remotingTarArchive = result;
+                }
+            }
+        }
+        return result;
+    }
+
     @Restricted(NoExternalUse.class)
     protected static void addEnvVars(
             @NonNull final EnvVars vars, @Nullable final Iterable<? extends NodeProperty<?>> nodeProperties)
@@ -180,11 +215,44 @@ public abstract class DockerComputerConnector extends AbstractDescribableImpl<Do
             @NonNull String workdir,
             @NonNull TaskListener listener)
             throws IOException, InterruptedException {
+        return waitFor(createLauncherAsync(api, containerId, workdir, listener));
+    }
+
+    /**
+     * Like {@link #createLauncher(DockerAPI, String, String, TaskListener)},
+     * except that, if the connector has to wait for the container to be ready
+     * before it can create its launcher (e.g. for sshd to start), we don't
+     * tie up the calling thread while it waits.
+     *
+     * @param api         The {@link DockerAPI} for the cloud this agent is running on.
+     * @param containerId The ID of the container.
+     * @param workdir     The filesystem path to the Jenkins agent working directory.
+     * @param listener    Where to output any issues.
+     * @return A future which will be completed with the launcher, or
+     *         exceptionally if the container never became ready.
+     * @throws IOException          If anything goes wrong, e.g. talking to docker.
+     * @throws InterruptedException If we're interrupted while waiting.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public final CompletableFuture<ComputerLauncher> createLauncherAsync(
+            @NonNull final DockerAPI api,
+            @NonNull final String containerId,
+            @NonNull String workdir,
+            @NonNull TaskListener listener)
+            throws IOException, InterruptedException {
+        final ComputerLauncher uninspectedLauncher =
+                createLauncherWithoutInspection(api, containerId, workdir, listener);
+        if (uninspectedLauncher != null) {
+            // The launcher will check the container is running when it's asked to launch the agent.
+            return CompletableFuture.completedFuture(
+                    new DockerDelegatingComputerLauncher(uninspectedLauncher, api, containerId, false));
+        }
         final InspectContainerResponse inspect;
         try (final DockerClient client = api.getClient()) {
             inspect = client.inspectContainerCmd(containerId).exec();
         }
-        final ComputerLauncher launcher = createLauncher(api, workdir, inspect, listener);
+        final CompletableFuture<ComputerLauncher> launcher = createLauncherAsync(api, workdir, inspect, listener);
 
         final Boolean running = inspect.getState().getRunning();
         if (Boolean.FALSE.equals(running)) {
@@ -192,10 +260,92 @@ public abstract class DockerComputerConnector extends AbstractDescribableImpl<Do
                     "Container {} is not running. {}",
                     containerId,
                     inspect.getState().getStatus());
+            launcher.cancel(false);
             throw new IOException("Container is not running.");
         }
 
-        return new DockerDelegatingComputerLauncher(launcher, api, containerId);
+        return launcher.thenApply(l -> new DockerDelegatingComputerLauncher(l, api, containerId, true));
+    }
+
+    /**
+     * Waits for a future, rethrowing whatever it failed with.
+     *
+     * @param <T>    What the future will give us.
+     * @param future The future.
+     * @return What the future completed with.
+     * @throws IOException          If the future failed with an
+     *                              {@link IOException} (or a checked exception
+     *                              that isn't one).
+     * @throws InterruptedException If we're interrupted while waiting.
+     */
+    @Restricted(NoExternalUse.class)
+    public static <T> T waitFor(@NonNull CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Tells us whether, if Jenkins restarts while an agent is running,
+     * {@link #createLauncher(DockerAPI, String, String, TaskListener)} can
+     * give us a launcher that reconnects to the agent's (still running)
+     * container.
+     * <p>
+     * That's not possible if the agent process depended on its connection to
+     * the old Jenkins, e.g. if it was started by Jenkins and talked to it
+     * over stdin/stdout.
+     *
+     * @return true if we can reconnect to an agent after a restart.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean canReconnectToRunningContainer() {
+        return false;
+    }
+
+    /**
+     * Create a Launcher to create an Agent with this container, without first
+     * asking docker for details of the container.
+     * <p>
+     * Connectors whose launcher doesn't need to know anything about the
+     * container other than its ID (e.g. its network settings) should override
+     * this so that we don't have to inspect the container before the agent is
+     * launched. The check that the container is running is then done when the
+     * agent is launched instead.
+     *
+     * @param api         The {@link DockerAPI} for the cloud this agent is running on.
+     * @param containerId The ID of the container.
+     * @param workdir     The filesystem path to the Jenkins agent working directory.
+     * @param listener    Where to output any issues.
+     * @return A configured {@link ComputerLauncher}, or null if this connector
+     *         needs
+     *         {@link #createLauncher(DockerAPI, String, InspectContainerResponse, TaskListener)}
+     *         to be called instead.
+     * @throws IOException          If anything goes wrong, e.g. talking to docker.
+     * @throws InterruptedException If we're interrupted while waiting.
+     */
+    @CheckForNull
+    protected ComputerLauncher createLauncherWithoutInspection(
+            @NonNull DockerAPI api,
+            @NonNull String containerId,
+            @NonNull String workdir,
+            @NonNull TaskListener listener)
+            throws IOException, InterruptedException {
+        return null;
     }
 
     /**
@@ -219,6 +369,31 @@ public abstract class DockerComputerConnector extends AbstractDescribableImpl<Do
             @NonNull TaskListener listener)
             throws IOException, InterruptedException;
 
+    /**
+     * Like
+     * {@link #createLauncher(DockerAPI, String, InspectContainerResponse, TaskListener)},
+     * but for connectors that may have to wait for the container to be ready
+     * before they can create its launcher. Those should override this so
+     * that they don't tie up a thread while they wait.
+     *
+     * @param api      The {@link DockerAPI} for the cloud this agent is running on.
+     * @param workdir  The filesystem path to the Jenkins agent working directory.
+     * @param inspect  Information from the docker daemon about our container.
+     * @param listener Where to output any issues.
+     * @return A future which will be completed with the launcher.
+     * @throws IOException          If anything goes wrong, e.g. talking to docker.
+     * @throws InterruptedException If we're interrupted while waiting.
+     */
+    @NonNull
+    protected CompletableFuture<ComputerLauncher> createLauncherAsync(
+            @NonNull DockerAPI api,
+            @NonNull String workdir,
+            @NonNull InspectContainerResponse inspect,
+            @NonNull TaskListener listener)
+            throws IOException, InterruptedException {
+        return CompletableFuture.completedFuture(createLauncher(api, workdir, inspect, listener));
+    }
+
     /**
      * @return all the registered {@link DockerComputerConnector} descriptors.
      */
@@ -136,6 +136,13 @@ public class DockerComputerJNLPConnector extends DockerComputerConnector {
         return sb.toString();
     }
 
+    @Override
+    @Restricted(NoExternalUse.class)
+    public boolean canReconnectToRunningContainer() {
+        // the agent in the container will reconnect to us.
+        return true;
+    }
+
     @Override
     protected ComputerLauncher createLauncher(
             final DockerAPI api, final String workdir, final InspectContainerResponse inspect, TaskListener listener)
@@ -143,6 +150,14 @@ public class DockerComputerJNLPConnector extends DockerComputerConnector {
         return new JNLPLauncher();
     }
 
+    @Override
+    protected ComputerLauncher createLauncherWithoutInspection(
+            final DockerAPI api, final String containerId, final String workdir, TaskListener listener)
+            throws IOException, InterruptedException {
+        // We don't need to know anything about the container; it connects to us.
+        return new JNLPLauncher();
+    }
+
     @Restricted(NoExternalUse.class)
     enum ArgumentVariables {
         NodeName("NODE_NAME", "The name assigned to this node"), //
@@ -19,12 +19,12 @@ import com.github.dockerjava.api.model.PortBinding;
 import com.github.dockerjava.api.model.Ports;
 import com.nirima.jenkins.plugins.docker.utils.PortUtils;
 import com.trilead.ssh2.Connection;
-import com.trilead.ssh2.signature.RSAKeyAlgorithm;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.AbstractDescribableImpl;
+import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
@@ -39,25 +39,19 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
-import jenkins.bouncycastle.api.PEMEncodable;
 import jenkins.model.Jenkins;
-import org.apache.tools.tar.TarEntry;
-import org.apache.tools.tar.TarOutputStream;
 import org.jenkinsci.Symbol;
-import org.jenkinsci.main.modules.instance_identity.InstanceIdentity;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.AncestorInPath;
@@ -293,38 +287,37 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
     @Override
     public void beforeContainerStarted(DockerAPI api, String workdir, DockerTransientNode node)
             throws IOException, InterruptedException {
-        final String key = sshKeyStrategy.getInjectedKey();
-        if (key != null) {
+        final InMemoryTarArchive tar = sshKeyStrategy.getAuthorizedKeysCommandArchive();
+        if (tar != null) {
             final String containerId = node.getContainerId();
-            final String authorizedKeysCommand = "#!/bin/sh\n"
-                    + "[ \"$1\" = \"" + sshKeyStrategy.getUser() + "\" ] "
-                    + "&& echo '" + key + "'"
-                    + "|| :";
-            final byte[] authorizedKeysCommandAsBytes = authorizedKeysCommand.getBytes(StandardCharsets.UTF_8);
-            try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    TarOutputStream tar = new TarOutputStream(bos)) {
-                TarEntry entry = new TarEntry("authorized_key");
-                entry.setSize(authorizedKeysCommandAsBytes.length);
-                entry.setMode(0700);
-                tar.putNextEntry(entry);
-                tar.write(authorizedKeysCommandAsBytes);
-                tar.closeEntry();
-                tar.close();
-                try (InputStream is = new ByteArrayInputStream(bos.toByteArray());
-                        DockerClient client = api.getClient()) {
-                    client.copyArchiveToContainerCmd(containerId)
-                            .withTarInputStream(is)
-                            .withRemotePath("/root")
-                            .exec();
-                }
+            try (InputStream is = tar.openStream();
+                    DockerClient client = api.getClient()) {
+                client.copyArchiveToContainerCmd(containerId)
+                        .withTarInputStream(is)
+                        .withRemotePath("/root")
+                        .exec();
             }
         }
     }
 
+    @Override
+    @Restricted(NoExternalUse.class)
+    public boolean canReconnectToRunningContainer() {
+        // sshd is still running in the container, so we can just connect again.
+        return true;
+    }
+
     @Override
     protected ComputerLauncher createLauncher(
             DockerAPI api, String workdir, InspectContainerResponse inspect, TaskListener listener)
             throws IOException, InterruptedException {
+        return waitFor(createLauncherAsync(api, workdir, inspect, listener));
+    }
+
+    @Override
+    protected CompletableFuture<ComputerLauncher> createLauncherAsync(
+            DockerAPI api, String workdir, InspectContainerResponse inspect, TaskListener listener)
+            throws IOException {
         if ("exited".equals(inspect.getState().getStatus())) {
             // Something went wrong
             // FIXME report error "somewhere" visible to end user.
@@ -336,7 +329,7 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
         LOGGER.debug("container created {}", inspect);
         final InetSocketAddress address = getBindingForPort(api, inspect, port);
         // Wait until sshd has started
-        // TODO we could (also) have a more generic mechanism relying on healthcheck (inspect State.Health.Status)
+        // (if the template waits for the container to be healthy, this should succeed straight away)
         final PortUtils.ConnectionCheck connectionCheck = PortUtils.connectionCheck(address);
         final PortUtils.ConnectionCheckSSH connectionCheckSSH = connectionCheck.useSSH();
         final Integer maxNumRetriesOrNull = getMaxNumRetries();
@@ -352,19 +345,33 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
             connectionCheckSSH.withSSHTimeout(sshTimeoutSeconds, TimeUnit.SECONDS);
         }
         final long timestampBeforeConnectionCheck = System.nanoTime();
-        if (!connectionCheck.execute() || !connectionCheckSSH.execute()) {
-            final long timestampAfterConnectionCheckEnded = System.nanoTime();
-            final long nanosecondsElapsed = timestampAfterConnectionCheckEnded - timestampBeforeConnectionCheck;
-            final long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(nanosecondsElapsed);
-            final long millisecondsElapsed =
-                    TimeUnit.NANOSECONDS.toMillis(nanosecondsElapsed) - TimeUnit.SECONDS.toMillis(secondsElapsed);
-            throw new IOException("SSH service hadn't started after " + secondsElapsed + " seconds and "
-                    + millisecondsElapsed + " milliseconds."
-                    + "Try increasing the number of retries (currently " + maxNumRetriesOrNull
-                    + ") and/or the retry wait time (currently " + retryWaitTimeOrNull
-                    + ") to allow for containers taking longer to start.");
-        }
-        return sshKeyStrategy.getSSHLauncher(address, this);
+        // The port is probed by the shared prober, and only the SSH handshakes need a thread,
+        // so we don't tie one up for however long sshd takes to start.
+        return connectionCheckSSH.executeAsync(Computer.threadPoolForRemoting).handle((connected, failure) -> {
+            // if the port never opened, we say so just as if sshd never answered.
+            if (failure != null && !(failure.getCause() instanceof IllegalStateException)) {
+                throw failure instanceof CompletionException
+                        ? (CompletionException) failure
+                        : new CompletionException(failure);
+            }
+            if (failure != null || !connected) {
+                final long timestampAfterConnectionCheckEnded = System.nanoTime();
+                final long nanosecondsElapsed = timestampAfterConnectionCheckEnded - timestampBeforeConnectionCheck;
+                final long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(nanosecondsElapsed);
+                final long millisecondsElapsed =
+                        TimeUnit.NANOSECONDS.toMillis(nanosecondsElapsed) - TimeUnit.SECONDS.toMillis(secondsElapsed);
+                throw new CompletionException(new IOException("SSH service hadn't started after " + secondsElapsed
+                        + " seconds and " + millisecondsElapsed + " milliseconds."
+                        + "Try increasing the number of retries (currently " + maxNumRetriesOrNull
+                        + ") and/or the retry wait time (currently " + retryWaitTimeOrNull
+                        + ") to allow for containers taking longer to start."));
+            }
+            try {
+                return sshKeyStrategy.getSSHLauncher(address, this);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
     }
 
     private static InetSocketAddress getBindingForPort(DockerAPI api, InspectContainerResponse ir, int internalPort) {
@@ -449,6 +456,21 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
 
         public abstract String getUser();
 
+        /**
+         * @return An <code>AuthorizedKeysCommand</code> script, archived, that
+         *         allows the {@link #getInjectedKey()} to log in as
+         *         {@link #getUser()}, or null if there's no key to inject.
+         * @throws IOException if something goes wrong.
+         */
+        @CheckForNull
+        InMemoryTarArchive getAuthorizedKeysCommandArchive() throws IOException {
+            final String key = getInjectedKey();
+            if (key == null) {
+                return null;
+            }
+            return InstanceIdentityKeys.createAuthorizedKeysCommandArchive(getUser(), key);
+        }
+
         public abstract ComputerLauncher getSSHLauncher(
                 InetSocketAddress address, DockerComputerSSHConnector dockerComputerSSHConnector) throws IOException;
 
@@ -506,8 +528,7 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
         @Override
         public ComputerLauncher getSSHLauncher(InetSocketAddress address, DockerComputerSSHConnector connector)
                 throws IOException {
-            final InstanceIdentity id = InstanceIdentity.get();
-            final String pem = PEMEncodable.create(id.getPrivate()).encode();
+            final String pem = InstanceIdentityKeys.get().getPrivateKeyPem();
             return new InjectKeySSHLauncher(
                     address.getHostString(),
                     address.getPort(),
@@ -525,9 +546,15 @@ public class DockerComputerSSHConnector extends DockerComputerConnector {
 
         @Override
         public String getInjectedKey() throws IOException {
-            InstanceIdentity id = InstanceIdentity.get();
-            return "ssh-rsa "
-                    + Base64.getEncoder().encodeToString(new RSAKeyAlgorithm().encodePublicKey(id.getPublic()));
+            return InstanceIdentityKeys.get().getAuthorizedKey();
+        }
+
+        @Override
+        InMemoryTarArchive getAuthorizedKeysCommandArchive() throws IOException {
+            if (user == null) {
+                return super.getAuthorizedKeysCommandArchive();
+            }
+            return InstanceIdentityKeys.get().getAuthorizedKeysCommandArchive(user);
         }
 
         @Extension
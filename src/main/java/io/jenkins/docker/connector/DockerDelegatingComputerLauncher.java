@@ -2,13 +2,16 @@ package io.jenkins.docker.connector;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.ContainerConfig;
 import com.github.dockerjava.api.model.Frame;
-import hudson.model.Queue;
+import com.nirima.jenkins.plugins.docker.DockerTemplate;
 import hudson.model.TaskListener;
 import hudson.slaves.ComputerLauncher;
 import hudson.slaves.DelegatingComputerLauncher;
 import hudson.slaves.SlaveComputer;
+import io.jenkins.docker.DockerTerminationCoalescer;
 import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.Closeable;
@@ -22,30 +25,91 @@ class DockerDelegatingComputerLauncher extends DelegatingComputerLauncher {
     private final DockerAPI api;
     private final String containerId;
     private transient boolean haveLoggedOnDisconnectAlready;
+    /**
+     * True if we inspected the container (and saw it running) just before we
+     * were created, so our first launch needn't ask docker again.
+     */
+    private transient volatile boolean knownToBeRunning;
+    /**
+     * True if nobody has yet checked that the container is running, so our
+     * first launch must do so.
+     */
+    private transient volatile boolean notYetCheckedIfRunning;
 
-    public DockerDelegatingComputerLauncher(ComputerLauncher launcher, DockerAPI api, String containerId) {
+    /**
+     * @param launcher         The launcher that will actually launch the agent.
+     * @param api              The docker host the container is on.
+     * @param containerId      The container the agent is to run in.
+     * @param knownToBeRunning true if the caller has only just inspected the
+     *                         container and seen that it's running, false if
+     *                         nobody has checked yet.
+     */
+    DockerDelegatingComputerLauncher(
+            ComputerLauncher launcher, DockerAPI api, String containerId, boolean knownToBeRunning) {
         super(launcher);
         this.api = api;
         this.containerId = containerId;
+        this.knownToBeRunning = knownToBeRunning;
+        this.notYetCheckedIfRunning = !knownToBeRunning;
     }
 
     @Override
     public void launch(SlaveComputer computer, TaskListener listener) throws IOException, InterruptedException {
+        if (knownToBeRunning) {
+            knownToBeRunning = false;
+            LOGGER.log(LOG_LEVEL, "Container " + containerId + " was just seen running - launching agent.");
+            super.launch(computer, listener);
+            return;
+        }
+        final InspectContainerResponse inspect;
         try (final DockerClient client = api.getClient()) {
-            client.inspectContainerCmd(containerId).exec();
+            inspect = client.inspectContainerCmd(containerId).exec();
         } catch (NotFoundException handledByCode) {
             LOGGER.log(LOG_LEVEL, "Container " + containerId + " no longer exists - NOT launching agent.");
             // Container has been removed
-            Queue.withLock(() -> {
-                DockerTransientNode node = (DockerTransientNode) computer.getNode();
-                node._terminate(listener);
-            });
+            terminate(computer, listener);
             return;
         }
+        if (notYetCheckedIfRunning) {
+            notYetCheckedIfRunning = false;
+            final InspectContainerResponse.ContainerState state = inspect.getState();
+            if (state != null && Boolean.FALSE.equals(state.getRunning())) {
+                LOGGER.log(LOG_LEVEL, "Container " + containerId + " is not running - NOT launching agent.");
+                listener.error("Container %s is not running. %s", containerId, state.getStatus());
+                // we didn't check when provisioning, so make the template pay for it now.
+                disableTemplate(computer, inspect, state);
+                terminate(computer, listener);
+                return;
+            }
+        }
         LOGGER.log(LOG_LEVEL, "Container " + containerId + " exists - launching agent.");
         super.launch(computer, listener);
     }
 
+    private void disableTemplate(
+            SlaveComputer computer, InspectContainerResponse inspect, InspectContainerResponse.ContainerState state) {
+        final DockerTransientNode node = (DockerTransientNode) computer.getNode();
+        if (node == null) {
+            return;
+        }
+        try {
+            final ContainerConfig config = inspect.getConfig();
+            DockerTemplate.disableTemplateOfFailedContainer(
+                    node.getCloud(),
+                    config == null ? null : config.getLabels(),
+                    new IOException("Container " + containerId + " is not running. " + state.getStatus()));
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Unable to disable the template of container " + containerId, ex);
+        }
+    }
+
+    private static void terminate(SlaveComputer computer, TaskListener listener) {
+        final DockerTransientNode node = (DockerTransientNode) computer.getNode();
+        if (node != null) {
+            DockerTerminationCoalescer.get().terminate(node, listener);
+        }
+    }
+
     private class DockerLog implements ResultCallback<Frame> {
         @Override
         public void close() throws IOException {}
@@ -0,0 +1,74 @@
+package io.jenkins.docker.connector;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A tar archive, containing a single file, held in memory so that it can be
+ * copied into any number of containers without being built again.
+ * <p>
+ * Instances are immutable; each call to {@link #openStream()} reads from the
+ * same buffer.
+ */
+@Restricted(NoExternalUse.class)
+final class InMemoryTarArchive {
+    private final byte[] tarBytes;
+
+    private InMemoryTarArchive(byte[] tarBytes) {
+        this.tarBytes = tarBytes;
+    }
+
+    /**
+     * Creates an archive holding a single file with the given contents.
+     *
+     * @param name     The name the file is to have in the archive.
+     * @param contents What's in the file.
+     * @param mode     The file's permissions, e.g. <code>0644</code>.
+     * @return The archive.
+     * @throws IOException if something goes wrong.
+     */
+    @NonNull
+    static InMemoryTarArchive of(@NonNull String name, @NonNull byte[] contents, int mode) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(contents.length + 2048);
+                TarOutputStream tar = new TarOutputStream(bos)) {
+            final TarEntry entry = new TarEntry(name);
+            entry.setSize(contents.length);
+            entry.setMode(mode);
+            tar.putNextEntry(entry);
+            tar.write(contents);
+            tar.closeEntry();
+            tar.close();
+            return new InMemoryTarArchive(bos.toByteArray());
+        }
+    }
+
+    /**
+     * Creates an archive holding a copy of the given file.
+     *
+     * @param file The file to be archived.
+     * @return The archive.
+     * @throws IOException if we can't read the file.
+     */
+    @NonNull
+    static InMemoryTarArchive of(@NonNull File file) throws IOException {
+        return of(file.getName(), Files.readAllBytes(file.toPath()), 0644);
+    }
+
+    /**
+     * @return A new stream of the archive's bytes, suitable for passing to
+     *         {@link com.github.dockerjava.api.command.CopyArchiveToContainerCmd#withTarInputStream(InputStream)}.
+     */
+    @NonNull
+    InputStream openStream() {
+        return new ByteArrayInputStream(tarBytes);
+    }
+}
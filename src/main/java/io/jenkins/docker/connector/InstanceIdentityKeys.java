@@ -0,0 +1,133 @@
+package io.jenkins.docker.connector;
+
+import com.trilead.ssh2.signature.RSAKeyAlgorithm;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.bouncycastle.api.PEMEncodable;
+import org.jenkinsci.main.modules.instance_identity.InstanceIdentity;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The SSH key material that {@link DockerComputerSSHConnector.InjectSSHKey}
+ * derives from the Jenkins {@link InstanceIdentity}.
+ * <p>
+ * This only depends on the identity, which doesn't usually change, so we
+ * encode it once (and only encode it again if the identity changes) instead
+ * of doing it every time we provision or launch an agent.
+ */
+@Restricted(NoExternalUse.class)
+final class InstanceIdentityKeys {
+    /** The name of the file we put in SSH agent containers. */
+    static final String AUTHORIZED_KEYS_COMMAND_NAME = "authorized_key";
+
+    private static volatile InstanceIdentityKeys cached;
+
+    private final RSAPublicKey publicKey;
+    private final RSAPrivateKey privateKey;
+    private final String authorizedKey;
+    /** Only calculated when first needed. */
+    private volatile String privateKeyPem;
+    /** {@link #AUTHORIZED_KEYS_COMMAND_NAME}, archived, by user name. */
+    private final Map<String, InMemoryTarArchive> authorizedKeysCommandArchives = new ConcurrentHashMap<>();
+
+    private InstanceIdentityKeys(@NonNull RSAPublicKey publicKey, @NonNull RSAPrivateKey privateKey)
+            throws IOException {
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.authorizedKey =
+                "ssh-rsa " + Base64.getEncoder().encodeToString(new RSAKeyAlgorithm().encodePublicKey(publicKey));
+    }
+
+    /**
+     * @return The keys for the current {@link InstanceIdentity}.
+     * @throws IOException if the public key can't be encoded.
+     */
+    @NonNull
+    static InstanceIdentityKeys get() throws IOException {
+        final InstanceIdentity id = InstanceIdentity.get();
+        return get(id.getPublic(), id.getPrivate());
+    }
+
+    @NonNull
+    static InstanceIdentityKeys get(@NonNull RSAPublicKey publicKey, @NonNull RSAPrivateKey privateKey)
+            throws IOException {
+        InstanceIdentityKeys result = cached;
+        if (result == null || !result.isFor(publicKey, privateKey)) {
+            // If two threads get here at once, they'll both do the same work,
+            // which is harmless.
+            result = new InstanceIdentityKeys(publicKey, privateKey);
+            cached = result;
+        }
+        return result;
+    }
+
+    private boolean isFor(RSAPublicKey otherPublicKey, RSAPrivateKey otherPrivateKey) {
+        // it's almost always the very same objects, so try the cheap test first.
+        return (publicKey == otherPublicKey || publicKey.equals(otherPublicKey))
+                && (privateKey == otherPrivateKey || privateKey.equals(otherPrivateKey));
+    }
+
+    /**
+     * @return The public key, in the form used in an
+     *         <code>authorized_keys</code> file.
+     */
+    @NonNull
+    String getAuthorizedKey() {
+        return authorizedKey;
+    }
+
+    /**
+     * @return The private key, PEM-encoded.
+     * @throws IOException if the key can't be encoded.
+     */
+    @NonNull
+    String getPrivateKeyPem() throws IOException {
+        String result = privateKeyPem;
+        if (result == null) {
+            result = PEMEncodable.create(privateKey).encode();
+            privateKeyPem = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param user The user who is to be able to log in with our key.
+     * @return A tar archive holding an <code>AuthorizedKeysCommand</code>
+     *         script for that user.
+     * @throws IOException if the archive can't be created.
+     */
+    @NonNull
+    InMemoryTarArchive getAuthorizedKeysCommandArchive(@NonNull String user) throws IOException {
+        InMemoryTarArchive result = authorizedKeysCommandArchives.get(user);
+        if (result == null) {
+            result = createAuthorizedKeysCommandArchive(user, authorizedKey);
+            authorizedKeysCommandArchives.put(user, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param user The user who is to be able to log in with the key.
+     * @param key  The public key, as per {@link #getAuthorizedKey()}.
+     * @return A tar archive holding an <code>AuthorizedKeysCommand</code>
+     *         script that gives the key for that user (only).
+     * @throws IOException if the archive can't be created.
+     */
+    @NonNull
+    static InMemoryTarArchive createAuthorizedKeysCommandArchive(String user, @NonNull String key)
+            throws IOException {
+        final String authorizedKeysCommand = "#!/bin/sh\n"
+                + "[ \"$1\" = \"" + user + "\" ] "
+                + "&& echo '" + key + "'"
+                + "|| :";
+        final byte[] authorizedKeysCommandAsBytes = authorizedKeysCommand.getBytes(StandardCharsets.UTF_8);
+        return InMemoryTarArchive.of(AUTHORIZED_KEYS_COMMAND_NAME, authorizedKeysCommandAsBytes, 0700);
+    }
+}
@@ -0,0 +1,169 @@
+package io.jenkins.docker.connector;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Mount;
+import com.github.dockerjava.api.model.MountType;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A named docker volume holding <code>remoting.jar</code>, so that containers
+ * can mount it (read-only) instead of having the jar copied into every one of
+ * them.
+ * <p>
+ * The volume's name includes a digest of the jar, so each remoting version
+ * gets its own volume. We (re)populate it the first time we need it on each
+ * docker host after Jenkins starts, or if it has since been removed; after
+ * that, it only costs us a check that it still exists.
+ */
+@Restricted(NoExternalUse.class)
+final class RemotingVolume {
+    private static final Logger LOGGER = Logger.getLogger(RemotingVolume.class.getName());
+
+    /** Where, inside the container, we mount the volume. */
+    static final String MOUNT_POINT = "/jenkins-remoting";
+
+    /** The docker hosts (and volume names) we've already populated. */
+    private static final Set<String> SEEDED = ConcurrentHashMap.newKeySet();
+
+    private static final Map<String, Object> SEED_LOCKS = new ConcurrentHashMap<>();
+
+    /** The volume names we've worked out, indexed by the jar's path. */
+    private static final Map<String, String> VOLUME_NAMES = new ConcurrentHashMap<>();
+
+    private RemotingVolume() {}
+
+    /**
+     * @param remoting The remoting jar.
+     * @return The name of the volume for this version of the remoting jar.
+     * @throws IOException if we can't read the jar.
+     */
+    @NonNull
+    static String getVolumeName(@NonNull File remoting) throws IOException {
+        final String key = remoting.getAbsolutePath();
+        String result = VOLUME_NAMES.get(key);
+        if (result == null) {
+            try (InputStream in = Files.newInputStream(remoting.toPath())) {
+                result = "jenkins-remoting-" + Util.getDigestOf(in).substring(0, 12);
+            }
+            VOLUME_NAMES.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * @param remoting The remoting jar.
+     * @return Where containers that mount the volume will find the jar.
+     */
+    @NonNull
+    static String getJarPath(@NonNull File remoting) {
+        return MOUNT_POINT + '/' + remoting.getName();
+    }
+
+    /**
+     * Makes sure the volume exists and holds the remoting jar on the docker
+     * host, then adds a read-only mount of it to the container that's about to
+     * be created.
+     *
+     * @param api      The docker host the container will be created on.
+     * @param remoting The remoting jar.
+     * @param cmd      The command that'll create the container.
+     * @throws IOException if we fail to talk to docker.
+     */
+    static void mountInto(@NonNull DockerAPI api, @NonNull File remoting, @NonNull CreateContainerCmd cmd)
+            throws IOException {
+        final String name = getVolumeName(remoting);
+        ensureSeeded(api, remoting, name, cmd.getImage());
+        HostConfig hostConfig = cmd.getHostConfig();
+        if (hostConfig == null) {
+            hostConfig = new HostConfig();
+            cmd.withHostConfig(hostConfig);
+        }
+        final List<Mount> existingMounts = hostConfig.getMounts();
+        final List<Mount> mounts = existingMounts == null ? new ArrayList<>() : new ArrayList<>(existingMounts);
+        mounts.add(new Mount()
+                .withType(MountType.VOLUME)
+                .withSource(name)
+                .withTarget(MOUNT_POINT)
+                .withReadOnly(true));
+        hostConfig.withMounts(mounts);
+    }
+
+    private static void ensureSeeded(DockerAPI api, File remoting, String name, String image) throws IOException {
+        final String key = api.getDockerHost().getUri() + '|' + name;
+        try (final DockerClient client = api.getClient()) {
+            if (SEEDED.contains(key)) {
+                if (volumeExists(client, name)) {
+                    return;
+                }
+                // e.g. "docker volume prune" removed it, as nothing was using it.
+                // If we mounted it anyway, docker would create it empty.
+                LOGGER.log(Level.INFO, "Volume {0} has gone; populating it again", name);
+                SEEDED.remove(key);
+            }
+            synchronized (SEED_LOCKS.computeIfAbsent(key, k -> new Object())) {
+                if (SEEDED.contains(key)) {
+                    return;
+                }
+                seed(client, remoting, name, image);
+                SEEDED.add(key);
+            }
+        }
+    }
+
+    private static boolean volumeExists(DockerClient client, String name) {
+        try {
+            client.inspectVolumeCmd(name).exec();
+            return true;
+        } catch (NotFoundException handledByCode) {
+            return false;
+        }
+    }
+
+    private static void seed(DockerClient client, File remoting, String name, String image) throws IOException {
+        if (!volumeExists(client, name)) {
+            client.createVolumeCmd().withName(name).exec();
+        }
+        // Volumes can only be written to via a container, so we use a
+        // throwaway one (which never gets started) to copy the jar in.
+        final String seederId = client.createContainerCmd(image)
+                .withCmd("true")
+                .withHostConfig(HostConfig.newHostConfig()
+                        .withMounts(List.of(new Mount()
+                                .withType(MountType.VOLUME)
+                                .withSource(name)
+                                .withTarget(MOUNT_POINT))))
+                .exec()
+                .getId();
+        try (InputStream tar = DockerComputerConnector.getRemotingTarArchive().openStream()) {
+            client.copyArchiveToContainerCmd(seederId)
+                    .withTarInputStream(tar)
+                    .withRemotePath(MOUNT_POINT)
+                    .exec();
+            LOGGER.log(Level.INFO, "Populated volume {0} with {1}", new Object[] {name, remoting.getName()});
+        } finally {
+            try {
+                client.removeContainerCmd(seederId).withForce(true).exec();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Unable to remove container " + seederId, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.jenkins.docker.connector;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Compresses remoting traffic over the stdin/stdout of an attached agent.
+ * <p>
+ * On the agent side, this class is run as a java agent (see
+ * {@link #premain(String)}) in the same JVM as remoting, where it replaces
+ * {@link System#in} and {@link System#out} before remoting starts using them.
+ * On the controller side, we wrap the exec's streams the same way.
+ * <p>
+ * This class gets copied into the container on its own, so it must not use
+ * anything other than the JDK.
+ */
+@Restricted(NoExternalUse.class)
+public final class StdioCompression {
+    private static final int BUFFER_SIZE = 8192;
+
+    private StdioCompression() {}
+
+    /**
+     * Called by the JVM, before <code>main</code>, when started with
+     * <code>-javaagent:<i>jar</i>=<i>level</i></code>.
+     *
+     * @param agentArgs The compression level.
+     */
+    public static void premain(String agentArgs) {
+        final int level = agentArgs == null || agentArgs.isEmpty()
+                ? Deflater.DEFAULT_COMPRESSION
+                : Integer.parseInt(agentArgs.trim());
+        System.setIn(decompress(new FileInputStream(FileDescriptor.in)));
+        System.setOut(new PrintStream(compress(new FileOutputStream(FileDescriptor.out), level), false));
+    }
+
+    /**
+     * @param in A stream written by {@link #compress(OutputStream, int)}.
+     * @return A stream of the decompressed data.
+     */
+    public static InputStream decompress(InputStream in) {
+        return new NonBlockingInflaterInputStream(in);
+    }
+
+    /**
+     * @param out   Where the compressed data is to go.
+     * @param level The compression level, 1 to 9.
+     * @return A stream that compresses what's written to it, and sends
+     *         everything written so far when it's flushed.
+     */
+    public static OutputStream compress(OutputStream out, int level) {
+        return new EndingDeflaterOutputStream(out, level);
+    }
+
+    /**
+     * A {@link DeflaterOutputStream} that frees its {@link Deflater}'s native
+     * memory when it's closed, which it wouldn't otherwise do as we have to
+     * give it our own {@link Deflater} to set the compression level.
+     */
+    private static final class EndingDeflaterOutputStream extends DeflaterOutputStream {
+        EndingDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level), BUFFER_SIZE, true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * An {@link InflaterInputStream} that doesn't claim to have data available
+     * when it might not, so that anything buffering on top of it won't block
+     * waiting for more data than the other end has sent. It also frees its
+     * {@link Inflater}'s native memory when it's closed.
+     */
+    private static final class NonBlockingInflaterInputStream extends InflaterInputStream {
+        NonBlockingInflaterInputStream(InputStream in) {
+            super(in, new Inflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
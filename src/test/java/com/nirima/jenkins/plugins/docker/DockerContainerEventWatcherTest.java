@@ -0,0 +1,192 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.model.Event;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.docker.commons.credentials.DockerServerEndpoint;
+import org.junit.jupiter.api.Test;
+
+class DockerContainerEventWatcherTest {
+    private static final String UNITTEST_JENKINS_ID = "d8e1e1a3-3e0e-4b38-8d71-6b7bd6c0c4f5";
+    private static final String CONTAINER_ID = "eventTestContainerId";
+
+    @Test
+    void doRunGivenCloudsThenListensOncePerEndpoint() {
+        // Given
+        final MockedDockerHost host1 = new MockedDockerHost("tcp://host1:2375");
+        final MockedDockerHost host2 = new MockedDockerHost("tcp://host2:2375");
+        final DockerCloud cloud1 = new DockerCloud("cloud1", host1.api, List.of());
+        final DockerCloud cloud1Again = new DockerCloud("cloud1again", host1.api, List.of());
+        final DockerCloud cloud2 = new DockerCloud("cloud2", host2.api, List.of());
+        final TestableDockerContainerEventWatcher subject = new TestableDockerContainerEventWatcher();
+        subject.allClouds = List.of(cloud1, cloud1Again, cloud2);
+
+        // When
+        subject.doRun();
+        subject.doRun();
+
+        // Then
+        verify(host1.eventsCmd, times(1)).exec(any());
+        verify(host2.eventsCmd, times(1)).exec(any());
+        verify(host1.eventsCmd)
+                .withLabelFilter(Map.of(DockerContainerLabelKeys.JENKINS_INSTANCE_ID, UNITTEST_JENKINS_ID));
+        verify(host1.eventsCmd, never()).withSince(anyString());
+    }
+
+    @Test
+    void doRunGivenDisabledThenStopsListening() throws IOException {
+        // Given
+        final MockedDockerHost host = new MockedDockerHost("tcp://host1:2375");
+        final TestableDockerContainerEventWatcher subject = new TestableDockerContainerEventWatcher();
+        subject.allClouds = List.of(new DockerCloud("cloud1", host.api, List.of()));
+        subject.doRun();
+
+        // When
+        subject.enabled = false;
+        subject.doRun();
+
+        // Then
+        verify(host.eventsCmd, times(1)).exec(any());
+        verify(host.client).close();
+    }
+
+    @Test
+    void doRunGivenEventStreamBrokeThenReconnectsFromLastEvent() {
+        // Given
+        final MockedDockerHost host = new MockedDockerHost("tcp://host1:2375");
+        final TestableDockerContainerEventWatcher subject = new TestableDockerContainerEventWatcher();
+        subject.allClouds = List.of(new DockerCloud("cloud1", host.api, List.of()));
+        subject.doRun();
+        host.callback.onNext(createEvent("die", 1234L));
+        host.callback.onError(new IOException("connection reset"));
+
+        // When
+        subject.doRun();
+
+        // Then
+        verify(host.eventsCmd, times(2)).exec(any());
+        verify(host.eventsCmd).withSince("1234");
+    }
+
+    @Test
+    void onNextGivenContainerEventsThenChecksContainerOrItsNode() {
+        // Given
+        final MockedDockerHost host = new MockedDockerHost("tcp://host1:2375");
+        final DockerCloud cloud = new DockerCloud("cloud1", host.api, List.of());
+        final TestableDockerContainerEventWatcher subject = new TestableDockerContainerEventWatcher();
+        subject.allClouds = List.of(cloud);
+        subject.doRun();
+
+        // When
+        host.callback.onNext(createEvent("create", 1L));
+        host.callback.onNext(createEvent("die", 2L));
+        host.callback.onNext(createEvent("destroy", 3L));
+        host.callback.onNext(createEvent("start", 4L));
+
+        // Then
+        verify(subject.watchdog, times(2)).checkContainer(cloud, CONTAINER_ID);
+        verify(subject.watchdog, times(1)).checkNodesOfRemovedContainer(CONTAINER_ID);
+        assertThat(subject.delays.size(), equalTo(3));
+        // newly created containers aren't checked until they're old enough to be removed.
+        assertThat(subject.delays.get(0), greaterThan(subject.delays.get(1)));
+    }
+
+    @Test
+    void doRunGivenNotEnabledThenDoesNotListen() {
+        // Given
+        final MockedDockerHost host = new MockedDockerHost("tcp://host1:2375");
+        final TestableDockerContainerEventWatcher subject = new TestableDockerContainerEventWatcher();
+        subject.allClouds = List.of(new DockerCloud("cloud1", host.api, List.of()));
+        subject.enabled = false;
+
+        // When
+        subject.doRun();
+
+        // Then
+        verify(host.client, never()).eventsCmd();
+        assertThat(subject.delays, empty());
+    }
+
+    private static Event createEvent(String action, Long time) {
+        final Event result = mock(Event.class);
+        when(result.getAction()).thenReturn(action);
+        when(result.getId()).thenReturn(CONTAINER_ID);
+        when(result.getTime()).thenReturn(time);
+        return result;
+    }
+
+    private static class MockedDockerHost {
+        final DockerAPI api = mock(DockerAPI.class);
+        final DockerClient client = mock(DockerClient.class);
+        final EventsCmd eventsCmd = mock(EventsCmd.class, RETURNS_SELF);
+        ResultCallback<Event> callback;
+
+        MockedDockerHost(String uri) {
+            final DockerServerEndpoint endpoint = mock(DockerServerEndpoint.class);
+            when(endpoint.getUri()).thenReturn(uri);
+            when(api.getDockerHost()).thenReturn(endpoint);
+            when(api.getClient()).thenReturn(client);
+            when(client.eventsCmd()).thenReturn(eventsCmd);
+            doAnswer(invocation -> {
+                        callback = invocation.getArgument(0);
+                        return callback;
+                    })
+                    .when(eventsCmd)
+                    .exec(any());
+        }
+    }
+
+    private static class TestableDockerContainerEventWatcher extends DockerContainerEventWatcher {
+        final DockerContainerWatchdog watchdog = mock(DockerContainerWatchdog.class);
+        final List<Long> delays = new ArrayList<>();
+        List<DockerCloud> allClouds = List.of();
+        boolean enabled = true;
+
+        @Override
+        protected boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        protected List<DockerCloud> getAllClouds() {
+            return allClouds;
+        }
+
+        @Override
+        protected DockerContainerWatchdog getWatchdog() {
+            return watchdog;
+        }
+
+        @Override
+        protected String getJenkinsInstanceId() {
+            return UNITTEST_JENKINS_ID;
+        }
+
+        @Override
+        protected void schedule(Runnable check, long delayInMs) {
+            // run it now, rather than waiting.
+            delays.add(delayInMs);
+            check.run();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.command.HealthState;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.HealthCheck;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DockerContainerHealthTest {
+    private static final String CONTAINER_ID = "healthTestContainerId";
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private final PrintStream logger = new PrintStream(log, true, StandardCharsets.UTF_8);
+
+    @Test
+    void createHealthCheckThenRunsCommandInShell() {
+        final HealthCheck actual = DockerContainerHealth.createHealthCheck("pgrep sshd");
+
+        assertThat(actual.getTest(), contains("CMD-SHELL", "pgrep sshd"));
+    }
+
+    @Test
+    void waitUntilHealthyGivenHealthyEventThenReturnsTrue() throws Exception {
+        // Given
+        final DockerClient client =
+                createMockedClient("starting", "health_status: unhealthy", "health_status: healthy");
+
+        // When
+        final boolean actual = DockerContainerHealth.waitUntilHealthy(client, CONTAINER_ID, 0L, 10000L, logger);
+
+        // Then
+        assertThat(actual, equalTo(true));
+        assertThat(log.toString(StandardCharsets.UTF_8), containsString("health_status: unhealthy"));
+    }
+
+    @Test
+    void waitUntilHealthyGivenNoHealthcheckThenReturnsFalseWithoutWaiting() throws Exception {
+        // Given
+        final DockerClient client = createMockedClient(null);
+
+        // When
+        final boolean actual = DockerContainerHealth.waitUntilHealthy(client, CONTAINER_ID, 0L, 10000L, logger);
+
+        // Then
+        assertThat(actual, equalTo(false));
+    }
+
+    @Test
+    void waitUntilHealthyGivenContainerDiesThenThrows() {
+        // Given
+        final DockerClient client = createMockedClient("starting", "die");
+
+        // When
+        final IOException actual = assertThrows(
+                IOException.class,
+                () -> DockerContainerHealth.waitUntilHealthy(client, CONTAINER_ID, 0L, 10000L, logger));
+
+        // Then
+        assertThat(actual.getMessage(), containsString("stopped before becoming healthy"));
+    }
+
+    @Test
+    void waitUntilHealthyGivenNoEventsThenTimesOut() {
+        // Given
+        final DockerClient client = createMockedClient("starting");
+
+        // When
+        final IOException actual = assertThrows(
+                IOException.class,
+                () -> DockerContainerHealth.waitUntilHealthy(client, CONTAINER_ID, 0L, 100L, logger));
+
+        // Then
+        assertThat(actual.getMessage(), containsString("did not become healthy within 100ms"));
+    }
+
+    @Test
+    void waitUntilHealthyAsyncGivenNoEventsYetThenCompletesWhenHealthyEventArrives() throws Exception {
+        // Given
+        final DockerClient client = createMockedClient("starting");
+        final ResultCallback<Event>[] callback = captureCallback(client);
+
+        // When
+        final CompletableFuture<Boolean> actual =
+                DockerContainerHealth.waitUntilHealthyAsync(client, CONTAINER_ID, 0L, 10000L, logger);
+        final boolean doneBeforeEvent = actual.isDone();
+        final Event healthy = mock(Event.class);
+        when(healthy.getAction()).thenReturn("health_status: healthy");
+        callback[0].onNext(healthy);
+
+        // Then
+        assertThat(doneBeforeEvent, equalTo(false));
+        assertThat(actual.get(1, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    void waitUntilHealthyAsyncGivenNoEventsThenFailsWithTimeout() {
+        // Given
+        final DockerClient client = createMockedClient("starting");
+
+        // When
+        final CompletableFuture<Boolean> actual =
+                DockerContainerHealth.waitUntilHealthyAsync(client, CONTAINER_ID, 0L, 100L, logger);
+        final ExecutionException thrown =
+                assertThrows(ExecutionException.class, () -> actual.get(10, TimeUnit.SECONDS));
+
+        // Then
+        assertThat(thrown.getCause(), instanceOf(IOException.class));
+        assertThat(thrown.getCause().getMessage(), containsString("did not become healthy within 100ms"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResultCallback<Event>[] captureCallback(DockerClient client) {
+        final ResultCallback<Event>[] result = new ResultCallback[1];
+        final EventsCmd eventsCmd = client.eventsCmd();
+        doAnswer(invocation -> {
+                    result[0] = invocation.getArgument(0);
+                    return result[0];
+                })
+                .when(eventsCmd)
+                .exec(any());
+        return result;
+    }
+
+    private static DockerClient createMockedClient(String healthStatus, String... eventActions) {
+        final DockerClient client = mock(DockerClient.class, RETURNS_DEEP_STUBS);
+        final EventsCmd eventsCmd = mock(EventsCmd.class, RETURNS_SELF);
+        doAnswer(invocation -> {
+                    final ResultCallback<Event> callback = invocation.getArgument(0);
+                    for (final String action : eventActions) {
+                        final Event event = mock(Event.class);
+                        when(event.getAction()).thenReturn(action);
+                        callback.onNext(event);
+                    }
+                    return callback;
+                })
+                .when(eventsCmd)
+                .exec(any());
+        when(client.eventsCmd()).thenReturn(eventsCmd);
+        final InspectContainerResponse inspect = mock(InspectContainerResponse.class, RETURNS_DEEP_STUBS);
+        if (healthStatus == null) {
+            when(inspect.getState().getHealth()).thenReturn(null);
+        } else {
+            final HealthState health = mock(HealthState.class);
+            when(health.getStatus()).thenReturn(healthStatus);
+            when(inspect.getState().getHealth()).thenReturn(health);
+            when(inspect.getState().getRunning()).thenReturn(true);
+        }
+        when(client.inspectContainerCmd(CONTAINER_ID).exec()).thenReturn(inspect);
+        return client;
+    }
+}
@@ -0,0 +1,91 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import com.nirima.jenkins.plugins.docker.DockerContainerWatchdogStatistics.Metric;
+import com.nirima.jenkins.plugins.docker.DockerContainerWatchdogStatistics.Snapshot;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class DockerContainerWatchdogStatisticsTest {
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(1000L));
+
+    @Test
+    void recordGivenRemovalsThenCountsThemOverallAndByCloud() {
+        // Given
+        final DockerContainerWatchdogStatistics instance = new DockerContainerWatchdogStatistics(10, now::get);
+
+        // When
+        instance.recordContainerRemoved("cloud1", false, 100L);
+        instance.recordContainerRemoved("cloud1", false, 300L);
+        instance.recordContainerRemoved("cloud2", true, 50L);
+        instance.recordContainerRemovalFailed("cloud2");
+        instance.recordNodeRemoved(null);
+
+        // Then
+        final Snapshot recent = instance.getRecent();
+        assertThat(recent.getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(2L));
+        assertThat(recent.getAverageMillis(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(200L));
+        assertThat(recent.getMaxMillis(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(300L));
+        assertThat(recent.getCount(Metric.CONTAINERS_REMOVED_FORCE), equalTo(1L));
+        assertThat(recent.getCount(Metric.CONTAINER_REMOVALS_FAILED), equalTo(1L));
+        assertThat(recent.getCount(Metric.NODES_REMOVED), equalTo(1L));
+        assertThat(instance.getRecentByCloud().keySet(), contains("cloud1", "cloud2"));
+        assertThat(
+                instance.getRecentByCloud().get("cloud2").getCount(Metric.CONTAINERS_REMOVED_FORCE), equalTo(1L));
+        assertThat(
+                instance.getRecentByCloud().get("cloud2").getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY),
+                equalTo(0L));
+    }
+
+    @Test
+    void getRecentGivenOldEventsThenOnlyAllTimeIncludesThem() {
+        // Given
+        final DockerContainerWatchdogStatistics instance = new DockerContainerWatchdogStatistics(10, now::get);
+        instance.recordContainerRemoved("cloud1", false, 1000L);
+        now.addAndGet(TimeUnit.MINUTES.toMillis(5L));
+        instance.recordContainerRemoved("cloud1", false, 10L);
+
+        // When
+        now.addAndGet(TimeUnit.MINUTES.toMillis(7L));
+
+        // Then
+        assertThat(instance.getRecent().getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(1L));
+        assertThat(instance.getRecent().getMaxMillis(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(10L));
+        assertThat(instance.getAllTime().getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(2L));
+        now.addAndGet(TimeUnit.MINUTES.toMillis(10L));
+        assertThat(instance.getRecent().getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(0L));
+        assertThat(instance.getRecentByCloud().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void recordExecutionFinishedThenRemembersLastExecution() {
+        // Given
+        final DockerContainerWatchdogStatistics instance = new DockerContainerWatchdogStatistics(10, now::get);
+        assertThat(instance.getLastExecution(), nullValue());
+        instance.recordExecutionStarted();
+        instance.recordContainersRetrieved("cloud1", 20L, 3);
+        instance.recordContainerRemoved("cloud1", false, 100L);
+
+        // When
+        instance.recordExecutionFinished(250L, "Timed out", true);
+
+        // Then
+        final DockerContainerWatchdogStatistics.Execution actual = instance.getLastExecution();
+        assertThat(actual, notNullValue());
+        assertThat(actual.getOutcome(), equalTo("Timed out"));
+        assertThat(actual.getRuntimeMillis(), equalTo(250L));
+        assertThat(actual.getContainersFound(), equalTo(3L));
+        assertThat(actual.getCounts().getCount(Metric.CONTAINERS_REMOVED_GRACEFULLY), equalTo(1L));
+        assertThat(actual.getContainersRemoved(), equalTo(1L));
+        assertThat(actual.getNodesRemoved(), equalTo(0L));
+        assertThat(instance.getRecent().getCount(Metric.EXECUTIONS), equalTo(1L));
+        assertThat(instance.getRecent().getAverageMillis(Metric.EXECUTIONS), equalTo(250L));
+        assertThat(instance.getRecent().getCount(Metric.PROCESSING_TIMEOUTS), equalTo(1L));
+    }
+}
@@ -1,6 +1,7 @@
 package com.nirima.jenkins.plugins.docker;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.github.dockerjava.api.model.Container;
@@ -110,6 +111,50 @@ class DockerContainerWatchdogTest {
         assertEquals(containerId, containersRemoved.get(0));
     }
 
+    @Test
+    void testContainerExistsButAgentIsMissingWaitsForEphemeralNodeRecovery() throws IOException, InterruptedException {
+        TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
+        subject.setEphemeralNodeRecoveryComplete(false);
+
+        final String nodeName = "unittest-12345";
+        final String containerId = UUID.randomUUID().toString();
+
+        /* setup of cloud */
+        List<DockerCloud> listOfCloud = new LinkedList<>();
+
+        Map<String, String> labelMap = new HashMap<>();
+        labelMap.put(DockerContainerLabelKeys.NODE_NAME, nodeName);
+        labelMap.put(DockerContainerLabelKeys.TEMPLATE_NAME, "unittesttemplate");
+        labelMap.put(DockerContainerLabelKeys.REMOVE_VOLUMES, "false");
+        labelMap.put(DockerContainerLabelKeys.EPHEMERAL_NODE_REMOTE_FS, "/home/jenkins");
+
+        List<Container> containerList = new LinkedList<>();
+        Container c = TestableDockerContainerWatchdog.createMockedContainer(containerId, "Running", 0L, labelMap);
+        containerList.add(c);
+
+        DockerAPI dockerApi = TestableDockerContainerWatchdog.createMockedDockerAPI(containerList);
+        DockerCloud cloud = new DockerCloud("unittestcloud", dockerApi, new LinkedList<>());
+        listOfCloud.add(cloud);
+
+        subject.setAllClouds(listOfCloud);
+
+        /* setup of nodes */
+        LinkedList<Node> allNodes = new LinkedList<>();
+        subject.setAllNodes(allNodes);
+
+        subject.runExecute();
+        subject.checkContainer(cloud, containerId);
+
+        assertEquals(0, subject.getContainersRemoved().size());
+
+        subject.setEphemeralNodeRecoveryComplete(true);
+        subject.runExecute();
+
+        List<String> containersRemoved = subject.getContainersRemoved();
+        assertEquals(1, containersRemoved.size());
+        assertEquals(containerId, containersRemoved.get(0));
+    }
+
     @Test
     void testContainerExistsButAgentIsMissingWrongNodeNameIsIgnored() throws IOException, InterruptedException {
         TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
@@ -200,7 +245,7 @@ class DockerContainerWatchdogTest {
         subject.runExecute();
 
         List<String> containersRemoved = subject.getContainersRemoved();
-        assertEquals(4, containersRemoved.size());
+        assertEquals(2, containersRemoved.size());
 
         int countContainer1 = 0;
         int countContainer2 = 0;
@@ -214,20 +259,113 @@ class DockerContainerWatchdogTest {
             }
         }
 
-        assertEquals(2, countContainer1);
-        assertEquals(2, countContainer2);
-
-        /* NB: Why 2 here?
-         * keep in mind that the same containers are associated with the same DockerClient.
-         * Thus, the same containers also appear twice to our subject - and thus will send the termination
-         * requests twice.
-         *
-         * Note that this is an acceptable real-life behavior, which is uncommon, though.
+        /* NB: Both clouds use the same docker host (and credentials), so
+         * that docker host is only checked once and each container is only
+         * terminated once.
          */
+        assertEquals(1, countContainer1);
+        assertEquals(1, countContainer2);
 
         assertEquals(0, subject.getAllRemovedNodes().size());
     }
 
+    @Test
+    void testContainerExistsButAgentIsMissingTwoDockerHosts() throws IOException, InterruptedException {
+        TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
+
+        final String nodeName1 = "unittest-12345";
+        final String containerId1 = UUID.randomUUID().toString();
+
+        final String nodeName2 = "unittest-12346";
+        final String containerId2 = UUID.randomUUID().toString();
+
+        /* setup of clouds */
+        List<DockerCloud> listOfCloud = new LinkedList<>();
+
+        Map<String, String> labelMap = new HashMap<>();
+        labelMap.put(DockerContainerLabelKeys.NODE_NAME, nodeName1);
+        labelMap.put(DockerContainerLabelKeys.TEMPLATE_NAME, "unittestTemplate");
+        labelMap.put(DockerContainerLabelKeys.REMOVE_VOLUMES, "false");
+        Container c1 = TestableDockerContainerWatchdog.createMockedContainer(containerId1, "Running", 0L, labelMap);
+        DockerAPI dockerApi1 =
+                TestableDockerContainerWatchdog.createMockedDockerAPI("tcp://mocked-docker-host1:2375", List.of(c1));
+        listOfCloud.add(new DockerCloud("unittestcloud1", dockerApi1, new LinkedList<>()));
+
+        labelMap = new HashMap<>();
+        labelMap.put(DockerContainerLabelKeys.NODE_NAME, nodeName2);
+        labelMap.put(DockerContainerLabelKeys.TEMPLATE_NAME, "unittestTemplate");
+        labelMap.put(DockerContainerLabelKeys.REMOVE_VOLUMES, "false");
+        Container c2 = TestableDockerContainerWatchdog.createMockedContainer(containerId2, "Running", 0L, labelMap);
+        DockerAPI dockerApi2 =
+                TestableDockerContainerWatchdog.createMockedDockerAPI("tcp://mocked-docker-host2:2375", List.of(c2));
+        listOfCloud.add(new DockerCloud("unittestcloud2", dockerApi2, new LinkedList<>()));
+
+        subject.setAllClouds(listOfCloud);
+
+        /* setup of nodes */
+        LinkedList<Node> allNodes = new LinkedList<>();
+        DockerTransientNode node = TestableDockerContainerWatchdog.createMockedDockerTransientNode(
+                UUID.randomUUID().toString(), "unittest-gone", listOfCloud.get(0), true);
+        allNodes.add(node);
+        subject.setAllNodes(allNodes);
+
+        subject.runExecute();
+
+        List<String> containersRemoved = subject.getContainersRemoved();
+        assertEquals(2, containersRemoved.size());
+        assertTrue(containersRemoved.contains(containerId1));
+        assertTrue(containersRemoved.contains(containerId2));
+
+        // both docker hosts were checked, so we know the node's container is gone
+        assertEquals(List.of(node), subject.getAllRemovedNodes());
+    }
+
+    @Test
+    void testCheckContainerRemovesContainerWithoutAgent() {
+        TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
+
+        final String nodeName = "unittest-12345";
+        final String containerId = UUID.randomUUID().toString();
+
+        Map<String, String> labelMap = new HashMap<>();
+        labelMap.put(DockerContainerLabelKeys.NODE_NAME, nodeName);
+        labelMap.put(DockerContainerLabelKeys.TEMPLATE_NAME, "unittesttemplate");
+        labelMap.put(DockerContainerLabelKeys.REMOVE_VOLUMES, "false");
+        Container c = TestableDockerContainerWatchdog.createMockedContainer(containerId, "Exited", 0L, labelMap);
+
+        DockerAPI dockerApi = TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(c));
+        DockerCloud cloud = new DockerCloud("unittestcloud", dockerApi, new LinkedList<>());
+        subject.setAllClouds(List.of(cloud));
+        subject.setAllNodes(new LinkedList<>());
+
+        subject.checkContainer(cloud, containerId);
+
+        Mockito.verify(dockerApi.getClient().listContainersCmd()).withIdFilter(List.of(containerId));
+        assertEquals(List.of(containerId), subject.getContainersRemoved());
+    }
+
+    @Test
+    void testCheckNodesOfRemovedContainerRemovesOfflineAgent() {
+        TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
+
+        final String containerId = UUID.randomUUID().toString();
+
+        DockerAPI dockerApi = TestableDockerContainerWatchdog.createMockedDockerAPI(List.of());
+        DockerCloud cloud = new DockerCloud("unittestcloud", dockerApi, new LinkedList<>());
+        subject.setAllClouds(List.of(cloud));
+
+        DockerTransientNode offlineNode = TestableDockerContainerWatchdog.createMockedDockerTransientNode(
+                containerId, "unittest-12345", cloud, true);
+        DockerTransientNode otherNode = TestableDockerContainerWatchdog.createMockedDockerTransientNode(
+                UUID.randomUUID().toString(), "unittest-12346", cloud, true);
+        subject.setAllNodes(List.of(offlineNode, otherNode));
+
+        subject.checkNodesOfRemovedContainer(containerId);
+
+        assertEquals(List.of(offlineNode), subject.getAllRemovedNodes());
+        assertEquals(0, subject.getContainersRemoved().size());
+    }
+
     @Test
     void testContainerExistsButAgentIsMissingWithTemplate() throws IOException, InterruptedException {
         TestableDockerContainerWatchdog subject = new TestableDockerContainerWatchdog();
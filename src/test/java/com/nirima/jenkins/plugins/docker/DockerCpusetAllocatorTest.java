@@ -0,0 +1,139 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import com.nirima.jenkins.plugins.docker.utils.JenkinsUtils;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DockerCpusetAllocatorTest {
+    private static final String JENKINS_ID = "cpusetTestJenkinsId";
+
+    @BeforeEach
+    void setUp() {
+        JenkinsUtils.setTestInstanceId(JENKINS_ID);
+    }
+
+    @Test
+    void calcCoresRequiredGivenCpusThenRoundsUp() {
+        assertThat(DockerCpusetAllocator.calcCoresRequired(null), equalTo(0));
+        assertThat(DockerCpusetAllocator.calcCoresRequired(""), equalTo(0));
+        assertThat(DockerCpusetAllocator.calcCoresRequired("0"), equalTo(0));
+        assertThat(DockerCpusetAllocator.calcCoresRequired("0.5"), equalTo(1));
+        assertThat(DockerCpusetAllocator.calcCoresRequired("2"), equalTo(2));
+        assertThat(DockerCpusetAllocator.calcCoresRequired("2.1"), equalTo(3));
+        assertThat(DockerCpusetAllocator.calcCoresRequired("lots"), equalTo(0));
+    }
+
+    @Test
+    void chooseFirstCoreGivenUsageThenPrefersUnusedAlignedCores() {
+        assertThat(DockerCpusetAllocator.chooseFirstCore(new int[] {0, 0, 0, 0, 0, 0, 0, 0}, 4), equalTo(0));
+        assertThat(DockerCpusetAllocator.chooseFirstCore(new int[] {1, 1, 0, 0, 0, 0, 0, 0}, 2), equalTo(2));
+        assertThat(DockerCpusetAllocator.chooseFirstCore(new int[] {1, 0, 0, 0, 0, 0, 0, 0}, 4), equalTo(4));
+        assertThat(DockerCpusetAllocator.chooseFirstCore(new int[] {2, 2, 1, 1, 3, 3, 1, 2}, 2), equalTo(2));
+    }
+
+    @Test
+    void allocateGivenFreeCoresThenHandsOutDedicatedRangesUntilReleased() {
+        // Given
+        final DockerClient client = createMockedClient(8, List.of());
+        final DockerCpusetAllocator instance = new DockerCpusetAllocator("tcp://allocate:2375");
+
+        // When
+        final String actual1 = instance.allocate(client, "node1", 4);
+        final String actual2 = instance.allocate(client, "node2", 2);
+        final String actual3 = instance.allocate(client, "node3", 1);
+        instance.release("node1");
+        final String actual4 = instance.allocate(client, "node4", 4);
+        final String tooBig = instance.allocate(client, "node5", 8);
+        final String unlimited = instance.allocate(client, "node6", 0);
+
+        // Then
+        assertThat(actual1, equalTo("0-3"));
+        assertThat(actual2, equalTo("4-5"));
+        assertThat(actual3, equalTo("6"));
+        assertThat(actual4, equalTo("0-3"));
+        assertThat(tooBig, nullValue());
+        assertThat(unlimited, nullValue());
+    }
+
+    @Test
+    void allocateGivenExistingPinnedContainersThenAvoidsTheirCores() {
+        // Given
+        final Container ours = createMockedContainer(JENKINS_ID, "existing1", "0-3");
+        final Container notOurs = createMockedContainer("someOtherJenkins", "existing2", "4-5");
+        final DockerClient client = createMockedClient(8, List.of(ours, notOurs));
+        final DockerCpusetAllocator instance = new DockerCpusetAllocator("tcp://recover:2375");
+
+        // When
+        final String actual = instance.allocate(client, "node1", 4);
+
+        // Then
+        assertThat(actual, equalTo("4-7"));
+    }
+
+    @Test
+    void allocateGivenSlowDockerHostThenDoesNotHoldUpOtherAllocations() throws Exception {
+        // Given
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch hung = new CountDownLatch(1);
+        final DockerClient slowClient = createMockedClient(8, List.of());
+        when(slowClient.listContainersCmd().exec()).thenAnswer(invocation -> {
+            listing.countDown();
+            hung.await();
+            return List.of();
+        });
+        final DockerClient client = createMockedClient(8, List.of());
+        final DockerCpusetAllocator instance = new DockerCpusetAllocator("tcp://slow:2375");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> slow = executor.submit(() -> instance.allocate(slowClient, "slowNode", 4));
+            assertThat(listing.await(10, TimeUnit.SECONDS), equalTo(true));
+
+            // When
+            final String actual =
+                    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> instance.allocate(client, "node1", 4));
+            hung.countDown();
+
+            // Then
+            assertThat(actual, equalTo("0-3"));
+            assertThat(slow.get(10, TimeUnit.SECONDS), equalTo("4-7"));
+        } finally {
+            hung.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static DockerClient createMockedClient(int ncpu, List<Container> containers) {
+        final DockerClient client = mock(DockerClient.class, RETURNS_DEEP_STUBS);
+        when(client.infoCmd().exec().getNCPU()).thenReturn(ncpu);
+        when(client.listContainersCmd().exec()).thenReturn(containers);
+        return client;
+    }
+
+    private static Container createMockedContainer(String jenkinsId, String nodeName, String cpuset) {
+        final Container container = mock(Container.class);
+        when(container.getLabels())
+                .thenReturn(Map.of(
+                        DockerContainerLabelKeys.JENKINS_INSTANCE_ID, jenkinsId,
+                        DockerContainerLabelKeys.NODE_NAME, nodeName,
+                        DockerContainerLabelKeys.CPUSET, cpuset));
+        return container;
+    }
+}
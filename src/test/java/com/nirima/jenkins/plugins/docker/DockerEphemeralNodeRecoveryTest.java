@@ -0,0 +1,199 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.model.Container;
+import hudson.model.Descriptor;
+import io.jenkins.docker.DockerTransientNode;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.junit.jupiter.api.Test;
+
+class DockerEphemeralNodeRecoveryTest {
+    private static final String TEMPLATE_NAME = "unittesttemplate";
+    private static final String REMOTE_FS = "/home/jenkins/agent";
+
+    @Test
+    void recoverGivenRunningContainerWithEphemeralLabelsThenRecreatesItsNode() {
+        // Given
+        final TestableDockerEphemeralNodeRecovery subject = new TestableDockerEphemeralNodeRecovery();
+        final Container container = createContainer("container1", ephemeralLabels("unittest-1"));
+        final DockerTemplate template = createTemplate(TEMPLATE_NAME);
+        final DockerAPI api = TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(container));
+        final DockerCloud cloud = new DockerCloud("unittestcloud", api, List.of(template));
+
+        // When
+        final int actual = subject.recover(List.of(cloud));
+
+        // Then
+        assertThat(actual, equalTo(1));
+        assertThat(subject.recreated, contains("unittest-1 container1 " + REMOTE_FS + " " + TEMPLATE_NAME));
+        assertThat(subject.added, contains(subject.nodes.get("unittest-1")));
+        verify(subject.nodes.get("unittest-1")).setCloudId("unittestcloud");
+    }
+
+    @Test
+    void recoverGivenNodeAlreadyExistsThenSkipsIt() {
+        // Given
+        final TestableDockerEphemeralNodeRecovery subject = new TestableDockerEphemeralNodeRecovery();
+        subject.existingNodeNames.add("unittest-1");
+        final Container existing = createContainer("container1", ephemeralLabels("unittest-1"));
+        final Container missing = createContainer("container2", ephemeralLabels("unittest-2"));
+        final DockerAPI api = TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(existing, missing));
+        final DockerCloud cloud = new DockerCloud("unittestcloud", api, List.of(createTemplate(TEMPLATE_NAME)));
+
+        // When
+        final int actual = subject.recover(List.of(cloud));
+
+        // Then
+        assertThat(actual, equalTo(1));
+        assertThat(subject.recreated, contains("unittest-2 container2 " + REMOTE_FS + " " + TEMPLATE_NAME));
+    }
+
+    @Test
+    void recoverGivenContainersWeCannotRecreateThenIgnoresThem() {
+        // Given
+        final TestableDockerEphemeralNodeRecovery subject = new TestableDockerEphemeralNodeRecovery();
+        final Map<String, String> notEphemeral = ephemeralLabels("unittest-1");
+        notEphemeral.remove(DockerContainerLabelKeys.EPHEMERAL_NODE_REMOTE_FS);
+        final Map<String, String> unknownTemplate = ephemeralLabels("unittest-2");
+        unknownTemplate.put(DockerContainerLabelKeys.TEMPLATE_NAME, "someothertemplate");
+        final List<Container> containers = List.of(
+                createContainer("container1", notEphemeral),
+                createContainer("container2", unknownTemplate),
+                createContainer("container3", null));
+        final DockerAPI api = TestableDockerContainerWatchdog.createMockedDockerAPI(containers);
+        final DockerCloud cloud = new DockerCloud("unittestcloud", api, List.of(createTemplate(TEMPLATE_NAME)));
+
+        // When
+        final int actual = subject.recover(List.of(cloud));
+
+        // Then
+        assertThat(actual, equalTo(0));
+        assertThat(subject.recreated, empty());
+        assertThat(subject.added, empty());
+    }
+
+    @Test
+    void recoverGivenTwoCloudsOnSameHostThenRecreatesNodeOnce() {
+        // Given
+        final TestableDockerEphemeralNodeRecovery subject = new TestableDockerEphemeralNodeRecovery();
+        final Container container = createContainer("container1", ephemeralLabels("unittest-1"));
+        final DockerCloud cloud1 = new DockerCloud(
+                "unittestcloud1",
+                TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(container)),
+                List.of(createTemplate(TEMPLATE_NAME)));
+        final DockerCloud cloud2 = new DockerCloud(
+                "unittestcloud2",
+                TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(container)),
+                List.of(createTemplate(TEMPLATE_NAME)));
+
+        // When
+        final int actual = subject.recover(List.of(cloud1, cloud2));
+
+        // Then
+        assertThat(actual, equalTo(1));
+        assertThat(subject.added.size(), equalTo(1));
+    }
+
+    @Test
+    void recoverGivenUnreachableHostThenStillRecreatesNodesOnOtherHosts() {
+        // Given
+        final TestableDockerEphemeralNodeRecovery subject = new TestableDockerEphemeralNodeRecovery();
+        final DockerAPI unreachableApi = mock(DockerAPI.class);
+        when(unreachableApi.getClient()).thenThrow(new RuntimeException("connection refused"));
+        final DockerCloud unreachableCloud =
+                new DockerCloud("unittestcloud1", unreachableApi, List.of(createTemplate(TEMPLATE_NAME)));
+        final Container container = createContainer("container1", ephemeralLabels("unittest-1"));
+        final DockerCloud cloud = new DockerCloud(
+                "unittestcloud2",
+                TestableDockerContainerWatchdog.createMockedDockerAPI(List.of(container)),
+                List.of(createTemplate(TEMPLATE_NAME)));
+
+        // When
+        final int actual = subject.recover(List.of(unreachableCloud, cloud));
+
+        // Then
+        assertThat(actual, equalTo(1));
+        assertThat(subject.recreated, contains("unittest-1 container1 " + REMOTE_FS + " " + TEMPLATE_NAME));
+        // both hosts were asked separately, rather than one after the other.
+        assertThat(subject.listingsRequested, equalTo(2));
+    }
+
+    private static Map<String, String> ephemeralLabels(String nodeName) {
+        final Map<String, String> labels = new HashMap<>();
+        labels.put(DockerContainerLabelKeys.NODE_NAME, nodeName);
+        labels.put(DockerContainerLabelKeys.TEMPLATE_NAME, TEMPLATE_NAME);
+        labels.put(DockerContainerLabelKeys.EPHEMERAL_NODE_REMOTE_FS, REMOTE_FS);
+        return labels;
+    }
+
+    private static Container createContainer(String containerId, Map<String, String> labels) {
+        return TestableDockerContainerWatchdog.createMockedContainer(containerId, "Up 5 minutes", 0L, labels);
+    }
+
+    private static DockerTemplate createTemplate(String name) {
+        final DockerTemplate result = mock(DockerTemplate.class);
+        when(result.getName()).thenReturn(name);
+        return result;
+    }
+
+    private static class TestableDockerEphemeralNodeRecovery extends DockerEphemeralNodeRecovery {
+        final Set<String> existingNodeNames = new HashSet<>();
+        final List<String> recreated = new ArrayList<>();
+        final Map<String, DockerTransientNode> nodes = new HashMap<>();
+        final List<DockerTransientNode> added = new ArrayList<>();
+        int listingsRequested;
+
+        @Override
+        protected Executor getExecutor() {
+            return command -> {
+                listingsRequested++;
+                command.run();
+            };
+        }
+
+        @Override
+        protected String getJenkinsInstanceId() {
+            return TestableDockerContainerWatchdog.UNITTEST_JENKINS_ID;
+        }
+
+        @Override
+        protected boolean nodeExists(String nodeName) {
+            return existingNodeNames.contains(nodeName);
+        }
+
+        @Override
+        protected DockerTransientNode recreateNode(
+                DockerTemplate template, DockerAPI api, String nodeName, String containerId, String remoteFs)
+                throws IOException, InterruptedException, Descriptor.FormException {
+            recreated.add(nodeName + " " + containerId + " " + remoteFs + " " + template.getName());
+            final DockerTransientNode result = mock(DockerTransientNode.class);
+            nodes.put(nodeName, result);
+            return result;
+        }
+
+        @Override
+        protected void addNode(DockerTransientNode node) throws IOException {
+            added.add(node);
+            nodes.forEach((nodeName, recreatedNode) -> {
+                if (recreatedNode == node) {
+                    existingNodeNames.add(nodeName);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import com.github.dockerjava.api.model.Image;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class DockerImageGarbageCollectorTest {
+
+    @Test
+    void selectImagesToRemoveGivenWithinBudgetThenReturnsNothing() {
+        // Given
+        final Image i1 = createMockedImage("sha256:within1", 100L, 1L);
+        final Image i2 = createMockedImage("sha256:within2", 100L, 2L);
+
+        // When
+        final List<Image> actual = DockerImageGarbageCollector.selectImagesToRemove(List.of(i1, i2), Set.of(), 200L);
+
+        // Then
+        assertThat(actual, empty());
+    }
+
+    @Test
+    void selectImagesToRemoveGivenOverBudgetThenRemovesOldestUntilWithinBudget() {
+        // Given
+        final Image newest = createMockedImage("sha256:lru1", 100L, 3L);
+        final Image oldest = createMockedImage("sha256:lru2", 100L, 1L);
+        final Image middle = createMockedImage("sha256:lru3", 100L, 2L);
+
+        // When
+        final List<Image> actual =
+                DockerImageGarbageCollector.selectImagesToRemove(List.of(newest, oldest, middle), Set.of(), 150L);
+
+        // Then
+        assertThat(actual, contains(oldest, middle));
+    }
+
+    @Test
+    void selectImagesToRemoveGivenRecentlyUsedImageThenRemovesThatLast() {
+        // Given
+        final Image used = createMockedImage("sha256:used1", 100L, 1L);
+        final Image unused = createMockedImage("sha256:used2", 100L, 2L);
+        DockerImageGarbageCollector.recordImageUsage(used.getId());
+
+        // When
+        final List<Image> actual =
+                DockerImageGarbageCollector.selectImagesToRemove(List.of(used, unused), Set.of(), 100L);
+
+        // Then
+        assertThat(actual, contains(unused));
+    }
+
+    @Test
+    void selectImagesToRemoveGivenProtectedImagesThenNeverRemovesThem() {
+        // Given
+        final Image inUse = createMockedImage("sha256:prot1", 100L, 1L);
+        final Image referenced = createMockedImage("sha256:prot2", 100L, 2L);
+        final Image unused = createMockedImage("sha256:prot3", 100L, 3L);
+        final Set<String> protectedIds = Set.of(inUse.getId(), referenced.getId());
+
+        // When
+        final List<Image> actual =
+                DockerImageGarbageCollector.selectImagesToRemove(List.of(inUse, referenced, unused), protectedIds, 0L);
+
+        // Then
+        assertThat(actual, contains(unused));
+    }
+
+    private static Image createMockedImage(String id, long size, long created) {
+        final Image result = Mockito.mock(Image.class);
+        Mockito.when(result.getId()).thenReturn(id);
+        Mockito.when(result.getSize()).thenReturn(size);
+        Mockito.when(result.getCreated()).thenReturn(created);
+        return result;
+    }
+}
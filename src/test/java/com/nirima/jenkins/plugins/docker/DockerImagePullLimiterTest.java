@@ -0,0 +1,79 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DockerImagePullLimiterTest {
+    private static final String HOST1 = "tcp://host1:2375";
+    private static final String HOST2 = "tcp://host2:2375";
+
+    @Test
+    void getRegistryHostnameGivenImagesThenReturnsRegistry() {
+        assertThat(
+                DockerImagePullLimiter.getRegistryHostname("registry.local:5000/foo/bar:1.0"),
+                equalTo("registry.local:5000"));
+        assertThat(DockerImagePullLimiter.getRegistryHostname("registry.local/foo:latest"), equalTo("registry.local"));
+        assertThat(
+                DockerImagePullLimiter.getRegistryHostname("jenkins/agent:latest"),
+                equalTo(DockerImagePullLimiter.getRegistryHostname("ubuntu:latest")));
+    }
+
+    @Test
+    void acquireGivenRegistryLimitReachedThenWaitsUntilReleased() throws Exception {
+        // Given
+        final DockerImagePullLimiter instance = new DockerImagePullLimiter(1, 0);
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final PrintStream logger = new PrintStream(log, true, StandardCharsets.UTF_8);
+        final DockerImagePullLimiter.Permit first = instance.acquire(HOST1, "registry.local/foo:1", logger);
+        final CountDownLatch secondAcquired = new CountDownLatch(1);
+        final Thread t = new Thread(() -> {
+            try (DockerImagePullLimiter.Permit second = instance.acquire(HOST2, "registry.local/bar:1", logger)) {
+                secondAcquired.countDown();
+            } catch (InterruptedException ignored) {
+                // should not happen
+            }
+        });
+
+        // When
+        t.start();
+        final boolean acquiredWhileFirstHeld = secondAcquired.await(200, TimeUnit.MILLISECONDS);
+        first.close();
+        final boolean acquiredAfterRelease = secondAcquired.await(10, TimeUnit.SECONDS);
+        t.join();
+
+        // Then
+        assertFalse(acquiredWhileFirstHeld);
+        assertTrue(acquiredAfterRelease);
+        assertThat(instance.getPullCount(), equalTo(2L));
+        assertThat(instance.getQueuedPullCount(), equalTo(1L));
+        assertTrue(instance.getMaxQueueWaitMillis() >= instance.getAverageQueueWaitMillis());
+        assertTrue(instance.getAverageQueueWaitMillis() > 0L);
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("Waiting to pull image registry.local/bar:1"));
+    }
+
+    @Test
+    void acquireGivenDifferentRegistriesThenDoesNotWait() throws Exception {
+        // Given
+        final DockerImagePullLimiter instance = new DockerImagePullLimiter(1, 0);
+        final PrintStream logger = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+
+        // When
+        try (DockerImagePullLimiter.Permit p1 = instance.acquire(HOST1, "registry1.local/foo:1", logger);
+                DockerImagePullLimiter.Permit p2 = instance.acquire(HOST1, "registry2.local/foo:1", logger)) {
+            // Then
+            assertThat(instance.getPullCount(), equalTo(2L));
+        }
+        assertThat(instance.getQueuedPullCount(), equalTo(0L));
+        assertThat(instance.getAverageQueueWaitMillis(), equalTo(0L));
+        assertThat(instance.getMaxQueueWaitMillis(), equalTo(0L));
+    }
+}
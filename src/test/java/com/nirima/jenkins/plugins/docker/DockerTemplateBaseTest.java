@@ -626,4 +626,26 @@ class DockerTemplateBaseTest {
 
         verify(mockHostConfig).withVolumesFrom(expectedVolumesFromSet);
     }
+
+    @Test
+    void fillContainerConfigGivenConfigChangedThenUsesNewConfig() {
+        // Given
+        final DockerTemplateBase instanceUnderTest = new DockerTemplateBase("reconfigured");
+        instanceUnderTest.setMountsString("dst=/first");
+        final CreateContainerCmd mockCmd1 = mock(CreateContainerCmd.class);
+        final HostConfig mockHostConfig1 = mock(HostConfig.class);
+        when(mockCmd1.getHostConfig()).thenReturn(mockHostConfig1);
+        instanceUnderTest.fillContainerConfig(mockCmd1);
+        final CreateContainerCmd mockCmd2 = mock(CreateContainerCmd.class);
+        final HostConfig mockHostConfig2 = mock(HostConfig.class);
+        when(mockCmd2.getHostConfig()).thenReturn(mockHostConfig2);
+
+        // When
+        instanceUnderTest.setMountsString("dst=/second");
+        instanceUnderTest.fillContainerConfig(mockCmd2);
+
+        // Then
+        verify(mockHostConfig1).withMounts(List.of(new Mount().withType(MountType.VOLUME).withTarget("/first")));
+        verify(mockHostConfig2).withMounts(List.of(new Mount().withType(MountType.VOLUME).withTarget("/second")));
+    }
 }
@@ -2,8 +2,21 @@ package com.nirima.jenkins.plugins.docker;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-
+import static org.mockito.Mockito.mock;
+
+import com.github.dockerjava.api.exception.DockerClientException;
+import com.github.dockerjava.api.exception.InternalServerErrorException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.exception.UnauthorizedException;
+import hudson.util.FormValidation;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 class DockerTemplateTest {
@@ -131,4 +144,91 @@ class DockerTemplateTest {
         assertTrue(
                 instance.getDockerTemplateBase().getCapabilitiesToDrop().contains("NET_ADMIN"), "Error, wrong capDrop");
     }
+
+    @Test
+    void testIsTransientPullError() {
+        assertTrue(DockerTemplate.isTransientPullError(new InternalServerErrorException("boom")));
+        assertTrue(DockerTemplate.isTransientPullError(new SocketException("Connection reset")));
+        assertTrue(DockerTemplate.isTransientPullError(new IOException(new SocketTimeoutException("Read timed out"))));
+        assertTrue(DockerTemplate.isTransientPullError(new DockerClientException(
+                "Could not pull image: received unexpected HTTP status: 503 Service Unavailable")));
+        assertTrue(DockerTemplate.isTransientPullError(
+                new DockerClientException("Could not pull image: net/http: TLS handshake timeout")));
+
+        assertFalse(DockerTemplate.isTransientPullError(new NotFoundException("No such image")));
+        assertFalse(DockerTemplate.isTransientPullError(new UnauthorizedException("authentication required")));
+        assertFalse(DockerTemplate.isTransientPullError(
+                new DockerClientException("Could not pull image: manifest unknown: manifest unknown")));
+        assertFalse(DockerTemplate.isTransientPullError(new DockerClientException(
+                "Could not pull image: pull access denied for foo, repository does not exist")));
+        assertFalse(DockerTemplate.isTransientPullError(new IllegalArgumentException("Invalid Credential ID")));
+    }
+
+    @Test
+    void testTmpfsWorkspacePaths() {
+        final DockerTemplate instance = getDockerTemplateInstanceWithDNSHost("");
+        assertEquals(List.of(), instance.getTmpfsWorkspacePaths("/home/jenkins"));
+
+        instance.setTmpfsWorkspaceSize(512);
+        assertEquals(List.of("/home/jenkins/workspace"), instance.getTmpfsWorkspacePaths("/home/jenkins/"));
+
+        instance.setTmpfsWorkspacePathsString(".\nbuild/\n/tmp\n\nbuild");
+        assertEquals(
+                List.of("/home/jenkins", "/home/jenkins/build", "/tmp"),
+                instance.getTmpfsWorkspacePaths("/home/jenkins"));
+    }
+
+    @Test
+    void testCheckTmpfsWorkspacePaths() {
+        final String remoteFs = "/home/jenkins/agent";
+        assertEquals(
+                FormValidation.Kind.OK,
+                DockerTemplate.checkTmpfsWorkspacePaths(List.of("/home/jenkins/agent/workspace", "/tmp"), remoteFs)
+                        .kind);
+        assertEquals(
+                FormValidation.Kind.OK,
+                DockerTemplate.checkTmpfsWorkspacePaths(List.of("/home/jenkins/agent2"), remoteFs).kind);
+        assertEquals(
+                FormValidation.Kind.ERROR,
+                DockerTemplate.checkTmpfsWorkspacePaths(List.of("/home/jenkins/agent/"), remoteFs).kind);
+        assertEquals(
+                FormValidation.Kind.ERROR,
+                DockerTemplate.checkTmpfsWorkspacePaths(List.of("/home/jenkins"), remoteFs).kind);
+        assertEquals(FormValidation.Kind.ERROR, DockerTemplate.checkTmpfsWorkspacePaths(List.of("/"), remoteFs).kind);
+    }
+
+    @Test
+    void testCheckTmpfsWorkspaceMode() {
+        assertEquals(FormValidation.Kind.OK, DockerTemplate.checkTmpfsWorkspaceMode(null).kind);
+        assertEquals(FormValidation.Kind.OK, DockerTemplate.checkTmpfsWorkspaceMode("1777").kind);
+        assertEquals(FormValidation.Kind.ERROR, DockerTemplate.checkTmpfsWorkspaceMode("rwx").kind);
+    }
+
+    @Test
+    void testCheckTmpfsWorkspaceSize() {
+        assertEquals(FormValidation.Kind.OK, DockerTemplate.checkTmpfsWorkspaceSize(512, 1, null).kind);
+        assertEquals(FormValidation.Kind.OK, DockerTemplate.checkTmpfsWorkspaceSize(512, 1, 2048).kind);
+        assertEquals(FormValidation.Kind.WARNING, DockerTemplate.checkTmpfsWorkspaceSize(512, 3, 2048).kind);
+        assertEquals(FormValidation.Kind.ERROR, DockerTemplate.checkTmpfsWorkspaceSize(1024, 2, 2048).kind);
+    }
+
+    @Test
+    void testDisableTemplateOfFailedContainer() {
+        final DockerTemplate failed = getDockerTemplateInstanceWithDNSHost("");
+        failed.setName("failed");
+        final DockerTemplate other = getDockerTemplateInstanceWithDNSHost("");
+        other.setName("other");
+        final DockerCloud cloud = new DockerCloud("cloud", mock(DockerAPI.class), List.of(other, failed));
+
+        DockerTemplate.disableTemplateOfFailedContainer(cloud, null, new IOException("no labels"));
+        DockerTemplate.disableTemplateOfFailedContainer(
+                cloud, Map.of(DockerContainerLabelKeys.TEMPLATE_NAME, "unknown"), new IOException("unknown"));
+        assertFalse(failed.getDisabled().isDisabled());
+        assertFalse(other.getDisabled().isDisabled());
+
+        DockerTemplate.disableTemplateOfFailedContainer(
+                cloud, Map.of(DockerContainerLabelKeys.TEMPLATE_NAME, "failed"), new IOException("exited"));
+        assertTrue(failed.getDisabled().isDisabled());
+        assertFalse(other.getDisabled().isDisabled());
+    }
 }
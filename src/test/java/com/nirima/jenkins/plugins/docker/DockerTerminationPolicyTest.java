@@ -0,0 +1,28 @@
+package com.nirima.jenkins.plugins.docker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class DockerTerminationPolicyTest {
+
+    static Object[][] data() {
+        return new Object[][] {
+            {DockerTerminationPolicy.AUTOMATIC, false, DockerTerminationPolicy.GRACEFUL},
+            {DockerTerminationPolicy.AUTOMATIC, true, DockerTerminationPolicy.FORCE_REMOVE},
+            {DockerTerminationPolicy.GRACEFUL, false, DockerTerminationPolicy.GRACEFUL},
+            {DockerTerminationPolicy.GRACEFUL, true, DockerTerminationPolicy.GRACEFUL},
+            {DockerTerminationPolicy.KILL_THEN_REMOVE, false, DockerTerminationPolicy.KILL_THEN_REMOVE},
+            {DockerTerminationPolicy.KILL_THEN_REMOVE, true, DockerTerminationPolicy.KILL_THEN_REMOVE},
+            {DockerTerminationPolicy.FORCE_REMOVE, false, DockerTerminationPolicy.FORCE_REMOVE},
+            {DockerTerminationPolicy.FORCE_REMOVE, true, DockerTerminationPolicy.FORCE_REMOVE},
+        };
+    }
+
+    @ParameterizedTest(name = "policy: ''{0}'', work completed: ''{1}''")
+    @MethodSource("data")
+    void resolveTest(DockerTerminationPolicy policy, boolean workCompleted, DockerTerminationPolicy expected) {
+        assertEquals(expected, policy.resolve(workCompleted));
+    }
+}
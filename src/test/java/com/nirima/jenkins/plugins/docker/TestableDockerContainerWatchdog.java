@@ -12,6 +12,7 @@ import io.jenkins.docker.DockerTransientNode;
 import io.jenkins.docker.client.DockerAPI;
 import java.io.IOException;
 import java.time.Clock;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -22,11 +23,13 @@ import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 
 public class TestableDockerContainerWatchdog extends DockerContainerWatchdog {
-    private static final String UNITTEST_JENKINS_ID = "f1b65f06-be3e-4dac-a760-b17e7592570f";
+    static final String UNITTEST_JENKINS_ID = "f1b65f06-be3e-4dac-a760-b17e7592570f";
     private List<Node> allNodes;
     private List<DockerCloud> allClouds;
-    private final List<DockerTransientNode> nodesRemoved = new LinkedList<>();
-    private final List<String> containersRemoved = new LinkedList<>();
+    // docker hosts are checked in parallel, so these can be updated by several threads at once.
+    private final List<DockerTransientNode> nodesRemoved = Collections.synchronizedList(new LinkedList<>());
+    private final List<String> containersRemoved = Collections.synchronizedList(new LinkedList<>());
+    private boolean ephemeralNodeRecoveryComplete = true;
 
     public static void setClockOn(DockerContainerWatchdog i, Clock clock) {
         i.setClock(clock);
@@ -42,6 +45,11 @@ public class TestableDockerContainerWatchdog extends DockerContainerWatchdog {
         return allNodes;
     }
 
+    @Override
+    protected boolean isEphemeralNodeRecoveryComplete() {
+        return ephemeralNodeRecoveryComplete;
+    }
+
     @Override
     protected void removeNode(DockerTransientNode dtn) throws IOException {
         nodesRemoved.add(dtn);
@@ -72,12 +80,20 @@ public class TestableDockerContainerWatchdog extends DockerContainerWatchdog {
         this.allClouds = allClouds;
     }
 
+    public void setEphemeralNodeRecoveryComplete(boolean ephemeralNodeRecoveryComplete) {
+        this.ephemeralNodeRecoveryComplete = ephemeralNodeRecoveryComplete;
+    }
+
     public List<DockerTransientNode> getAllRemovedNodes() {
-        return List.copyOf(nodesRemoved);
+        synchronized (nodesRemoved) {
+            return List.copyOf(nodesRemoved);
+        }
     }
 
     public List<String> getContainersRemoved() {
-        return List.copyOf(containersRemoved);
+        synchronized (containersRemoved) {
+            return List.copyOf(containersRemoved);
+        }
     }
 
     public void runExecute() throws IOException, InterruptedException {
@@ -87,11 +103,15 @@ public class TestableDockerContainerWatchdog extends DockerContainerWatchdog {
     }
 
     public static DockerAPI createMockedDockerAPI(List<Container> containerList) {
+        return createMockedDockerAPI("tcp://mocked-docker-host:2375", containerList);
+    }
+
+    public static DockerAPI createMockedDockerAPI(String dockerHostUri, List<Container> containerList) {
         DockerAPI result = Mockito.mock(DockerAPI.class);
         DockerClient client = Mockito.mock(DockerClient.class);
         Mockito.when(result.getClient()).thenReturn(client);
         DockerServerEndpoint dockerServerEndpoint = Mockito.mock(DockerServerEndpoint.class);
-        Mockito.when(dockerServerEndpoint.getUri()).thenReturn("tcp://mocked-docker-host:2375");
+        Mockito.when(dockerServerEndpoint.getUri()).thenReturn(dockerHostUri);
         Mockito.when(result.getDockerHost()).thenReturn(dockerServerEndpoint);
         ListContainersCmd listContainerCmd = Mockito.mock(ListContainersCmd.class);
         Mockito.when(client.listContainersCmd()).thenReturn(listContainerCmd);
@@ -103,6 +123,8 @@ public class TestableDockerContainerWatchdog extends DockerContainerWatchdog {
                     assertEquals(UNITTEST_JENKINS_ID, jenkinsInstanceIdInFilter);
                     return listContainerCmd;
                 });
+        Mockito.when(listContainerCmd.withIdFilter(ArgumentMatchers.anyCollection()))
+                .thenReturn(listContainerCmd);
         Mockito.when(listContainerCmd.exec()).thenReturn(containerList);
         return result;
     }
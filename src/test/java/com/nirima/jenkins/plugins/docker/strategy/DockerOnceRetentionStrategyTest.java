@@ -15,6 +15,7 @@ import hudson.model.OneOffExecutor;
 import hudson.model.Queue.FlyweightTask;
 import hudson.model.Queue.Task;
 import io.jenkins.docker.DockerComputer;
+import io.jenkins.docker.DockerTransientNode;
 import org.jenkinsci.plugins.durabletask.executors.ContinuableExecutable;
 import org.junit.jupiter.api.Test;
 
@@ -290,6 +291,27 @@ class DockerOnceRetentionStrategyTest {
         verify(instance.mock, times(1)).terminateContainer(mockComputer);
     }
 
+    @Test
+    void taskCompletedGivenLastTaskAndTerminationEnabledThenTellsNodeItsWorkIsDone() {
+        // Given
+        final ClassUnderTest instance = new ClassUnderTest(1);
+        final Executor mockExecutor = mock(Executor.class);
+        final Task mockTask = mock(Task.class);
+        final DockerComputer mockComputer = mock(DockerComputer.class);
+        final DockerTransientNode mockNode = mock(DockerTransientNode.class);
+        when(mockExecutor.getOwner()).thenReturn(mockComputer);
+        when(mockComputer.getNode()).thenReturn(mockNode);
+        instance.setNumberOfTasksInProgress(1);
+        instance.setTerminateOnceDone(true);
+
+        // When
+        instance.taskCompleted(mockExecutor, mockTask, 123L);
+
+        // Then
+        verify(mockNode, times(1)).setWorkCompleted();
+        verify(instance.mock, times(1)).terminateContainer(mockComputer);
+    }
+
     @Test
     void testHashCodeAndEquals() {
         // hashCode & equals need to ignore the dynamic config and only pay attention to
@@ -0,0 +1,106 @@
+package com.nirima.jenkins.plugins.docker.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PortReadinessProberTest {
+    private PortReadinessProber instance;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        instance = new PortReadinessProber();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        instance.close();
+    }
+
+    @Test
+    void probeGivenManyPortsThenCompletesEachAsSoonAsItAccepts() throws Exception {
+        // Given
+        final List<ServerSocket> openPorts = new ArrayList<>();
+        final List<Integer> closedPorts = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                openPorts.add(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+                try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+                    closedPorts.add(closed.getLocalPort());
+                }
+            }
+
+            // When
+            final long before = System.nanoTime();
+            final List<CompletableFuture<Boolean>> open = new ArrayList<>();
+            for (final ServerSocket s : openPorts) {
+                open.add(instance.probe("127.0.0.1", s.getLocalPort(), 1000L, 60000L));
+            }
+            final List<CompletableFuture<Boolean>> closed = new ArrayList<>();
+            for (final int port : closedPorts) {
+                closed.add(instance.probe("127.0.0.1", port, 200L, 1000L));
+            }
+            for (final CompletableFuture<Boolean> f : open) {
+                assertThat(f.get(10, TimeUnit.SECONDS), equalTo(true));
+            }
+            final long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            for (final CompletableFuture<Boolean> f : closed) {
+                assertThat(f.get(10, TimeUnit.SECONDS), equalTo(false));
+            }
+
+            // Then
+            assertThat("Open ports should not wait for closed ones", openMillis, lessThan(1000L));
+        } finally {
+            for (final ServerSocket s : openPorts) {
+                s.close();
+            }
+        }
+    }
+
+    @Test
+    void probeGivenPortOpensLaterThenNoticesQuickly() throws Exception {
+        // Given
+        final int port;
+        try (ServerSocket s = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = s.getLocalPort();
+        }
+        final CompletableFuture<Boolean> actual = instance.probe("127.0.0.1", port, 2000L, 30000L);
+
+        // When
+        Thread.sleep(1500L);
+        final long openedNanos;
+        try (ServerSocket s = new ServerSocket()) {
+            s.setReuseAddress(true);
+            s.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            openedNanos = System.nanoTime();
+
+            // Then
+            assertThat(actual.get(10, TimeUnit.SECONDS), equalTo(true));
+            final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedNanos);
+            assertThat(waitedMillis, lessThan(2100L));
+        }
+    }
+
+    @Test
+    void probeGivenNoRetriesThenTriesOnce() throws Exception {
+        final int port;
+        try (ServerSocket s = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = s.getLocalPort();
+        }
+
+        final CompletableFuture<Boolean> actual = instance.probe("127.0.0.1", port, 1000L, 0L);
+
+        assertThat(actual.get(5, TimeUnit.SECONDS), equalTo(false));
+    }
+}
@@ -9,10 +9,14 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterEach;
@@ -139,6 +143,55 @@ class PortUtilsTest {
                 allOf(greaterThanOrEqualTo(minAllowedTime), lessThanOrEqualTo(maxExpectedTime)));
     }
 
+    @Test
+    void shouldCompleteExceptionallyOnNotAvailPortWhenAsync() throws Exception {
+        // Given
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // When
+            final CompletableFuture<Boolean> future = PortUtils.connectionCheck("localhost", 0)
+                    .withRetries(RETRY_COUNT)
+                    .withEveryRetryWaitFor(DELAY / 10, MILLISECONDS)
+                    .useSSH()
+                    .executeAsync(executor);
+            final ExecutionException thrown = assertThrows(ExecutionException.class, () -> future.get(10, SECONDS));
+
+            // Then
+            assertThat(thrown.getCause(), instanceOf(IllegalStateException.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldRetryIfPortAvailableButNotSshWhenAsync() throws Exception {
+        // Given
+        final int retries = 2;
+        final int waitBetweenTries = DELAY / 4;
+        final int sshWaitDuringTry = DELAY / 4;
+        // e.g. try, delay, try, delay, try = 3 tries, 2 delays.
+        final long minAllowedTime = 3L * sshWaitDuringTry + 2L * waitBetweenTries - minimumFudgeFactor(DELAY);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // When
+            final long before = currentTimeMillis();
+            final CompletableFuture<Boolean> future = PortUtils.connectionCheck(server.host(), server.port())
+                    .withRetries(retries)
+                    .withEveryRetryWaitFor(waitBetweenTries, MILLISECONDS)
+                    .useSSH()
+                    .withSSHTimeout(sshWaitDuringTry, MILLISECONDS)
+                    .executeAsync(executor);
+            final boolean actual = future.get(10, SECONDS);
+            final long actualDuration = currentTimeMillis() - before;
+
+            // Then
+            assertThat("Port is connectible", actual, equalTo(false));
+            assertThat("Should have retried", actualDuration, greaterThanOrEqualTo(minAllowedTime));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     void shouldReturnWithoutWaitIfPortAvailable() throws Exception {
         // Given
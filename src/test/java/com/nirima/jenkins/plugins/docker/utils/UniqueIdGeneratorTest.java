@@ -10,6 +10,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
@@ -89,6 +91,51 @@ class UniqueIdGeneratorTest {
         assertThat(uniqueResults, hasSize(numberOfThreads));
     }
 
+    @Test
+    void getUniqueIdWhenCalledRepeatedlyFromManyThreadsThenReturnsUniqueIncreasingIds() throws Exception {
+        // Given
+        final UniqueIdGenerator instance = new UniqueIdGenerator(16);
+        final int numberOfThreads = 64;
+        final int idsPerThread = 2000;
+        final Set<String> allResults = ConcurrentHashMap.newKeySet();
+        final AtomicInteger outOfOrderCount = new AtomicInteger(0);
+        final CountDownLatch startingGun = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>(numberOfThreads);
+        for (int i = 0; i < numberOfThreads; i++) {
+            final Thread t = new Thread(
+                    () -> {
+                        try {
+                            startingGun.await();
+                        } catch (InterruptedException ignored) {
+                            return;
+                        }
+                        String previous = "";
+                        for (int j = 0; j < idsPerThread; j++) {
+                            final String actual = instance.getUniqueId();
+                            // ids are fixed-length so string order is numeric order
+                            if (actual.compareTo(previous) <= 0) {
+                                outOfOrderCount.incrementAndGet();
+                            }
+                            allResults.add(actual);
+                            previous = actual;
+                        }
+                    },
+                    "testThread#" + i);
+            threads.add(t);
+            t.start();
+        }
+
+        // When
+        startingGun.countDown();
+        for (final Thread t : threads) {
+            t.join();
+        }
+
+        // Then
+        assertThat(outOfOrderCount.get(), equalTo(0));
+        assertThat(allResults, hasSize(numberOfThreads * idsPerThread));
+    }
+
     @Test
     void getUniqueIdWhenCalledWithRadixThenReturnsPaddedString() {
         // Given
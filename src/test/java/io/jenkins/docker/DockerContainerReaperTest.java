@@ -0,0 +1,143 @@
+package io.jenkins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DockerContainerReaperTest {
+    private DockerContainerReaper instance;
+
+    @AfterEach
+    void tearDown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    @Test
+    void reapGivenSameContainerTwiceThenOnlyReapsItOnce() throws Exception {
+        // Given
+        instance = new DockerContainerReaper("tcp://test:2375", 2, 10, 1, 1L, 1L);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final DockerContainerReaper.ReapAction action = () -> {
+            calls.incrementAndGet();
+            await(release);
+            return true;
+        };
+
+        // When
+        final CompletableFuture<Boolean> actual1 = instance.reap("c1", action);
+        final CompletableFuture<Boolean> actual2 = instance.reap("c1", action);
+        release.countDown();
+
+        // Then
+        assertThat(actual2, sameInstance(actual1));
+        assertThat(actual1.get(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(calls.get(), equalTo(1));
+        assertThat(instance.getDeduplicatedCount(), equalTo(1L));
+        assertThat(instance.getReapedCount(), equalTo(1L));
+        assertThat(instance.getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    void reapGivenFailuresThenRetriesUntilGone() throws Exception {
+        // Given
+        instance = new DockerContainerReaper("tcp://test:2375", 1, 10, 5, 10L, 20L);
+        final AtomicInteger calls = new AtomicInteger();
+
+        // When
+        final CompletableFuture<Boolean> actual = instance.reap("c1", () -> calls.incrementAndGet() >= 3);
+
+        // Then
+        assertThat(actual.get(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(calls.get(), equalTo(3));
+        assertThat(instance.getRetryCount(), equalTo(2L));
+        assertThat(instance.getFailedCount(), equalTo(0L));
+    }
+
+    @Test
+    void reapGivenPersistentFailureThenGivesUp() throws Exception {
+        // Given
+        instance = new DockerContainerReaper("tcp://test:2375", 1, 10, 3, 1L, 1L);
+        final AtomicInteger calls = new AtomicInteger();
+
+        // When
+        final CompletableFuture<Boolean> actual = instance.reap("c1", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("docker said no");
+        });
+
+        // Then
+        assertThat(actual.get(10, TimeUnit.SECONDS), equalTo(false));
+        assertThat(calls.get(), equalTo(3));
+        assertThat(instance.getFailedCount(), equalTo(1L));
+        assertThat(instance.getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    void reapGivenQueueFullThenRejects() throws Exception {
+        // Given
+        instance = new DockerContainerReaper("tcp://test:2375", 1, 1, 1, 1L, 1L);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<Boolean> first = instance.reap("c1", () -> await(release));
+
+        // When
+        final CompletableFuture<Boolean> actual = instance.reap("c2", () -> true);
+
+        // Then
+        assertThat(actual.get(10, TimeUnit.SECONDS), equalTo(false));
+        assertThat(instance.getRejectedCount(), equalTo(1L));
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    void reapGivenManyContainersThenLimitsConcurrency() throws Exception {
+        // Given
+        instance = new DockerContainerReaper("tcp://test:2375", 2, 100, 1, 1L, 1L);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final DockerContainerReaper.ReapAction action = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return true;
+        };
+
+        // When
+        final List<CompletableFuture<Boolean>> actual = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            actual.add(instance.reap("c" + i, action));
+        }
+        for (final CompletableFuture<Boolean> f : actual) {
+            assertThat(f.get(10, TimeUnit.SECONDS), equalTo(true));
+        }
+
+        // Then
+        assertThat(maxRunning.get(), equalTo(2));
+        assertThat(instance.getReapedCount(), equalTo(20L));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.jenkins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DockerTerminationCoalescerTest {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger lockAcquisitions = new AtomicInteger();
+    private final DockerTerminationCoalescer instance = new DockerTerminationCoalescer(100L, scheduler, r -> {
+        lockAcquisitions.incrementAndGet();
+        r.run();
+    });
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void terminateGivenManyNodesAtOnceThenTerminatesThemUnderOneLock() throws Exception {
+        // Given
+        final TaskListener listener = mock(TaskListener.class);
+        final List<DockerTransientNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            nodes.add(mock(DockerTransientNode.class));
+        }
+
+        // When
+        for (final DockerTransientNode node : nodes) {
+            instance.terminate(node, listener);
+        }
+        instance.terminate(nodes.get(0), listener);
+        waitForScheduledWork();
+
+        // Then
+        for (final DockerTransientNode node : nodes) {
+            verify(node, times(1))._terminate(listener);
+        }
+        assertThat(lockAcquisitions.get(), equalTo(1));
+        assertThat(instance.getBatchCount(), equalTo(1L));
+        assertThat(instance.getTerminationCount(), equalTo(50L));
+    }
+
+    @Test
+    void terminateGivenOneNodeFailsThenStillTerminatesTheRest() throws Exception {
+        // Given
+        final TaskListener listener = mock(TaskListener.class);
+        final DockerTransientNode failingNode = mock(DockerTransientNode.class);
+        doThrow(new IllegalStateException("oops")).when(failingNode)._terminate(any());
+        final DockerTransientNode otherNode = mock(DockerTransientNode.class);
+
+        // When
+        instance.terminate(failingNode, listener);
+        instance.terminate(otherNode, listener);
+        waitForScheduledWork();
+
+        // Then
+        verify(otherNode, times(1))._terminate(listener);
+    }
+
+    @Test
+    void terminateGivenNodesInSeparateWindowsThenUsesSeparateBatches() throws Exception {
+        // Given
+        final TaskListener listener = mock(TaskListener.class);
+
+        // When
+        instance.terminate(mock(DockerTransientNode.class), listener);
+        waitForScheduledWork();
+        instance.terminate(mock(DockerTransientNode.class), listener);
+        waitForScheduledWork();
+
+        // Then
+        assertThat(lockAcquisitions.get(), equalTo(2));
+        assertThat(instance.getLargestBatch(), equalTo(1L));
+    }
+
+    private void waitForScheduledWork() throws Exception {
+        // anything scheduled after this will run after the flush is done.
+        scheduler.schedule(() -> null, 200L, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.docker;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+
+import io.jenkins.docker.client.DockerAPI;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DockerVolumeSweeperTest {
+    private static final DockerAPI API = mock(DockerAPI.class);
+    private static final String VOLUME_1 = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private DockerVolumeSweeper instance;
+
+    @AfterEach
+    void tearDown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    @Test
+    void sweepGivenVolumesThenRemovesThemInOrder() throws Exception {
+        // Given
+        final List<String> removed = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(3);
+        instance = new DockerVolumeSweeper(
+                "tcp://test:2375",
+                (api, volumeName) -> {
+                    removed.add(volumeName);
+                    done.countDown();
+                    return true;
+                },
+                1L,
+                10);
+
+        // When
+        instance.sweep(API, List.of("v1", "v2", "v3"));
+
+        // Then
+        assertThat(done.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(removed, contains("v1", "v2", "v3"));
+        assertThat(instance.getRemovedCount(), equalTo(3L));
+    }
+
+    @Test
+    void sweepGivenVolumeStillInUseThenRetriesThenGivesUp() throws Exception {
+        // Given
+        final List<String> attempted = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(3);
+        instance = new DockerVolumeSweeper(
+                "tcp://test:2375",
+                (api, volumeName) -> {
+                    attempted.add(volumeName);
+                    done.countDown();
+                    if (done.getCount() == 0L) {
+                        throw new IllegalStateException("docker said no");
+                    }
+                    return false;
+                },
+                1L,
+                10);
+
+        // When
+        instance.sweep(API, List.of("v1"));
+
+        // Then
+        assertThat(done.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(attempted, contains("v1", "v1", "v1"));
+        waitFor(() -> instance.getFailedCount() == 1L);
+        assertThat(instance.getQueueDepth(), equalTo(0));
+        assertThat(instance.getRemovedCount(), equalTo(0L));
+    }
+
+    @Test
+    void sweepGivenNewApiThenRemovesWithIt() throws Exception {
+        // Given
+        final DockerAPI oldApi = mock(DockerAPI.class);
+        final DockerAPI newApi = mock(DockerAPI.class);
+        final List<DockerAPI> usedApis = new CopyOnWriteArrayList<>();
+        instance = new DockerVolumeSweeper(
+                "tcp://test:2375",
+                (api, volumeName) -> {
+                    usedApis.add(api);
+                    return true;
+                },
+                1L,
+                10);
+        instance.sweep(oldApi, List.of("v1"));
+        waitFor(() -> instance.getRemovedCount() == 1L);
+
+        // When
+        instance.sweep(newApi, List.of("v2"));
+
+        // Then
+        waitFor(() -> instance.getRemovedCount() == 2L);
+        assertThat(usedApis, contains(oldApi, newApi));
+    }
+
+    @Test
+    void sweepGivenQueueFullThenDropsVolumes() throws Exception {
+        // Given
+        final CountDownLatch release = new CountDownLatch(1);
+        instance = new DockerVolumeSweeper(
+                "tcp://test:2375", (api, volumeName) -> release.await(10, TimeUnit.SECONDS), 1L, 2);
+
+        // When
+        instance.sweep(API, List.of("v1", "v2", "v3", "v4"));
+
+        // Then
+        assertThat(instance.getDroppedCount(), equalTo(2L));
+        release.countDown();
+        waitFor(() -> instance.getRemovedCount() == 2L);
+        assertThat(instance.getQueueDepth(), equalTo(0));
+    }
+
+    @Test
+    void isAnonymousVolumeNameGivenNamesThenOnlyMatchesGeneratedNames() {
+        assertThat(DockerVolumeSweeper.isAnonymousVolumeName(VOLUME_1), equalTo(true));
+        assertThat(DockerVolumeSweeper.isAnonymousVolumeName("my-volume"), equalTo(false));
+        assertThat(DockerVolumeSweeper.isAnonymousVolumeName(VOLUME_1.toUpperCase()), equalTo(false));
+        assertThat(DockerVolumeSweeper.isAnonymousVolumeName(null), equalTo(false));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+}
@@ -0,0 +1,260 @@
+package io.jenkins.docker.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import hudson.remoting.Callable;
+import hudson.remoting.Channel;
+import hudson.remoting.ChannelBuilder;
+import io.jenkins.docker.connector.StdioCompression;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.docker.commons.credentials.DockerServerEndpoint;
+import org.jenkinsci.remoting.RoleChecker;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the remoting throughput and latency we get over the attach
+ * connector's stream path ({@link DockerAPI#getSocket()},
+ * {@link DockerHttpUpgrade} and {@link DockerMultiplexedInputStream}) by talking
+ * to a stub docker daemon that runs the "agent" end of the remoting channel.
+ * The data sent looks like build logs, and we measure it with and without
+ * {@link StdioCompression}.
+ * <p>
+ * This is a benchmark, not a test, so it only runs when asked to, by setting
+ * the system property <code>io.jenkins.docker.client.AttachStreamBenchmarkTest.megabytes</code>
+ * (and, optionally, <code>io.jenkins.docker.client.AttachStreamBenchmarkTest.roundTrips</code>), e.g.
+ * <code>mvn test -Dtest=AttachStreamBenchmarkTest -Dio.jenkins.docker.client.AttachStreamBenchmarkTest.megabytes=1024</code>
+ */
+class AttachStreamBenchmarkTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachStreamBenchmarkTest.class);
+    private static final String PROPERTY_PREFIX = AttachStreamBenchmarkTest.class.getName() + ".";
+    /** How much data we transfer in each call. */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    /** docker sends stdout in frames of (at most) this size. */
+    private static final int DOCKER_FRAME_SIZE = 32 * 1024;
+    /** What we transfer in each call; like a (rather repetitive) build log. */
+    private static final byte[] LOG_CHUNK = createLogChunk();
+
+    @EnabledIfSystemProperty(named = "io.jenkins.docker.client.AttachStreamBenchmarkTest.megabytes", matches = "\\d+")
+    @ParameterizedTest(name = "compressionLevel={0}")
+    @ValueSource(ints = {0, 1, 6})
+    void measureAttachThroughputAndLatency(int compressionLevel) throws Exception {
+        final int megabytes = Integer.getInteger(PROPERTY_PREFIX + "megabytes", 16);
+        final int roundTrips = Integer.getInteger(PROPERTY_PREFIX + "roundTrips", 200);
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try (StubDockerDaemon daemon = new StubDockerDaemon(executor, compressionLevel)) {
+            final DockerAPI api =
+                    new DockerAPI(new DockerServerEndpoint("tcp://127.0.0.1:" + daemon.getPort(), null));
+            final Socket socket = api.getSocket();
+            final DockerHttpUpgrade response = DockerHttpUpgrade.post(
+                    socket.getInputStream(),
+                    socket.getOutputStream(),
+                    "/v1.40/exec/benchmark/start",
+                    "{ \"Detach\": false, \"Tty\": false }");
+            final InputStream demux = response.openDemultiplexedStream("benchmark");
+            final Channel channel = new ChannelBuilder("benchmark controller", executor)
+                    .build(
+                            compressionLevel == 0 ? demux : StdioCompression.decompress(demux),
+                            compressionLevel == 0
+                                    ? socket.getOutputStream()
+                                    : StdioCompression.compress(socket.getOutputStream(), compressionLevel));
+            try {
+                // warm up
+                channel.call(new SendLog());
+                channel.call(new Ping());
+
+                // agent to controller, i.e. through the demultiplexer.
+                final long startNanos = System.nanoTime();
+                long bytesReceived = 0L;
+                for (int i = 0; i < megabytes; i++) {
+                    bytesReceived += channel.call(new SendLog()).length;
+                }
+                final long elapsedNanos = System.nanoTime() - startNanos;
+
+                final long[] latencies = new long[roundTrips];
+                for (int i = 0; i < roundTrips; i++) {
+                    final long before = System.nanoTime();
+                    channel.call(new Ping());
+                    latencies[i] = System.nanoTime() - before;
+                }
+                Arrays.sort(latencies);
+
+                final double seconds = elapsedNanos / 1e9;
+                final double megabytesPerSecond = bytesReceived / (1024.0 * 1024.0) / seconds;
+                LOGGER.info(
+                        "Attach stream, compression level {}: {} MB in {} s = {} MB/s;"
+                                + " round trip: median {} us, p99 {} us",
+                        compressionLevel,
+                        megabytes,
+                        String.format("%.3f", seconds),
+                        String.format("%.1f", megabytesPerSecond),
+                        TimeUnit.NANOSECONDS.toMicros(latencies[roundTrips / 2]),
+                        TimeUnit.NANOSECONDS.toMicros(latencies[roundTrips * 99 / 100]));
+                assertThat(bytesReceived, equalTo((long) megabytes * LOG_CHUNK.length));
+            } finally {
+                channel.close();
+                channel.join(10000L);
+                socket.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Just enough of a docker daemon to accept one exec start request, upgrade
+     * the connection, and then run the agent end of a remoting channel over
+     * it, with stdout multiplexed the way docker does it.
+     */
+    private static class StubDockerDaemon implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final CompletableFuture<Channel> agentChannel = new CompletableFuture<>();
+
+        StubDockerDaemon(ExecutorService executor, int compressionLevel) throws IOException {
+            serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            executor.submit(() -> {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    final InputStream in = socket.getInputStream();
+                    readRequest(in);
+                    final OutputStream out = socket.getOutputStream();
+                    out.write(("HTTP/1.1 101 UPGRADED\r\n"
+                                    + "Content-Type: application/vnd.docker.raw-stream\r\n"
+                                    + "Connection: Upgrade\r\n"
+                                    + "Upgrade: tcp\r\n"
+                                    + "\r\n")
+                            .getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    // stdin isn't multiplexed; stdout is.
+                    final OutputStream stdout = new StdoutFrameOutputStream(out);
+                    agentChannel.complete(new ChannelBuilder("benchmark agent", executor)
+                            .build(
+                                    compressionLevel == 0 ? in : StdioCompression.decompress(in),
+                                    compressionLevel == 0
+                                            ? stdout
+                                            : StdioCompression.compress(stdout, compressionLevel)));
+                } catch (IOException | RuntimeException ex) {
+                    agentChannel.completeExceptionally(ex);
+                }
+                return null;
+            });
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private static void readRequest(InputStream in) throws IOException {
+            final ByteArrayOutputStream header = new ByteArrayOutputStream();
+            while (!header.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+                final int c = in.read();
+                if (c < 0) {
+                    throw new IOException("EOF in request header");
+                }
+                header.write(c);
+            }
+            int contentLength = 0;
+            for (final String line : header.toString(StandardCharsets.US_ASCII).split("\r\n")) {
+                if (line.regionMatches(true, 0, "content-length:", 0, "content-length:".length())) {
+                    contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+                }
+            }
+            in.readNBytes(contentLength);
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            if (agentChannel.isDone() && !agentChannel.isCompletedExceptionally()) {
+                final Channel channel = agentChannel.get();
+                channel.close();
+                channel.join(10000L);
+            }
+        }
+    }
+
+    /** Wraps everything written to it in docker stdout frames. */
+    private static class StdoutFrameOutputStream extends FilterOutputStream {
+        private final byte[] header = {1, 0, 0, 0, 0, 0, 0, 0};
+
+        StdoutFrameOutputStream(OutputStream out) {
+            super(new BufferedOutputStream(out, DOCKER_FRAME_SIZE + 8));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final int size = Math.min(len, DOCKER_FRAME_SIZE);
+                header[4] = (byte) (size >> 24);
+                header[5] = (byte) (size >> 16);
+                header[6] = (byte) (size >> 8);
+                header[7] = (byte) size;
+                out.write(header);
+                out.write(b, off, size);
+                off += size;
+                len -= size;
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static byte[] createLogChunk() {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(CHUNK_SIZE);
+        for (int line = 0; result.size() < CHUNK_SIZE; line++) {
+            final String text = String.format(
+                    "[INFO] %tT Running com.example.module%d.SomethingTest:"
+                            + " Tests run: %d, Failures: 0, Time: %d.%03d s%n",
+                    System.currentTimeMillis() + line * 37L, line % 50, line % 17 + 1, line % 7, line * 31 % 1000);
+            result.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return Arrays.copyOf(result.toByteArray(), CHUNK_SIZE);
+    }
+
+    private static class SendLog implements Callable<byte[], IOException> {
+        @Override
+        public byte[] call() {
+            return LOG_CHUNK;
+        }
+
+        @Override
+        public void checkRoles(RoleChecker checker) {}
+    }
+
+    private static class Ping implements Callable<Boolean, IOException> {
+        @Override
+        public Boolean call() {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public void checkRoles(RoleChecker checker) {}
+    }
+}
@@ -0,0 +1,100 @@
+package io.jenkins.docker.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class DockerHttpUpgradeTest {
+
+    @Test
+    void postGivenUpgradeThenSendsRequestAndHandsOverReadAhead() throws Exception {
+        // Given
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final InputStream in = new ByteArrayInputStream(concat(
+                "HTTP/1.1 101 UPGRADED\r\nContent-Type: application/vnd.docker.raw-stream\r\n"
+                        + "Connection: Upgrade\r\nUpgrade: tcp\r\n\r\n",
+                new byte[] {1, 0, 0, 0, 0, 0, 0, 3, 65, 66, 67}));
+
+        // When
+        final DockerHttpUpgrade actual = DockerHttpUpgrade.post(in, out, "/v1.40/exec/1234/start", "{}");
+        final byte[] actualData = actual.openDemultiplexedStream("UpgradeTest").readAllBytes();
+
+        // Then
+        assertThat(
+                out.toString(StandardCharsets.US_ASCII),
+                equalTo("POST /v1.40/exec/1234/start HTTP/1.1\r\n"
+                        + "Host: docker.sock\r\n"
+                        + "Content-Type: application/json\r\n"
+                        + "Upgrade: tcp\r\n"
+                        + "Connection: Upgrade\r\n"
+                        + "Content-Length: 2\r\n"
+                        + "\r\n"
+                        + "{}"));
+        assertThat(actual.getStatusLine(), equalTo("HTTP/1.1 101 UPGRADED"));
+        assertThat(
+                actual.getHeaderLines(),
+                contains("Content-Type: application/vnd.docker.raw-stream", "Connection: Upgrade", "Upgrade: tcp"));
+        assertThat(new String(actualData, StandardCharsets.US_ASCII), equalTo("ABC"));
+    }
+
+    @Test
+    void readResponseGivenBareLineFeedsArrivingByteByByteThenParsesHeaders() throws Exception {
+        // Given
+        final InputStream in = new OneByteAtATimeInputStream(new ByteArrayInputStream(
+                concat("HTTP/1.1 101 UPGRADED\nUpgrade: tcp\n\n", new byte[] {1, 0, 0, 0, 0, 0, 0, 1, 68})));
+
+        // When
+        final DockerHttpUpgrade actual = DockerHttpUpgrade.readResponse(in);
+        final byte[] actualData = actual.openDemultiplexedStream("UpgradeTest").readAllBytes();
+
+        // Then
+        assertThat(actual.getStatusLine(), equalTo("HTTP/1.1 101 UPGRADED"));
+        assertThat(actual.getHeaderLines(), contains("Upgrade: tcp"));
+        assertThat(new String(actualData, StandardCharsets.US_ASCII), equalTo("D"));
+    }
+
+    @Test
+    void readResponseGivenErrorStatusThenThrows() {
+        final InputStream in = new ByteArrayInputStream(
+                concat("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n", new byte[0]));
+
+        final IOException actual = assertThrows(IOException.class, () -> DockerHttpUpgrade.readResponse(in));
+
+        assertThat(actual.getMessage(), containsString("HTTP/1.1 404 Not Found"));
+    }
+
+    @Test
+    void readResponseGivenEofInHeaderThenThrows() {
+        final InputStream in = new ByteArrayInputStream(concat("HTTP/1.1 101 UPGRADED\r\nUpgr", new byte[0]));
+
+        assertThrows(IOException.class, () -> DockerHttpUpgrade.readResponse(in));
+    }
+
+    private static byte[] concat(String header, byte[] data) {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+        result.writeBytes(data);
+        return result.toByteArray();
+    }
+
+    private static class OneByteAtATimeInputStream extends FilterInputStream {
+        OneByteAtATimeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
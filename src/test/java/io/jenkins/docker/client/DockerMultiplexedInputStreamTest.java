@@ -1,15 +1,21 @@
 package io.jenkins.docker.client;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -540,4 +546,129 @@ class DockerMultiplexedInputStreamTest {
             assertNotNull(tester.exception());
         }
     }
+
+    @Test
+    void testSmallFramesAreReturnedTogether() throws Exception {
+        // Given
+        final int numberOfFrames = 10000;
+        final int frameSize = 10;
+        final byte[] input = createFrames(numberOfFrames, frameSize, 1);
+        final CountingInputStream counter = new CountingInputStream(new ByteArrayInputStream(input));
+        final DockerMultiplexedInputStream instance = new DockerMultiplexedInputStream(counter, "SmallFramesTest");
+        final byte[] buffer = new byte[64 * 1024];
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        // When
+        int numberOfReads = 0;
+        int count;
+        while ((count = instance.read(buffer, 0, buffer.length)) >= 0) {
+            sink.write(buffer, 0, count);
+            numberOfReads++;
+        }
+
+        // Then
+        assertArrayEquals(createPayload(numberOfFrames, frameSize), sink.toByteArray());
+        // we should fill our buffer on each underlying read, not read per frame
+        final int maxUnderlyingReads = input.length / 8000 + 4;
+        assertTrue(counter.reads <= maxUnderlyingReads, "Underlying reads: " + counter.reads);
+        assertTrue(numberOfReads <= maxUnderlyingReads, "Reads: " + numberOfReads);
+    }
+
+    @Test
+    void testLargeStderrFrameIsSkippedWithoutBuffering() throws Exception {
+        // Given
+        final int stderrSize = 1024 * 1024;
+        final ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write(createFrames(1, 3, 1));
+        // stderr frame header (1MB)
+        final byte[] stderrHeader = {2, 0, 0, 0, 0, 0x10, 0, 0};
+        input.write(stderrHeader);
+        input.write(new byte[stderrSize]);
+        input.write(createFrames(1, 5, 1));
+        final DockerMultiplexedInputStream instance =
+                new DockerMultiplexedInputStream(new ByteArrayInputStream(input.toByteArray()), "StderrTest");
+
+        // When
+        final byte[] actual = instance.readAllBytes();
+
+        // Then
+        assertArrayEquals(new byte[] {0, 1, 2, 0, 1, 2, 3, 4}, actual);
+    }
+
+    @Test
+    void testReadDoesNotAllocatePerFrame() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        // Given
+        final int numberOfFrames = 100000;
+        final byte[] input = createFrames(numberOfFrames, 4, 2);
+        final byte[] buffer = new byte[8192];
+        // warm up
+        drain(new DockerMultiplexedInputStream(new ByteArrayInputStream(input), "AllocationTest"), buffer);
+        final DockerMultiplexedInputStream instance =
+                new DockerMultiplexedInputStream(new ByteArrayInputStream(input), "AllocationTest");
+
+        // When
+        final long before = threadBean.getCurrentThreadAllocatedBytes();
+        final long bytesRead = drain(instance, buffer);
+        final long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        // Then
+        assertEquals(numberOfFrames * 4L, bytesRead);
+        // An 8-byte header array per frame would be at least 24 bytes each.
+        assertTrue(
+                allocated < numberOfFrames, "Allocated " + allocated + " bytes reading " + numberOfFrames + " frames");
+    }
+
+    private static long drain(InputStream in, byte[] buffer) throws IOException {
+        long total = 0L;
+        int count;
+        while ((count = in.read(buffer, 0, buffer.length)) >= 0) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return stdout frames, interleaved with empty stderr frames every
+     *         <code>stderrEvery</code> frames (1 means no stderr frames).
+     */
+    private static byte[] createFrames(int numberOfFrames, int frameSize, int stderrEvery) {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < numberOfFrames; i++) {
+            result.write(new byte[] {1, 0, 0, 0, 0, 0, (byte) (frameSize >> 8), (byte) frameSize}, 0, 8);
+            for (int j = 0; j < frameSize; j++) {
+                result.write(j);
+            }
+            if (stderrEvery > 1 && i % stderrEvery == 0) {
+                result.write(new byte[] {2, 0, 0, 0, 0, 0, 0, 0}, 0, 8);
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] createPayload(int numberOfFrames, int frameSize) {
+        final byte[] result = new byte[numberOfFrames * frameSize];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) (i % frameSize);
+        }
+        return result;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        int reads;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            reads++;
+            return super.read(b, off, len);
+        }
+    }
 }
@@ -41,6 +41,15 @@ class DockerComputerAttachConnectorTest extends DockerComputerConnectorTest {
         testAgentCanStartAndConnect(connector, testName);
     }
 
+    @Test
+    void connectAgentViaDirectAttachWithCompression() throws Exception {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable());
+        final DockerComputerAttachConnector connector = new DockerComputerAttachConnector(COMMON_IMAGE_USERNAME);
+        connector.setCompressionLevel(1);
+        final String testName = "connectAgentViaDirectAttachWithCompression";
+        testAgentCanStartAndConnect(connector, testName);
+    }
+
     private void testAgentCanStartAndConnect(final DockerComputerAttachConnector connector, final String testName)
             throws IOException, ExecutionException, InterruptedException, TimeoutException {
         final String imagenameAndVersion =
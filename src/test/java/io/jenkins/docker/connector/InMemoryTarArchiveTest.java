@@ -0,0 +1,40 @@
+package io.jenkins.docker.connector;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.junit.jupiter.api.Test;
+
+class InMemoryTarArchiveTest {
+
+    @Test
+    void openStreamGivenArchiveThenEveryStreamContainsTheFile() throws IOException {
+        // Given
+        final byte[] contents = "#!/bin/sh\necho hello\n".getBytes(StandardCharsets.UTF_8);
+        final InMemoryTarArchive instance = InMemoryTarArchive.of("hello.sh", contents, 0700);
+
+        // When/Then
+        assertArchiveHolds(instance.openStream(), "hello.sh", contents, 0700);
+        assertArchiveHolds(instance.openStream(), "hello.sh", contents, 0700);
+    }
+
+    private static void assertArchiveHolds(InputStream stream, String name, byte[] contents, int mode)
+            throws IOException {
+        try (TarInputStream tar = new TarInputStream(stream)) {
+            final TarEntry entry = tar.getNextEntry();
+            assertThat(entry.getName(), equalTo(name));
+            assertThat(entry.getMode() & 07777, equalTo(mode));
+            assertThat(entry.getSize(), equalTo((long) contents.length));
+            final byte[] actual = tar.readAllBytes();
+            assertThat(
+                    new String(actual, StandardCharsets.UTF_8), equalTo(new String(contents, StandardCharsets.UTF_8)));
+            assertThat(tar.getNextEntry(), nullValue());
+        }
+    }
+}
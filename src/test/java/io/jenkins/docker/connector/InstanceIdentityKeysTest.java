@@ -0,0 +1,84 @@
+package io.jenkins.docker.connector;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import org.apache.tools.tar.TarInputStream;
+import org.junit.jupiter.api.Test;
+
+class InstanceIdentityKeysTest {
+
+    @Test
+    void getGivenSameIdentityThenReusesEncodedKeys() throws Exception {
+        // Given
+        final KeyPair keyPair = createKeyPair();
+
+        // When
+        final InstanceIdentityKeys actual1 = get(keyPair);
+        final InstanceIdentityKeys actual2 = get(keyPair);
+
+        // Then
+        assertThat(actual2, sameInstance(actual1));
+        assertThat(actual1.getAuthorizedKey(), startsWith("ssh-rsa AAAA"));
+        assertThat(
+                actual2.getAuthorizedKeysCommandArchive("jenkins"),
+                sameInstance(actual1.getAuthorizedKeysCommandArchive("jenkins")));
+        assertThat(
+                actual2.getAuthorizedKeysCommandArchive("root"),
+                not(sameInstance(actual1.getAuthorizedKeysCommandArchive("jenkins"))));
+    }
+
+    @Test
+    void getGivenIdentityChangedThenEncodesNewKeys() throws Exception {
+        // Given
+        final InstanceIdentityKeys old = get(createKeyPair());
+
+        // When
+        final InstanceIdentityKeys actual = get(createKeyPair());
+
+        // Then
+        assertThat(actual, not(sameInstance(old)));
+        assertThat(actual.getAuthorizedKey(), not(old.getAuthorizedKey()));
+    }
+
+    @Test
+    void getAuthorizedKeysCommandArchiveThenOnlyGivesKeyForUser() throws Exception {
+        // Given
+        final InstanceIdentityKeys instance = get(createKeyPair());
+
+        // When
+        final String actual = readScript(instance.getAuthorizedKeysCommandArchive("jenkins"));
+
+        // Then
+        assertThat(actual, startsWith("#!/bin/sh\n[ \"$1\" = \"jenkins\" ] && echo '"));
+        assertThat(actual, containsString(instance.getAuthorizedKey()));
+    }
+
+    private static InstanceIdentityKeys get(KeyPair keyPair) throws IOException {
+        return InstanceIdentityKeys.get((RSAPublicKey) keyPair.getPublic(), (RSAPrivateKey) keyPair.getPrivate());
+    }
+
+    private static KeyPair createKeyPair() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static String readScript(InMemoryTarArchive archive) throws IOException {
+        try (InputStream stream = archive.openStream();
+                TarInputStream tar = new TarInputStream(stream)) {
+            tar.getNextEntry();
+            return new String(tar.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
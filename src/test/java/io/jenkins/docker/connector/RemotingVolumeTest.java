@@ -0,0 +1,193 @@
+package io.jenkins.docker.connector;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.CopyArchiveToContainerCmd;
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.CreateVolumeCmd;
+import com.github.dockerjava.api.command.InspectVolumeCmd;
+import com.github.dockerjava.api.command.RemoveContainerCmd;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Mount;
+import io.jenkins.docker.client.DockerAPI;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import org.jenkinsci.plugins.docker.commons.credentials.DockerServerEndpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RemotingVolumeTest {
+    private static final String IMAGE = "jenkins/agent:latest";
+    private static final String SEEDER_ID = "seederContainerId";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getVolumeNameGivenDifferentJarsThenDifferentNames() throws IOException {
+        // Given
+        final File jar1 = createJar("remoting-1.jar", "version 1");
+        final File jar2 = createJar("remoting-2.jar", "version 2");
+        final File jar1Copy = createJar("remoting-1-copy.jar", "version 1");
+
+        // When
+        final String actual1 = RemotingVolume.getVolumeName(jar1);
+        final String actual2 = RemotingVolume.getVolumeName(jar2);
+        final String actual1Copy = RemotingVolume.getVolumeName(jar1Copy);
+
+        // Then
+        assertThat(actual1, startsWith("jenkins-remoting-"));
+        assertThat(actual2, not(equalTo(actual1)));
+        assertThat(actual1Copy, equalTo(actual1));
+        assertThat(RemotingVolume.getVolumeName(jar1), equalTo(actual1));
+    }
+
+    @Test
+    void mountIntoGivenNewVolumeThenSeedsItAndMountsItReadOnly() throws IOException {
+        // Given
+        final File jar = createJar("remoting.jar", "seed me");
+        final String volumeName = RemotingVolume.getVolumeName(jar);
+        final DockerClient client = createMockedClient(volumeName, false);
+        final DockerAPI api = createMockedDockerAPI(client);
+        final CreateContainerCmd agentCmd = createAgentCmd();
+
+        // When
+        RemotingVolume.mountInto(api, jar, agentCmd);
+
+        // Then
+        verify(client.createVolumeCmd()).withName(volumeName);
+        verify(client.copyArchiveToContainerCmd(SEEDER_ID)).withRemotePath(RemotingVolume.MOUNT_POINT);
+        verify(client.removeContainerCmd(SEEDER_ID)).exec();
+        final HostConfig hostConfig = agentCmd.getHostConfig();
+        assertThat(hostConfig.getMounts(), hasSize(1));
+        final Mount mount = hostConfig.getMounts().get(0);
+        assertThat(mount.getSource(), equalTo(volumeName));
+        assertThat(mount.getTarget(), equalTo(RemotingVolume.MOUNT_POINT));
+        assertThat(mount.getReadOnly(), equalTo(true));
+        assertThat(RemotingVolume.getJarPath(jar), equalTo(RemotingVolume.MOUNT_POINT + '/' + jar.getName()));
+    }
+
+    @Test
+    void mountIntoGivenAlreadySeededOnThatHostThenDoesNotSeedAgain() throws IOException {
+        // Given
+        final File jar = createJar("remoting.jar", "seed me once");
+        final DockerClient client = createMockedClient(RemotingVolume.getVolumeName(jar), true);
+        final DockerAPI api = createMockedDockerAPI(client);
+        final DockerClient otherClient = createMockedClient(RemotingVolume.getVolumeName(jar), true);
+        final DockerAPI otherApi = createMockedDockerAPI(otherClient);
+
+        // When
+        RemotingVolume.mountInto(api, jar, createAgentCmd());
+        RemotingVolume.mountInto(api, jar, createAgentCmd());
+        RemotingVolume.mountInto(otherApi, jar, createAgentCmd());
+
+        // Then
+        verify(client, times(1)).createContainerCmd(IMAGE);
+        verify(client, never()).createVolumeCmd();
+        verify(otherClient, times(1)).createContainerCmd(IMAGE);
+    }
+
+    @Test
+    void mountIntoGivenSeededVolumeHasBeenRemovedThenSeedsItAgain() throws IOException {
+        // Given
+        final File jar = createJar("remoting.jar", "seed me again");
+        final String volumeName = RemotingVolume.getVolumeName(jar);
+        final DockerClient client = createMockedClient(volumeName, true);
+        final DockerAPI api = createMockedDockerAPI(client);
+        RemotingVolume.mountInto(api, jar, createAgentCmd());
+        when(client.inspectVolumeCmd(volumeName).exec()).thenThrow(new NotFoundException("No such volume"));
+
+        // When
+        RemotingVolume.mountInto(api, jar, createAgentCmd());
+
+        // Then
+        verify(client, times(2)).createContainerCmd(IMAGE);
+        verify(client.createVolumeCmd()).withName(volumeName);
+    }
+
+    @Test
+    void mountIntoGivenCopyFailsThenRemovesSeederAndTriesAgainNextTime() throws IOException {
+        // Given
+        final File jar = createJar("remoting.jar", "copy fails");
+        final DockerClient client = createMockedClient(RemotingVolume.getVolumeName(jar), true);
+        final CopyArchiveToContainerCmd copyCmd = client.copyArchiveToContainerCmd(SEEDER_ID);
+        doThrow(new DockerException("no space left on device", 500))
+                .doReturn(null)
+                .when(copyCmd)
+                .exec();
+        final DockerAPI api = createMockedDockerAPI(client);
+
+        // When
+        assertThrows(DockerException.class, () -> RemotingVolume.mountInto(api, jar, createAgentCmd()));
+        RemotingVolume.mountInto(api, jar, createAgentCmd());
+
+        // Then
+        verify(client.removeContainerCmd(SEEDER_ID), times(2)).exec();
+        verify(client, times(2)).createContainerCmd(IMAGE);
+    }
+
+    private File createJar(String name, String contents) throws IOException {
+        final Path jar = tempDir.resolve(name);
+        Files.write(jar, contents.getBytes(StandardCharsets.UTF_8));
+        return jar.toFile();
+    }
+
+    private static CreateContainerCmd createAgentCmd() {
+        final CreateContainerCmd result = mock(CreateContainerCmd.class);
+        when(result.getImage()).thenReturn(IMAGE);
+        when(result.getHostConfig()).thenReturn(new HostConfig());
+        return result;
+    }
+
+    private static DockerAPI createMockedDockerAPI(DockerClient client) {
+        final DockerAPI result = mock(DockerAPI.class);
+        final DockerServerEndpoint endpoint = mock(DockerServerEndpoint.class);
+        // each test gets a docker host of its own, as we remember what we've seeded.
+        when(endpoint.getUri()).thenReturn("tcp://" + UUID.randomUUID() + ":2375");
+        when(result.getDockerHost()).thenReturn(endpoint);
+        when(result.getClient()).thenReturn(client);
+        return result;
+    }
+
+    private static DockerClient createMockedClient(String volumeName, boolean volumeExists) {
+        final DockerClient client = mock(DockerClient.class);
+        final InspectVolumeCmd inspectVolumeCmd = mock(InspectVolumeCmd.class);
+        if (!volumeExists) {
+            when(inspectVolumeCmd.exec()).thenThrow(new NotFoundException("No such volume: " + volumeName));
+        }
+        when(client.inspectVolumeCmd(volumeName)).thenReturn(inspectVolumeCmd);
+        final CreateVolumeCmd createVolumeCmd = mock(CreateVolumeCmd.class, RETURNS_SELF);
+        when(client.createVolumeCmd()).thenReturn(createVolumeCmd);
+        final CreateContainerCmd createContainerCmd = mock(CreateContainerCmd.class, RETURNS_SELF);
+        final CreateContainerResponse created = new CreateContainerResponse();
+        created.setId(SEEDER_ID);
+        when(createContainerCmd.exec()).thenReturn(created);
+        when(client.createContainerCmd(anyString())).thenReturn(createContainerCmd);
+        final CopyArchiveToContainerCmd copyCmd = mock(CopyArchiveToContainerCmd.class, RETURNS_SELF);
+        when(client.copyArchiveToContainerCmd(SEEDER_ID)).thenReturn(copyCmd);
+        final RemoveContainerCmd removeCmd = mock(RemoveContainerCmd.class, RETURNS_SELF);
+        when(client.removeContainerCmd(SEEDER_ID)).thenReturn(removeCmd);
+        return client;
+    }
+}
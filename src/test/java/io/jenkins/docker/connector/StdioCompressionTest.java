@@ -0,0 +1,86 @@
+package io.jenkins.docker.connector;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import org.junit.jupiter.api.Test;
+
+class StdioCompressionTest {
+
+    @Test
+    void compressGivenFlushThenOtherEndCanReadWithoutWaitingForMore() throws Exception {
+        // Given
+        final PipedInputStream pipeIn = new PipedInputStream(65536);
+        final PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+        final OutputStream out = StdioCompression.compress(pipeOut, 6);
+        final InputStream in = StdioCompression.decompress(pipeIn);
+        final byte[] expected = "Hello, agent\n".getBytes(StandardCharsets.UTF_8);
+
+        // When
+        out.write(expected);
+        out.flush();
+        final byte[] actual = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> in.readNBytes(expected.length));
+
+        // Then
+        assertThat(actual, equalTo(expected));
+        assertThat(in.available(), equalTo(0));
+    }
+
+    @Test
+    void compressGivenLogOutputThenCompressesIt() throws Exception {
+        // Given
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 1000; i++) {
+            expected.writeBytes(("[INFO] Compiling " + i + " source files to /home/jenkins/workspace/target/classes\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        // When
+        try (OutputStream out = StdioCompression.compress(compressed, 1)) {
+            expected.writeTo(out);
+        }
+        final byte[] actual = StdioCompression.decompress(new ByteArrayInputStream(compressed.toByteArray()))
+                .readAllBytes();
+
+        // Then
+        assertThat(actual, equalTo(expected.toByteArray()));
+        assertThat(compressed.size(), lessThan(expected.size() / 4));
+    }
+
+    @Test
+    void createCompressionAgentJarThenContainsPremainClass() throws Exception {
+        final List<String> actualEntries = new ArrayList<>();
+        final byte[] jarBytes = DockerComputerAttachConnector.createCompressionAgentJar();
+        try (JarInputStream jar = new JarInputStream(new ByteArrayInputStream(jarBytes))) {
+            assertThat(
+                    jar.getManifest().getMainAttributes().getValue("Premain-Class"),
+                    equalTo(StdioCompression.class.getName()));
+            JarEntry entry;
+            while ((entry = jar.getNextJarEntry()) != null) {
+                actualEntries.add(entry.getName());
+            }
+        }
+
+        assertThat(
+                actualEntries,
+                containsInAnyOrder(
+                        "io/jenkins/docker/connector/StdioCompression.class",
+                        "io/jenkins/docker/connector/StdioCompression$NonBlockingInflaterInputStream.class"));
+    }
+}